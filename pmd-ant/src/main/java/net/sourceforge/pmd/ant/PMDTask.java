@@ -69,6 +69,7 @@ public class PMDTask extends Task {
     private String failuresPropertyName;
     private SourceLanguage sourceLanguage;
     private String cacheLocation;
+    private String cacheFormat = "file";
     private boolean noCache;
     private final Collection<RuleSetWrapper> nestedRules = new ArrayList<>();
 
@@ -108,6 +109,10 @@ public class PMDTask extends Task {
             }
             rulesetFiles = getNestedRuleSetFiles();
         }
+
+        if (!"file".equalsIgnoreCase(cacheFormat) && !"mapped".equalsIgnoreCase(cacheFormat)) {
+            throw new BuildException("cacheFormat should be 'file' or 'mapped', found " + cacheFormat);
+        }
     }
 
     private String getNestedRuleSetFiles() {
@@ -283,6 +288,14 @@ public class PMDTask extends Task {
         this.cacheLocation = cacheLocation;
     }
 
+    public String getCacheFormat() {
+        return cacheFormat;
+    }
+
+    public void setCacheFormat(String cacheFormat) {
+        this.cacheFormat = cacheFormat;
+    }
+
 
     public boolean isNoCache() {
         return noCache;
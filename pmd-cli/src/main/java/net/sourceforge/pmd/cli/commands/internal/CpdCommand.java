@@ -87,6 +87,29 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
     @Option(names = "--non-recursive", description = "Don't scan subdirectiories.")
     private boolean nonRecursive;
 
+    @Option(names = "--suffix-array",
+            description = "Find duplicates with a suffix array instead of rolling hashes. "
+                        + "This reports the same duplicates, and is faster when code has many copies, but uses more memory.")
+    private boolean useSuffixArray;
+
+    @Option(names = "--cache",
+            description = "Specify the location of a file in which the tokens of each file are cached between runs. "
+                        + "Only the files that changed since the last run are then tokenized again. "
+                        + "If the file doesn't exist, it will be created on the first run.")
+    private Path cacheLocation;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "--threads", "-t" },
+            description = "Sets the number of threads used to tokenize files. If zero or one, files are tokenized on the main thread. "
+                        + "Defaults to the number of available processors.")
+    public void setThreads(final int threads) {
+        if (threads < 0) {
+            throw new ParameterException(spec.commandLine(), "Thread count should be a positive number or zero, found " + threads + " instead.");
+        }
+        this.threads = threads;
+    }
+
 
     /**
      * Converts these parameters into a configuration.
@@ -120,6 +143,9 @@ public class CpdCommand extends AbstractAnalysisPmdSubcommand<CPDConfiguration>
         configuration.setSkipBlocksPattern(skipBlocksPattern);
         configuration.setSkipDuplicates(skipDuplicates);
         configuration.setSkipLexicalErrors(skipLexicalErrors);
+        configuration.setThreads(threads);
+        configuration.setUseSuffixArray(useSuffixArray);
+        configuration.setCacheLocation(cacheLocation);
         configuration.setSourceEncoding(encoding.getEncoding());
         configuration.setInputUri(uri);
 
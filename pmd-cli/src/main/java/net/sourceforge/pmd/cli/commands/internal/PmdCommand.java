@@ -25,6 +25,7 @@ import net.sourceforge.pmd.benchmark.TextTimingReportRenderer;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimingReport;
 import net.sourceforge.pmd.benchmark.TimingReportRenderer;
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.PmdLanguageTypeSupport;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.PmdLanguageVersionTypeSupport;
 import net.sourceforge.pmd.cli.commands.typesupport.internal.RulePriorityTypeSupport;
@@ -50,6 +51,8 @@ import picocli.CommandLine.ParameterException;
 public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration> {
     private static final Logger LOG = LoggerFactory.getLogger(PmdCommand.class);
 
+    private static final String VIRTUAL_THREADS = "virtual";
+
     static {
         final Properties emptyProps = new Properties();
         final StringBuilder reportPropertiesHelp = new StringBuilder();
@@ -84,6 +87,8 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private int threads;
 
+    private boolean useVirtualThreads;
+
     private boolean benchmark;
 
     private boolean showSuppressed;
@@ -106,6 +111,10 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
 
     private Path cacheLocation;
 
+    private Path cacheDirectory;
+
+    private AnalysisCacheFormat cacheFormat = AnalysisCacheFormat.FILE;
+
     private boolean noCache;
 
     private boolean showProgressBar;
@@ -228,19 +237,71 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         this.cacheLocation = cacheLocation;
     }
 
+    @Option(names = "--cache-format",
+            description = "Specify the format of the cache file given with --cache. Valid values: 'file' (the default), "
+                    + "which reads and writes the whole cache file on each run, or 'mapped', which is a memory-mapped store "
+                    + "that only reads and writes the entries of the analysed and changed files. "
+                    + "The 'mapped' store uses several files next to the given location.",
+            defaultValue = "file")
+    public void setCacheFormat(final String cacheFormat) {
+        try {
+            this.cacheFormat = AnalysisCacheFormat.fromName(cacheFormat);
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(spec.commandLine(), "Cache format should be 'file' or 'mapped', found " + cacheFormat + " instead.");
+        }
+    }
+
+    @Option(names = "--cache-dir",
+            description = "Specify the directory of a cache for incremental analysis that can be shared by several machines "
+                    + "or checkouts, e.g. on a volume mounted by CI agents. Files are identified by their path relative to the "
+                    + "current working directory and by their contents. Several analyses may use the directory concurrently. "
+                    + "This option takes precedence over --cache.")
+    public void setCacheDirectory(final Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
     @Option(names = "--no-cache", description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     public void setNoCache(final boolean noCache) {
         this.noCache = noCache;
     }
 
-    @Option(names = { "--threads", "-t" }, description = "Sets the number of threads used by PMD.",
+    @Option(names = { "--threads", "-t" }, description = "Sets the number of threads used by PMD. "
+                + "Use 'virtual' to process each file on a virtual thread (requires Java 21), "
+                + "the number of files processed concurrently is then the number of available processors. "
+                + "Use 'virtual:N' to process at most N files concurrently on virtual threads.",
             defaultValue = "1")
-    public void setThreads(final int threads) {
-        if (threads < 0) {
-            throw new ParameterException(spec.commandLine(), "Thread count should be a positive number or zero, found " + threads + " instead.");
+    public void setThreads(final String threads) {
+        if (VIRTUAL_THREADS.equalsIgnoreCase(threads)) {
+            this.threads = Runtime.getRuntime().availableProcessors();
+            this.useVirtualThreads = true;
+            return;
         }
-        
-        this.threads = threads;
+        final String virtualPrefix = VIRTUAL_THREADS + ":";
+        if (threads.regionMatches(true, 0, virtualPrefix, 0, virtualPrefix.length())) {
+            final int maxConcurrency = parseThreadCount(threads.substring(virtualPrefix.length()), threads);
+            if (maxConcurrency == 0) {
+                throw new ParameterException(spec.commandLine(), "The number of files processed concurrently on virtual threads should be a positive number, found " + threads + " instead.");
+            }
+            this.threads = maxConcurrency;
+            this.useVirtualThreads = true;
+            return;
+        }
+
+        this.threads = parseThreadCount(threads, threads);
+        this.useVirtualThreads = false;
+    }
+
+    private int parseThreadCount(final String count, final String option) {
+        final int threadCount;
+        try {
+            threadCount = Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            throw new ParameterException(spec.commandLine(), "Thread count should be a number, '" + VIRTUAL_THREADS + "' or '" + VIRTUAL_THREADS + ":N', found " + option + " instead.");
+        }
+        if (threadCount < 0) {
+            throw new ParameterException(spec.commandLine(), "Thread count should be a positive number or zero, found " + option + " instead.");
+        }
+        return threadCount;
     }
 
     @Option(names = "--no-progress", negatable = true, defaultValue = "true",
@@ -278,8 +339,13 @@ public class PmdCommand extends AbstractAnalysisPmdSubcommand<PMDConfiguration>
         configuration.setShowSuppressedViolations(showSuppressed);
         configuration.setSuppressMarker(suppressMarker);
         configuration.setThreads(threads);
+        configuration.setUseVirtualThreads(useVirtualThreads);
         configuration.setFailOnViolation(failOnViolation);
-        configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null);
+        if (cacheDirectory != null) {
+            configuration.setAnalysisCacheDirectory(cacheDirectory.toString());
+        } else {
+            configuration.setAnalysisCacheLocation(cacheLocation != null ? cacheLocation.toString() : null, cacheFormat);
+        }
         configuration.setIgnoreIncrementalAnalysis(noCache);
 
         if (languageVersion != null) {
@@ -6,6 +6,8 @@ package net.sourceforge.pmd.cli.commands.internal;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -13,6 +15,9 @@ import java.util.List;
 import org.junit.jupiter.api.Test;
 
 import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.MappedAnalysisCache;
+import net.sourceforge.pmd.cache.SharedAnalysisCache;
 import net.sourceforge.pmd.lang.DummyLanguageModule;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.util.CollectionUtil;
@@ -70,6 +75,53 @@ class PmdCommandTest extends BaseCommandTest<PmdCommand> {
         assertError("-R", "-d", "something");
     }
 
+    @Test
+    void testThreadCount() {
+        final PMDConfiguration config = setupAndParse("-t", "3", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertEquals(3, config.getThreads());
+        assertFalse(config.isUseVirtualThreads());
+    }
+
+    @Test
+    void testVirtualThreads() {
+        final PMDConfiguration config = setupAndParse("--threads", "virtual", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertEquals(Runtime.getRuntime().availableProcessors(), config.getThreads());
+        assertTrue(config.isUseVirtualThreads());
+    }
+
+    @Test
+    void testCacheDirectory() {
+        final PMDConfiguration config = setupAndParse("--cache-dir", "cache", "--cache", "pmd.cache", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertTrue(config.getAnalysisCache() instanceof SharedAnalysisCache);
+    }
+
+    @Test
+    void testCacheFormat() {
+        PMDConfiguration config = setupAndParse("--cache", "pmd.cache", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertTrue(config.getAnalysisCache() instanceof FileAnalysisCache);
+
+        config = setupAndParse("--cache", "pmd.cache", "--cache-format", "mapped", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertTrue(config.getAnalysisCache() instanceof MappedAnalysisCache);
+
+        assertError("--cache", "pmd.cache", "--cache-format", "zip", "-d", "a", "-R", "x.xml");
+    }
+
+    @Test
+    void testVirtualThreadsWithConcurrencyCap() {
+        final PMDConfiguration config = setupAndParse("--threads", "virtual:64", "-d", "a", "-R", "x.xml").toConfiguration();
+        assertEquals(64, config.getThreads());
+        assertTrue(config.isUseVirtualThreads());
+    }
+
+    @Test
+    void testInvalidThreads() {
+        assertError("-t", "many", "-d", "a", "-R", "x.xml");
+        assertError("-t", "virtual:", "-d", "a", "-R", "x.xml");
+        assertError("-t", "virtual:many", "-d", "a", "-R", "x.xml");
+        assertError("-t", "virtual:0", "-d", "a", "-R", "x.xml");
+        assertError("-t", "virtual:-2", "-d", "a", "-R", "x.xml");
+    }
+
     private void assertMultipleDirsAndRulesets(final PmdCommand result) {
         final PMDConfiguration config = result.toConfiguration();
         assertEquals(listOf("a", "b"), CollectionUtil.map(config.getInputPathList(), Path::toString));
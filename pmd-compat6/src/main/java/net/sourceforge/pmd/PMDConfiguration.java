@@ -25,8 +25,12 @@ import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.annotation.DeprecatedUntil700;
 import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.AnalysisCacheFormat;
+import net.sourceforge.pmd.cache.DirectoryAnalysisCacheStore;
 import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.MappedAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
+import net.sourceforge.pmd.cache.SharedAnalysisCache;
 import net.sourceforge.pmd.internal.util.ClasspathClassLoader;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -104,6 +108,7 @@ public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = DEFAULT_SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean useVirtualThreads;
     private ClassLoader classLoader = getClass().getClassLoader();
 
     // Rule and source file options
@@ -168,6 +173,30 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Returns whether files should be processed on virtual threads.
+     * See {@link #setUseVirtualThreads(boolean)}.
+     *
+     * @return {@code true} if virtual threads should be used
+     */
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Sets whether each file should be processed on its own virtual thread.
+     * This requires Java 21 or later, on older runtimes, a warning is logged
+     * and the analysis uses platform threads. In this mode, reading files
+     * is overlapped with processing other files, and the {@linkplain #getThreads() thread count}
+     * is the maximum number of files being parsed and analysed at the same
+     * time. If the thread count is zero, this setting is ignored.
+     *
+     * @param useVirtualThreads Whether to use virtual threads
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      *
@@ -510,9 +539,46 @@ public class PMDConfiguration extends AbstractConfiguration {
      * @param cacheLocation The location of the analysis cache to be used.
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
+        setAnalysisCacheLocation(cacheLocation, AnalysisCacheFormat.FILE);
+    }
+
+    /**
+     * Sets the location of the analysis cache to be used, and the format
+     * in which it is stored. This will automatically configure the
+     * appropriate AnalysisCache implementation.
+     *
+     * @param cacheLocation The location of the analysis cache to be used.
+     * @param format        The format of the cache
+     *
+     * @see AnalysisCacheFormat
+     */
+    public void setAnalysisCacheLocation(final String cacheLocation, final AnalysisCacheFormat format) {
+        Objects.requireNonNull(format, "format");
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else if (format == AnalysisCacheFormat.MAPPED) {
+            setAnalysisCache(new MappedAnalysisCache(new File(cacheLocation)));
+        } else {
+            setAnalysisCache(new FileAnalysisCache(new File(cacheLocation)));
+        }
+    }
+
+    /**
+     * Sets the directory of an analysis cache that may be shared by several
+     * machines or checkouts, for instance on a volume mounted by CI agents.
+     * Entries are keyed by the path of the files relative to the current
+     * working directory, and by their contents. This will automatically
+     * configure the appropriate AnalysisCache implementation.
+     *
+     * @param cacheDirectory The directory of the analysis cache to be used.
+     *
+     * @see #setAnalysisCacheLocation(String)
+     */
+    public void setAnalysisCacheDirectory(final String cacheDirectory) {
+        setAnalysisCache(cacheDirectory == null
                 ? new NoopAnalysisCache()
-                : new FileAnalysisCache(new File(cacheLocation)));
+                : new SharedAnalysisCache(new DirectoryAnalysisCacheStore(Paths.get(cacheDirectory)),
+                                          Paths.get("").toAbsolutePath()));
     }
 
 
@@ -89,6 +89,12 @@ public class CPDConfiguration extends AbstractConfiguration {
 
     private boolean failOnViolation = true;
 
+    private int threads = 1;
+
+    private boolean useSuffixArray = false;
+
+    private @Nullable Path cacheLocation;
+
 
     public CPDConfiguration() {
         this(LanguageRegistry.CPD);
@@ -282,6 +288,70 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.failOnViolation = failOnViolation;
     }
 
+    /**
+     * Returns the number of threads used to tokenize files.
+     * Defaults to 1, that is, files are tokenized on the calling thread.
+     *
+     * @return The number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to tokenize files. If zero or one,
+     * files are tokenized on the calling thread.
+     *
+     * @param threads The number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns whether duplicates are found with a suffix array instead of
+     * rolling hashes. See {@link #setUseSuffixArray(boolean)}.
+     *
+     * @return {@code true} if the suffix array algorithm is used
+     */
+    public boolean isUseSuffixArray() {
+        return useSuffixArray;
+    }
+
+    /**
+     * Sets whether duplicates are found with a suffix array instead of
+     * rolling hashes. Both algorithms report the same duplicates. The
+     * suffix array algorithm uses more memory, but is much faster when
+     * a piece of code has many copies, e.g. in generated code.
+     *
+     * @param useSuffixArray Whether to use the suffix array algorithm
+     */
+    public void setUseSuffixArray(boolean useSuffixArray) {
+        this.useSuffixArray = useSuffixArray;
+    }
+
+    /**
+     * Returns the location of the file in which the tokens of each file
+     * are cached between runs, or null if there is no cache.
+     *
+     * @return The location of the cache
+     */
+    public @Nullable Path getCacheLocation() {
+        return cacheLocation;
+    }
+
+    /**
+     * Sets the location of the file in which the tokens of each file are
+     * cached between runs. Then, only the files that changed since the last
+     * run are tokenized again. If null, which is the default, all files
+     * are tokenized.
+     *
+     * @param cacheLocation The location of the cache, or null
+     */
+    public void setCacheLocation(@Nullable Path cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
     // ------------------- compat extensions --------------------
     private FilenameFilter filenameFilter;
 
@@ -10,12 +10,14 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,7 @@ import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.lang.document.FileCollector;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.PmdThreadFactory;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.reporting.ConfigurableFileNameRenderer;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
@@ -413,17 +416,22 @@ public final class PmdAnalysis implements AutoCloseable {
                 langProperties,
                 reporter
             )) {
+                // The executor is shared by all languages, so that the
+                // number of threads does not depend on the number of languages.
+                ExecutorService executor = newAnalysisExecutor();
+
                 // Note the analysis task is shared: all processors see
                 // the same file list, which may contain files for other
                 // languages.
                 AnalysisTask analysisTask = new AnalysisTask(
                     rulesets,
-                    textFiles,
+                    executor != null ? sortLargestFirst(textFiles) : textFiles,
                     listener,
                     configuration.getThreads(),
                     configuration.getAnalysisCache(),
                     reporter,
-                    lpRegistry
+                    lpRegistry,
+                    executor
                 );
 
                 List<AutoCloseable> analyses = new ArrayList<>();
@@ -436,6 +444,9 @@ public final class PmdAnalysis implements AutoCloseable {
                     if (e != null) {
                         reporter.errorEx("Error while joining analysis", e);
                     }
+                    if (executor != null) {
+                        executor.shutdownNow();
+                    }
                 }
 
             } catch (LanguageTerminationException e) {
@@ -453,6 +464,38 @@ public final class PmdAnalysis implements AutoCloseable {
     }
 
 
+    private ExecutorService newAnalysisExecutor() {
+        int threads = configuration.getThreads();
+        if (threads <= 0) {
+            return null;
+        }
+        if (configuration.isUseVirtualThreads()) {
+            ExecutorService executor = PmdThreadFactory.newVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+            reporter.warn("Virtual threads are not supported by this Java runtime, using {0} platform threads instead",
+                          threads);
+        }
+        return PmdThreadFactory.newAnalysisExecutor(threads);
+    }
+
+    /**
+     * Files are scheduled in the order of the list. When running in
+     * parallel, starting with the largest files avoids a long tail where
+     * a single thread processes a big file while the others are idle. Files whose size is unknown
+     * are put last, the sort is stable otherwise.
+     */
+    private static List<TextFile> sortLargestFirst(List<TextFile> textFiles) {
+        List<TextFile> sorted = new ArrayList<>(textFiles);
+        Map<TextFile, Long> sizes = new HashMap<>();
+        for (TextFile file : sorted) {
+            sizes.put(file, file.getSizeHint());
+        }
+        sorted.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+        return sorted;
+    }
+
     private GlobalAnalysisListener createComposedRendererListener(List<Renderer> renderers) throws Exception {
         if (renderers.isEmpty()) {
             return GlobalAnalysisListener.noop();
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
+import net.sourceforge.pmd.lang.JvmLanguagePropertyBundle;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageProcessor;
 import net.sourceforge.pmd.lang.LanguageVersion;
@@ -307,5 +308,49 @@ public interface Rule extends PropertySource {
      */
     Rule deepCopy();
 
+    /**
+     * Returns true if this rule instance may be applied to several files
+     * concurrently, once it has been {@linkplain #initialize(LanguageProcessor) initialized}.
+     * This is the case if the methods {@link #start(RuleContext)}, {@link #apply(Node, RuleContext)}
+     * and {@link #end(RuleContext)} do not modify the state of the rule.
+     * Rules that are thread-safe are shared between the threads of an
+     * analysis, other rules are {@linkplain #deepCopy() copied} for
+     * each thread. By default, rules are assumed not to be thread-safe.
+     *
+     * @return Whether this instance can be shared between threads
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Returns true if the violations reported by this rule may depend on
+     * the auxiliary classpath of the analysis, for instance because the
+     * rule uses type resolution. This is only relevant for rules of languages
+     * that use the auxclasspath, ie whose properties are a {@link JvmLanguagePropertyBundle}.
+     * When the auxclasspath changes, the incremental analysis cache only
+     * invalidates the cached violations of the rules that return true.
+     * By default, rules are assumed to depend on the auxclasspath.
+     *
+     * @return Whether this rule may be affected by changes to the auxclasspath
+     */
+    default boolean dependsOnAuxClasspath() {
+        return true;
+    }
+
+    /**
+     * Returns true if this rule uses the results of type resolution.
+     * Language processors may skip computing the types of all nodes
+     * upfront when no rule of the analysis uses them. The types, and
+     * the analyses that depend on them, are then only computed for the
+     * nodes on which a rule asks for them, so the result of the rule
+     * does not change. By default, this is the same as {@link #dependsOnAuxClasspath()}.
+     *
+     * @return Whether the types of all nodes should be computed for this rule
+     */
+    default boolean usesTypeResolution() {
+        return dependsOnAuxClasspath();
+    }
+
 
 }
@@ -28,6 +28,7 @@ import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
 
 /**
  * This class represents a collection of rules along with some optional filter
@@ -79,6 +80,21 @@ public class RuleSet implements ChecksumAware {
     }
 
     public RuleSet(final RuleSet rs) {
+        this(rs, rule -> true);
+    }
+
+    /**
+     * Copy constructor which only copies the rules which are not
+     * {@linkplain Rule#isThreadSafe() thread-safe}. Thread-safe rules
+     * are shared with the given ruleset.
+     *
+     * @param rs The RuleSet to copy
+     */
+    static RuleSet copyStatefulRules(final RuleSet rs) {
+        return new RuleSet(rs, rule -> !rule.isThreadSafe());
+    }
+
+    private RuleSet(final RuleSet rs, Predicate<Rule> shouldCopy) {
         checksum = rs.checksum;
         fileName = rs.fileName;
         name = rs.name;
@@ -86,7 +102,7 @@ public class RuleSet implements ChecksumAware {
 
         rules = new ArrayList<>(rs.rules.size());
         for (final Rule rule : rs.rules) {
-            rules.add(rule.deepCopy());
+            rules.add(shouldCopy.test(rule) ? rule.deepCopy() : rule);
         }
 
         excludePatterns = rs.excludePatterns; // we can share immutable lists of immutable elements
@@ -741,4 +757,41 @@ public class RuleSet implements ChecksumAware {
     public long getChecksum() {
         return checksum;
     }
+
+    /**
+     * Returns a checksum of the given rule of this ruleset. It changes
+     * when the class, name, language, message or property values of the
+     * rule change, or when the file patterns of this ruleset change.
+     * Unlike {@link #getChecksum()}, it is stable across runs.
+     */
+    /* package */ long getRuleChecksum(Rule rule) {
+        long ruleChecksum = 1;
+        ruleChecksum = ruleChecksum * 31 + Objects.hashCode(rule.getRuleClass());
+        ruleChecksum = ruleChecksum * 31 + Objects.hashCode(rule.getName());
+        ruleChecksum = ruleChecksum * 31 + Objects.hashCode(rule.getLanguage() == null ? null : rule.getLanguage().getTerseName());
+        ruleChecksum = ruleChecksum * 31 + versionChecksum(rule.getMinimumLanguageVersion());
+        ruleChecksum = ruleChecksum * 31 + versionChecksum(rule.getMaximumLanguageVersion());
+        ruleChecksum = ruleChecksum * 31 + Objects.hashCode(rule.getMessage());
+        for (PropertyDescriptor<?> descriptor : rule.getPropertyDescriptors()) {
+            ruleChecksum = ruleChecksum * 31 + descriptor.name().hashCode();
+            ruleChecksum = ruleChecksum * 31 + propertyValueToString(rule, descriptor).hashCode();
+        }
+        // patterns don't implement hashCode
+        for (Pattern pattern : excludePatterns) {
+            ruleChecksum = ruleChecksum * 31 + pattern.pattern().hashCode();
+        }
+        for (Pattern pattern : includePatterns) {
+            ruleChecksum = ruleChecksum * 31 + pattern.pattern().hashCode();
+        }
+        return ruleChecksum;
+    }
+
+    private static int versionChecksum(LanguageVersion version) {
+        return version == null ? 0 : version.getVersion().hashCode();
+    }
+
+    private static <T> String propertyValueToString(Rule rule, PropertyDescriptor<T> descriptor) {
+        // the string representation is used, as some values (eg regexes) don't implement hashCode
+        return descriptor.serializer().toString(rule.getProperty(descriptor));
+    }
 }
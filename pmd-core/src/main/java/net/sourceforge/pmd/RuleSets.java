@@ -9,8 +9,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.benchmark.TimeTracker;
@@ -38,6 +41,8 @@ public class RuleSets {
 
     private RuleApplicator ruleApplicator;
 
+    private LanguageProcessorRegistry initializedWith;
+
     /**
      * Copy constructor. Deep copies RuleSets.
      *
@@ -64,13 +69,54 @@ public class RuleSets {
         this.ruleSets = Collections.singletonList(ruleSet);
     }
 
+    /**
+     * Returns a copy of these rulesets, which may be used by another
+     * thread concurrently with this instance. Rules that are {@linkplain Rule#isThreadSafe() thread-safe}
+     * are shared with this instance, the other rules are deep copied,
+     * and initialized. This instance must have been {@linkplain #initializeRules(LanguageProcessorRegistry, MessageReporter) initialized}
+     * before.
+     *
+     * @param lpReg    Registry used to initialize the copied rules
+     * @param reporter Reporter for initialization errors of the copied rules
+     */
+    public RuleSets copyStatefulRules(LanguageProcessorRegistry lpReg, MessageReporter reporter) {
+        List<RuleSet> rsets = new ArrayList<>(ruleSets.size());
+        for (final RuleSet rs : ruleSets) {
+            rsets.add(RuleSet.copyStatefulRules(rs));
+        }
+        RuleSets copy = new RuleSets(rsets);
+        // shared rules are already initialized
+        copy.initializeRules(lpReg, reporter, rule -> !rule.isThreadSafe());
+        return copy;
+    }
+
     public void initializeRules(LanguageProcessorRegistry lpReg, MessageReporter reporter) {
+        if (initializedWith != null && lpReg == initializedWith) {
+            // This is called by each language processor. The rules may
+            // already be shared with running threads, they must not
+            // be initialized again.
+            return;
+        }
+        initializeRules(lpReg, reporter, rule -> true);
+        initializedWith = lpReg;
+    }
+
+    private void initializeRules(LanguageProcessorRegistry lpReg, MessageReporter reporter, Predicate<Rule> filter) {
         // this is abusing the mutability of RuleSet, will go away eventually.
         for (RuleSet rset : ruleSets) {
             for (Iterator<Rule> iterator = rset.getRules().iterator(); iterator.hasNext();) {
                 Rule rule = iterator.next();
+                if (!filter.test(rule)) {
+                    continue;
+                }
                 try {
                     rule.initialize(lpReg.getProcessor(rule.getLanguage()));
+                    if (rule.isThreadSafe()) {
+                        // The instance may be shared between threads, make
+                        // sure the lazily computed selector is published
+                        // before that.
+                        rule.getTargetSelector();
+                    }
                 } catch (Exception e) {
                     reporter.errorEx(
                         "Exception while initializing rule " + rule.getName() + ", the rule will not be run", e);
@@ -142,6 +188,21 @@ public class RuleSets {
      * @param listener Listener that will handle events while analysing.
      */
     public void apply(RootNode root, FileAnalysisListener listener) {
+        apply(root, listener, rule -> true);
+    }
+
+    /**
+     * Apply the applicable rules that match the given filter to the
+     * compilation units. This is used to only apply some rules on files
+     * whose results for the other rules are known, eg from the analysis
+     * cache.
+     *
+     * @param root       the List of compilation units; the type these must have,
+     *                   depends on the source language
+     * @param listener   Listener that will handle events while analysing.
+     * @param ruleFilter Selects the rules to apply
+     */
+    public void apply(RootNode root, FileAnalysisListener listener, Predicate<? super Rule> ruleFilter) {
         if (ruleApplicator == null) {
             // initialize here instead of ctor, because some rules properties
             // are set after creating the ruleset, and jaxen xpath queries
@@ -155,7 +216,7 @@ public class RuleSets {
 
         for (RuleSet ruleSet : ruleSets) {
             if (ruleSet.applies(root.getTextDocument().getFileId())) {
-                ruleApplicator.apply(ruleSet.getRules(), listener);
+                ruleApplicator.apply(ruleSet.getRules(), ruleFilter, listener);
             }
         }
     }
@@ -204,6 +265,25 @@ public class RuleSets {
         }
     }
 
+    /**
+     * Returns a checksum for each rule of these rulesets. The checksum of
+     * a rule changes when its class, name, language, message or property
+     * values change, or when the file patterns of its ruleset change.
+     * This is used by the analysis cache to only apply again the rules
+     * that changed since a file was analysed.
+     *
+     * @return A map of rules to their checksum
+     */
+    public Map<Rule, Long> getRuleChecksums() {
+        Map<Rule, Long> checksums = new LinkedHashMap<>();
+        for (RuleSet ruleSet : ruleSets) {
+            for (Rule rule : ruleSet.getRules()) {
+                checksums.merge(rule, ruleSet.getRuleChecksum(rule), (a, b) -> a * 31 + b);
+            }
+        }
+        return checksums;
+    }
+
     /**
      * Retrieves a checksum of the rulesets being used. Any change to any rule
      * of any ruleset should trigger a checksum change.
@@ -158,6 +158,24 @@ public final class TimeTracker {
         }
     }
 
+    /**
+     * Counts an occurrence of an operation, without measuring its time.
+     * This is useful for operations that are too short and frequent to
+     * be timed, e.g. cache hits. The count is reported as the number of
+     * calls of the operation.
+     *
+     * @param category The category under which to track the operation.
+     * @param label A label to be added to the category.
+     */
+    public static void countOperation(final TimedOperationCategory category, final String label) {
+        if (!trackTime) {
+            return;
+        }
+
+        ACCUMULATED_RESULTS.computeIfAbsent(new TimedOperationKey(category, label), k -> new TimedResult())
+                           .callCount.getAndIncrement();
+    }
+
     public static void bench(String label, Runnable runnable) {
         try (TimedOperation ignored = startOperation(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, label)) {
             runnable.run();
@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.cache;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -18,15 +20,23 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.Report.ProcessingError;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.annotation.InternalApi;
@@ -35,6 +45,9 @@ import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
 import net.sourceforge.pmd.internal.util.IOUtil;
+import net.sourceforge.pmd.lang.JvmLanguagePropertyBundle;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextDocument;
 import net.sourceforge.pmd.lang.document.TextFile;
@@ -54,8 +67,15 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected final String pmdVersion;
     protected final ConcurrentMap<FileId, AnalysisResult> fileResultsCache = new ConcurrentHashMap<>();
     protected final ConcurrentMap<FileId, AnalysisResult> updatedResultsCache = new ConcurrentHashMap<>();
+    /** Metadata fingerprints of the files that were not up to date according to their metadata. */
+    private final ConcurrentMap<FileId, Long> currentMetadata = new ConcurrentHashMap<>();
     protected final CachedRuleMapper ruleMapper = new CachedRuleMapper();
-    protected long rulesetChecksum;
+    /** Checksums of the rules, by rule key, with which the cached results were computed. */
+    protected Map<String, Long> ruleChecksums = Collections.emptyMap();
+    /** Rules that were added or changed since the cached results were computed. */
+    private List<Rule> staleRules = Collections.emptyList();
+    /** Keys of the rules that were added, changed, or removed since the cached results were computed. */
+    private Set<String> invalidRuleKeys = Collections.emptySet();
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
 
@@ -66,27 +86,75 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         pmdVersion = PMDVersion.VERSION;
     }
 
+    @Override
+    public boolean isUpToDateByMetadata(final TextFile file) {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
+            final long metadata = file.getMetadataFingerprint();
+            if (metadata == 0) {
+                return false;
+            }
+
+            final AnalysisResult cachedResult = getCachedResult(file.getFileId());
+            if (cachedResult != null && cachedResult.getFileMetadata() == metadata
+                && !hasStaleRules(file.getLanguageVersion())) {
+                LOG.trace("Incremental Analysis cache HIT - metadata unchanged");
+
+                if (invalidRuleKeys.isEmpty()) {
+                    // copy results over
+                    updatedResultsCache.put(file.getFileId(), cachedResult);
+                } else {
+                    // violations of removed rules must be dropped
+                    updatedResultsCache.put(file.getFileId(),
+                                            new AnalysisResult(cachedResult.getFileChecksum(), metadata,
+                                                               getValidViolations(cachedResult)));
+                }
+                return true;
+            }
+
+            // the contents will be checked, record the metadata with the new result
+            currentMetadata.put(file.getFileId(), metadata);
+            return false;
+        }
+    }
+
     @Override
     public boolean isUpToDate(final TextDocument document) {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
-            final AnalysisResult cachedResult = fileResultsCache.get(document.getFileId());
+            final AnalysisResult cachedResult = getCachedResult(document);
+            final Long metadata = currentMetadata.remove(document.getFileId());
+            final long fileMetadata = metadata == null ? 0 : metadata;
             final AnalysisResult updatedResult;
 
             // is this a known file? has it changed?
-            final boolean upToDate = cachedResult != null
+            final boolean contentsUpToDate = cachedResult != null
                 && cachedResult.getFileChecksum() == document.getCheckSum();
+            // have the rules changed?
+            final boolean upToDate = contentsUpToDate && !hasStaleRules(document.getLanguageVersion());
 
             if (upToDate) {
                 LOG.trace("Incremental Analysis cache HIT");
-                
-                // copy results over
-                updatedResult = cachedResult;
+
+                if (cachedResult.getFileMetadata() == fileMetadata && invalidRuleKeys.isEmpty()) {
+                    // copy results over
+                    updatedResult = cachedResult;
+                } else {
+                    // same contents, but the metadata changed, eg the file was touched,
+                    // or violations of removed rules must be dropped
+                    updatedResult = new AnalysisResult(cachedResult.getFileChecksum(), fileMetadata,
+                                                       getValidViolations(cachedResult));
+                }
+            } else if (contentsUpToDate) {
+                LOG.trace("Incremental Analysis cache PARTIAL HIT - rules changed");
+
+                // Only the changed rules will be applied. The valid cached
+                // violations are reported again, and recorded like new ones.
+                updatedResult = new AnalysisResult(document.getCheckSum(), fileMetadata, new ArrayList<>());
             } else {
                 LOG.trace("Incremental Analysis cache MISS - {}",
                           cachedResult != null ? "file changed" : "no previous result found");
                 
                 // New file being analyzed, create new empty entry
-                updatedResult = new AnalysisResult(document.getCheckSum(), new ArrayList<>());
+                updatedResult = new AnalysisResult(document.getCheckSum(), fileMetadata, new ArrayList<>());
             }
 
             updatedResultsCache.put(document.getFileId(), updatedResult);
@@ -96,15 +164,95 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     }
 
     @Override
-    public List<RuleViolation> getCachedViolations(final TextDocument sourceFile) {
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getFileId());
+    public Predicate<Rule> getRulesToApply(final TextDocument document) {
+        final AnalysisResult cachedResult = getCachedResult(document);
+        if (cachedResult == null || cachedResult.getFileChecksum() != document.getCheckSum()) {
+            return rule -> true;
+        }
+        // only the rules that changed since the file was analysed
+        return rule -> invalidRuleKeys.contains(CachedRuleMapper.getRuleKey(rule));
+    }
+
+    @Override
+    public List<RuleViolation> getCachedViolations(final TextFile file) {
+        final AnalysisResult analysisResult = getCachedResult(file.getFileId());
 
         if (analysisResult == null) {
             // new file, avoid nulls
             return Collections.emptyList();
         }
 
-        return analysisResult.getViolations();
+        return getValidViolations(analysisResult);
+    }
+
+    @Override
+    public List<RuleViolation> getCachedViolations(final TextDocument sourceFile) {
+        final AnalysisResult analysisResult = getCachedResult(sourceFile);
+
+        if (analysisResult == null || analysisResult.getFileChecksum() != sourceFile.getCheckSum()) {
+            // new or changed file, avoid nulls
+            return Collections.emptyList();
+        }
+
+        return getValidViolations(analysisResult);
+    }
+
+    /**
+     * Returns the cached violations of the given result, except those
+     * of rules that were added, changed or removed since then.
+     */
+    private List<RuleViolation> getValidViolations(final AnalysisResult analysisResult) {
+        if (invalidRuleKeys.isEmpty()) {
+            return analysisResult.getViolations();
+        }
+
+        final List<RuleViolation> validViolations = new ArrayList<>();
+        for (final RuleViolation violation : analysisResult.getViolations()) {
+            final String ruleKey = violation instanceof CachedRuleViolation
+                                   ? ((CachedRuleViolation) violation).getRuleKey()
+                                   : CachedRuleMapper.getRuleKey(violation.getRule());
+            if (!invalidRuleKeys.contains(ruleKey)) {
+                validViolations.add(violation);
+            }
+        }
+        return validViolations;
+    }
+
+    /**
+     * Returns true if some rules that apply to the given language version
+     * were added or changed since the cached results were computed.
+     */
+    private boolean hasStaleRules(final LanguageVersion languageVersion) {
+        for (final Rule rule : staleRules) {
+            if (RuleSet.applies(rule, languageVersion)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the result of the previous analysis of the given file, or
+     * null if there is none. By default, this looks up results that were
+     * loaded into {@link #fileResultsCache}. Implementations may override
+     * this to load results lazily.
+     *
+     * @param fileId The id of the file
+     */
+    protected @Nullable AnalysisResult getCachedResult(final FileId fileId) {
+        return fileResultsCache.get(fileId);
+    }
+
+    /**
+     * Returns the result of the previous analysis of the given document,
+     * or null if there is none. By default, this returns the result of
+     * {@link #getCachedResult(FileId)}. Implementations may override this
+     * to look up results by the contents of the document.
+     *
+     * @param document The document being analysed
+     */
+    protected @Nullable AnalysisResult getCachedResult(final TextDocument document) {
+        return getCachedResult(document.getFileId());
     }
 
     @Override
@@ -120,14 +268,43 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected abstract boolean cacheExists();
 
 
+    /**
+     * Discards all the results of the previous analysis. This is called
+     * by {@link #checkValidity(RuleSets, ClassLoader, Collection)} when
+     * the cache is found to be invalid.
+     */
+    protected void clearCache() {
+        fileResultsCache.clear();
+    }
+
+
     @Override
     public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "validity check")) {
             boolean cacheIsValid = cacheExists();
 
-            if (cacheIsValid && ruleSets.getChecksum() != rulesetChecksum) {
-                LOG.debug("Analysis cache invalidated, rulesets changed.");
-                cacheIsValid = false;
+            // Changes to the rules invalidate the cached results of those rules only
+            final Map<String, Long> currentRuleChecksums = new HashMap<>();
+            final Map<String, Rule> rulesByKey = new HashMap<>();
+            for (final Map.Entry<Rule, Long> entry : ruleSets.getRuleChecksums().entrySet()) {
+                final String ruleKey = CachedRuleMapper.getRuleKey(entry.getKey());
+                currentRuleChecksums.merge(ruleKey, entry.getValue(), (a, b) -> a * 31 + b);
+                rulesByKey.put(ruleKey, entry.getKey());
+            }
+
+            final List<Rule> changedRules = new ArrayList<>();
+            final Set<String> changedRuleKeys = new HashSet<>();
+            for (final Map.Entry<String, Long> entry : currentRuleChecksums.entrySet()) {
+                if (!entry.getValue().equals(ruleChecksums.get(entry.getKey()))) {
+                    changedRules.add(rulesByKey.get(entry.getKey()));
+                    changedRuleKeys.add(entry.getKey());
+                }
+            }
+            for (final String ruleKey : ruleChecksums.keySet()) {
+                if (!currentRuleChecksums.containsKey(ruleKey)) {
+                    // removed rule
+                    changedRuleKeys.add(ruleKey);
+                }
             }
 
             final long currentAuxClassPathChecksum;
@@ -135,35 +312,91 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
                 // we don't want to close our aux classpath loader - we still need it...
                 @SuppressWarnings("PMD.CloseResource") final URLClassLoader urlClassLoader = (URLClassLoader) auxclassPathClassLoader;
                 currentAuxClassPathChecksum = FINGERPRINTER.fingerprint(urlClassLoader.getURLs());
-
-                if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
-                    // TODO some rules don't need that (in fact, some languages)
-                    LOG.debug("Analysis cache invalidated, auxclasspath changed.");
-                    cacheIsValid = false;
-                }
             } else {
                 currentAuxClassPathChecksum = 0;
             }
 
+            if (cacheIsValid && currentAuxClassPathChecksum != auxClassPathChecksum) {
+                // Only the rules that may use type resolution are affected
+                int affectedRules = 0;
+                final Map<Language, Boolean> usesAuxClasspath = new HashMap<>();
+                for (final Map.Entry<String, Rule> entry : rulesByKey.entrySet()) {
+                    final Rule rule = entry.getValue();
+                    if (!changedRuleKeys.contains(entry.getKey()) && dependsOnAuxClasspath(rule, usesAuxClasspath)) {
+                        changedRules.add(rule);
+                        changedRuleKeys.add(entry.getKey());
+                        affectedRules++;
+                    }
+                }
+                LOG.debug("Auxclasspath changed, invalidating the cached violations of {} rules.", affectedRules);
+            }
+
+            if (cacheIsValid && !changedRules.isEmpty() && changedRules.size() == currentRuleChecksums.size()) {
+                LOG.debug("Analysis cache invalidated, all rules changed.");
+                cacheIsValid = false;
+            } else if (cacheIsValid && !changedRuleKeys.isEmpty()) {
+                LOG.debug("Analysis cache partially invalidated, {} rules added, changed or removed.", changedRuleKeys.size());
+            }
+
             final long currentExecutionClassPathChecksum = FINGERPRINTER.fingerprint(getClassPathEntries());
             if (cacheIsValid && currentExecutionClassPathChecksum != executionClassPathChecksum) {
                 LOG.debug("Analysis cache invalidated, execution classpath changed.");
                 cacheIsValid = false;
             }
 
-            if (!cacheIsValid) {
-                // Clear the cache
-                fileResultsCache.clear();
+            if (cacheIsValid) {
+                staleRules = changedRules;
+                invalidRuleKeys = changedRuleKeys;
+            } else {
+                clearCache();
+                staleRules = Collections.emptyList();
+                invalidRuleKeys = Collections.emptySet();
             }
 
             // Update the local checksums
-            rulesetChecksum = ruleSets.getChecksum();
+            ruleChecksums = currentRuleChecksums;
             auxClassPathChecksum = currentAuxClassPathChecksum;
             executionClassPathChecksum = currentExecutionClassPathChecksum;
             ruleMapper.initialize(ruleSets);
         }
     }
 
+    /**
+     * Loads the checksums of the rules, as written by {@link #storeRuleChecksums(DataOutputStream)}.
+     */
+    protected void loadRuleChecksums(final DataInputStream inputStream) throws IOException {
+        final int count = inputStream.readInt();
+        final Map<String, Long> checksums = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            final String ruleKey = inputStream.readUTF();
+            checksums.put(ruleKey, inputStream.readLong());
+        }
+        ruleChecksums = checksums;
+    }
+
+    /**
+     * Stores the checksums of the rules, to find out which rules changed
+     * when the cache is loaded again.
+     */
+    protected void storeRuleChecksums(final DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(ruleChecksums.size());
+        for (final Map.Entry<String, Long> entry : ruleChecksums.entrySet()) {
+            outputStream.writeUTF(entry.getKey());
+            outputStream.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Returns true if the violations of the rule may change when the
+     * auxclasspath changes. Only languages that have an auxclasspath,
+     * ie whose properties are a {@link JvmLanguagePropertyBundle}, are
+     * concerned, and rules may opt out with {@link Rule#dependsOnAuxClasspath()}.
+     */
+    /* package */ static boolean dependsOnAuxClasspath(final Rule rule, final Map<Language, Boolean> usesAuxClasspath) {
+        return rule.dependsOnAuxClasspath()
+            && usesAuxClasspath.computeIfAbsent(rule.getLanguage(), lang -> lang.newPropertyBundle() instanceof JvmLanguagePropertyBundle);
+    }
+
     private static boolean isClassPathWildcard(String entry) {
         return entry.endsWith("/*") || entry.endsWith("\\*");
     }
@@ -6,8 +6,11 @@ package net.sourceforge.pmd.cache;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
+import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.annotation.InternalApi;
@@ -43,13 +46,53 @@ public interface AnalysisCache {
      */
     boolean isUpToDate(TextDocument document);
 
+    /**
+     * Checks if a given file is up to date in the cache using only its
+     * {@linkplain TextFile#getMetadataFingerprint() metadata}, without
+     * reading it. If this returns true, the file can be skipped from analysis,
+     * and its violations are retrieved with {@link #getCachedViolations(TextFile)}.
+     * Otherwise, the file must be read and checked with {@link #isUpToDate(TextDocument)}.
+     *
+     * @param file The file to check in the cache
+     * @return True if the cache is a hit, false otherwise
+     */
+    default boolean isUpToDateByMetadata(TextFile file) {
+        return false;
+    }
+
+    /**
+     * Retrieves cached violations for the given file. Make sure to call {@link #isUpToDateByMetadata(TextFile)} first.
+     * @param file The file to check in the cache
+     * @return The list of cached violations.
+     */
+    default List<RuleViolation> getCachedViolations(TextFile file) {
+        return Collections.emptyList();
+    }
+
     /**
      * Retrieves cached violations for the given file. Make sure to call {@link #isUpToDate(TextDocument)} first.
+     * If the file is not up to date, because some rules changed since it
+     * was cached, this returns the violations of the other rules, which
+     * are still valid. If the file itself changed, this returns an empty list.
+     *
      * @param sourceFile The file to check in the cache
      * @return The list of cached violations.
      */
     List<RuleViolation> getCachedViolations(TextDocument sourceFile);
 
+    /**
+     * Returns a filter selecting the rules that must be applied on a file
+     * that is not {@linkplain #isUpToDate(TextDocument) up to date}. If the
+     * file has not changed, only the rules that changed since it was cached
+     * need to be applied. Otherwise, all rules must be applied.
+     *
+     * @param document The file to check in the cache
+     * @return A filter for the rules to apply
+     */
+    default Predicate<Rule> getRulesToApply(TextDocument document) {
+        return rule -> true;
+    }
+
     /**
      * Notifies the cache that analysis of the given file has failed and should not be cached.
      * @param sourceFile The file whose analysis failed
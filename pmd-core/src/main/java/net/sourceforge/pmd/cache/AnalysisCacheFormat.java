@@ -0,0 +1,45 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.util.Locale;
+
+/**
+ * The storage format of an analysis cache stored at a single location,
+ * see {@link net.sourceforge.pmd.PMDConfiguration#setAnalysisCacheLocation(String, AnalysisCacheFormat)}.
+ */
+public enum AnalysisCacheFormat {
+    /**
+     * A single file, which is entirely read when the analysis starts,
+     * and entirely written when it ends. This is the default.
+     */
+    FILE,
+    /**
+     * A memory-mapped, append-only store, which only reads the entries
+     * of the analysed files, and only writes the entries that changed.
+     * This is faster on large projects where few files change between
+     * runs. The store is made of several files next to the given location.
+     */
+    MAPPED;
+
+    /** Returns the name of the format, as used on the command line. */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the format with the given name, ignoring case.
+     *
+     * @throws IllegalArgumentException If there is no such format
+     */
+    public static AnalysisCacheFormat fromName(String name) {
+        for (AnalysisCacheFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown analysis cache format '" + name + "'");
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.IOException;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * A content-addressed store of cache entries, used by {@link SharedAnalysisCache}.
+ * Keys are derived from the contents of the analysed file and from the
+ * configuration of the analysis, so an entry never changes once it has been
+ * stored. Implementations must be safe to use by several threads, and by
+ * several processes sharing the same store.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public interface AnalysisCacheStore {
+
+    /**
+     * Returns the entry stored with the given key, or null if there is none.
+     *
+     * @param key A lowercase hexadecimal string
+     *
+     * @throws IOException If the entry cannot be read
+     */
+    byte @Nullable [] load(String key) throws IOException;
+
+    /**
+     * Returns true if an entry is stored with the given key.
+     *
+     * @param key A lowercase hexadecimal string
+     */
+    boolean contains(String key);
+
+    /**
+     * Stores an entry. Readers must either see the complete entry or no
+     * entry at all. If an entry with the same key already exists, it may
+     * be kept or replaced, as it has the same contents.
+     *
+     * @param key   A lowercase hexadecimal string
+     * @param entry The entry to store
+     *
+     * @throws IOException If the entry cannot be written
+     */
+    void store(String key, byte[] entry) throws IOException;
+}
@@ -4,11 +4,16 @@
 
 package net.sourceforge.pmd.cache;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 
 /**
  * The result of a single file analysis.
@@ -20,10 +25,16 @@ import net.sourceforge.pmd.annotation.InternalApi;
 public class AnalysisResult {
 
     private final long fileChecksum;
+    private final long fileMetadata;
     private final List<RuleViolation> violations;
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
+        this(fileChecksum, 0, violations);
+    }
+
+    public AnalysisResult(final long fileChecksum, final long fileMetadata, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
+        this.fileMetadata = fileMetadata;
         this.violations = violations;
     }
 
@@ -35,6 +46,15 @@ public class AnalysisResult {
         return fileChecksum;
     }
 
+    /**
+     * Returns the fingerprint of the metadata of the file, or 0 if it is unknown.
+     *
+     * @see TextFile#getMetadataFingerprint()
+     */
+    public long getFileMetadata() {
+        return fileMetadata;
+    }
+
     public List<RuleViolation> getViolations() {
         return violations;
     }
@@ -46,4 +66,49 @@ public class AnalysisResult {
     public void addViolation(final RuleViolation ruleViolation) {
         this.violations.add(ruleViolation);
     }
+
+    /**
+     * Helper method to load an {@link AnalysisResult} from an input stream.
+     *
+     * @param stream     The stream from which to load the result
+     * @param fileFileId The file the violations are reported on
+     * @param mapper     The mapper to use to find rules of the violations
+     *
+     * @return The loaded result
+     *
+     * @throws IOException if there are errors reading from the stream
+     */
+    /* package */ static AnalysisResult loadFromStream(DataInputStream stream,
+                                                       FileId fileFileId,
+                                                       CachedRuleMapper mapper) throws IOException {
+        final long checksum = stream.readLong();
+        final long metadata = stream.readLong();
+
+        final int countViolations = stream.readInt();
+        final List<RuleViolation> violations = new ArrayList<>(countViolations);
+        for (int i = 0; i < countViolations; i++) {
+            violations.add(CachedRuleViolation.loadFromStream(stream, fileFileId, mapper));
+        }
+        return new AnalysisResult(checksum, metadata, violations);
+    }
+
+    /**
+     * Helper method to store an {@link AnalysisResult} in an output stream.
+     *
+     * @param stream The stream on which to store the result
+     * @param result The result to store
+     *
+     * @throws IOException on errors writing to the stream
+     */
+    /* package */ static void storeToStream(final DataOutputStream stream,
+                                            final AnalysisResult result) throws IOException {
+        final List<RuleViolation> violations = result.getViolations();
+
+        stream.writeLong(result.getFileChecksum());
+        stream.writeLong(result.getFileMetadata());
+        stream.writeInt(violations.size());
+        for (final RuleViolation rv : violations) {
+            CachedRuleViolation.storeToStream(stream, rv);
+        }
+    }
 }
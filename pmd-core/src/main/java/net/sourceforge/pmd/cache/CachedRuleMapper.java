@@ -39,11 +39,18 @@ public class CachedRuleMapper {
      */
     public void initialize(final RuleSets rs) {
         for (final Rule r : rs.getAllRules()) {
-            cachedRulesInstances.put(getRuleKey(r.getRuleClass(), r.getName(), r.getLanguage().getTerseName()), r);
+            cachedRulesInstances.put(getRuleKey(r), r);
         }
     }
 
-    private String getRuleKey(final String className, final String ruleName, final String languageName) {
+    /**
+     * Returns the key that identifies the given rule in the cache.
+     */
+    /* package */ static String getRuleKey(final Rule rule) {
+        return getRuleKey(rule.getRuleClass(), rule.getName(), rule.getLanguage().getTerseName());
+    }
+
+    /* package */ static String getRuleKey(final String className, final String ruleName, final String languageName) {
         return className + "$$" + ruleName + "$$" + languageName;
     }
 }
@@ -61,6 +61,14 @@ public final class CachedRuleViolation implements RuleViolation {
         return mapper.getRuleForClass(ruleClassName, ruleName, ruleTargetLanguage);
     }
 
+    /**
+     * Returns the key of the rule of this violation, as in {@link CachedRuleMapper}.
+     * This is available even if the rule is not part of the current analysis.
+     */
+    /* package */ String getRuleKey() {
+        return CachedRuleMapper.getRuleKey(ruleClassName, ruleName, ruleTargetLanguage);
+    }
+
     @Override
     public String getDescription() {
         return description;
@@ -0,0 +1,103 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * An {@link AnalysisCacheStore} that stores each entry in its own file.
+ * Files are sharded in subdirectories named after the first characters of
+ * their key, so that no directory contains too many files. Entries are
+ * written to a temporary file, which is then atomically renamed, so the
+ * store may be shared by several processes, for instance by CI agents
+ * mounting the same volume.
+ *
+ * <p>Entries are never removed by PMD. As entries are immutable, old
+ * entries may be deleted at any time, eg based on their last access time,
+ * while no analysis is running.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class DirectoryAnalysisCacheStore implements AnalysisCacheStore {
+
+    /** Number of characters of the key used to name the shard directory. */
+    private static final int SHARD_PREFIX_LENGTH = 2;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+
+    /**
+     * Creates a store in the given directory. The directory and its
+     * shards are created when entries are stored.
+     *
+     * @param root The root directory of the store
+     */
+    public DirectoryAnalysisCacheStore(final Path root) {
+        this.root = root;
+    }
+
+    private Path entryFile(final String key) {
+        if (key.length() <= SHARD_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Key is too short: " + key);
+        }
+        return root.resolve(key.substring(0, SHARD_PREFIX_LENGTH)).resolve(key);
+    }
+
+    @Override
+    public byte @Nullable [] load(final String key) throws IOException {
+        try {
+            return Files.readAllBytes(entryFile(key));
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean contains(final String key) {
+        return Files.isRegularFile(entryFile(key));
+    }
+
+    @Override
+    public void store(final String key, final byte[] entry) throws IOException {
+        final Path target = entryFile(key);
+        final Path shard = target.getParent();
+        Files.createDirectories(shard);
+
+        final Path temp = Files.createTempFile(shard, key, TEMP_SUFFIX);
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                outputStream.write(entry);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                // Another writer may create the entry in between, it has the same contents
+                Files.move(temp, target);
+            }
+        } catch (final FileAlreadyExistsException e) {
+            // stored concurrently by another writer
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryAnalysisCacheStore[" + root + "]";
+    }
+}
@@ -12,15 +12,12 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.RuleSets;
-import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
@@ -77,7 +74,7 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                         // Cache seems valid, load the rest
 
                         // Get checksums
-                        rulesetChecksum = inputStream.readLong();
+                        loadRuleChecksums(inputStream);
                         auxClassPathChecksum = inputStream.readLong();
                         executionClassPathChecksum = inputStream.readLong();
 
@@ -90,15 +87,7 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                                           filePathId);
                                 fileId = FileId.fromURI(filePathId);
                             }
-                            final long checksum = inputStream.readLong();
-
-                            final int countViolations = inputStream.readInt();
-                            final List<RuleViolation> violations = new ArrayList<>(countViolations);
-                            for (int i = 0; i < countViolations; i++) {
-                                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileId, ruleMapper));
-                            }
-
-                            fileResultsCache.put(fileId, new AnalysisResult(checksum, violations));
+                            fileResultsCache.put(fileId, AnalysisResult.loadFromStream(inputStream, fileId, ruleMapper));
                         }
 
                         LOG.debug("Analysis cache loaded from {}", cacheFile);
@@ -140,20 +129,13 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
             ) {
                 outputStream.writeUTF(pmdVersion);
 
-                outputStream.writeLong(rulesetChecksum);
+                storeRuleChecksums(outputStream);
                 outputStream.writeLong(auxClassPathChecksum);
                 outputStream.writeLong(executionClassPathChecksum);
 
                 for (final Map.Entry<FileId, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
-                    final List<RuleViolation> violations = resultEntry.getValue().getViolations();
-
                     outputStream.writeUTF(resultEntry.getKey().getUriString()); // the path id
-                    outputStream.writeLong(resultEntry.getValue().getFileChecksum());
-
-                    outputStream.writeInt(violations.size());
-                    for (final RuleViolation rv : violations) {
-                        CachedRuleViolation.storeToStream(outputStream, rv);
-                    }
+                    AnalysisResult.storeToStream(outputStream, resultEntry.getValue());
                 }
                 if (cacheFileShouldBeCreated) {
                     LOG.debug("Analysis cache created");
@@ -0,0 +1,486 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+/**
+ * An analysis cache backed by an append-only store, which is memory-mapped
+ * and read lazily. Unlike {@link FileAnalysisCache}, which reads all entries
+ * when the analysis starts and writes all of them back when it ends, this
+ * cache only reads the entries of the files that are analysed, and only
+ * writes the entries that changed. The cost of using the cache is then
+ * proportional to the number of analysed files, not to the size of the cache.
+ *
+ * <p>The cache is made of three files:
+ * <ul>
+ * <li>A header, at the configured location. It contains the checksums used
+ * to validate the cache, and the generation of the two other files.
+ * <li>A data file, to which records are appended. A record contains the path
+ * id of a file, the checksum of its contents, the fingerprint of its metadata
+ * and its violations. A record is dead once it is replaced by a newer record,
+ * or when its file is not part of the analysis anymore. The data file is
+ * compacted into a new generation when dead records take up too much space.
+ * <li>An index, which is a hash table with open addressing. It maps the hash
+ * of the path id of a file to the position of its record in the data file.
+ * </ul>
+ *
+ * <p>A new generation of the index is written every time the cache is
+ * persisted. The header is written last, so that an interrupted analysis
+ * leaves the previous cache usable.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class MappedAnalysisCache extends AbstractAnalysisCache {
+
+    private static final int MAGIC = 0x504d4443; // "PMDC"
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String INDEX_SUFFIX = ".idx.";
+    private static final String DATA_SUFFIX = ".data.";
+
+    /** The index starts with its capacity and number of entries. */
+    private static final int INDEX_HEADER_SIZE = 8;
+    /** A slot of the index contains the hash of the key, and the offset and length of the record. */
+    private static final int SLOT_SIZE = 20;
+    private static final int MIN_INDEX_CAPACITY = 16;
+
+    /** The data file is compacted when dead records take up more than this ratio of it. */
+    private static final double MAX_DEAD_RATIO = 0.5;
+    /** Data files smaller than this are not compacted. */
+    private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final File headerFile;
+
+    private long indexGeneration;
+    private long dataGeneration;
+
+    // Those are null if there is no usable cache
+    private ByteBuffer index;
+    private ByteBuffer data;
+
+    /**
+     * Creates a new cache backed by the given file. The index and data
+     * files of the cache are created next to it.
+     *
+     * @param cache The file on which to store the header of the analysis cache
+     */
+    public MappedAnalysisCache(final File cache) {
+        super();
+        this.headerFile = cache;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
+        // map cached data before checking for validity
+        load();
+        super.checkValidity(ruleSets, auxclassPathClassLoader, files);
+    }
+
+    /**
+     * Reads the header of the cache and maps the index and data files.
+     * Records are only read when they are looked up.
+     */
+    private void load() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
+            if (headerFile.isDirectory()) {
+                LOG.error("The configured cache location must be the path to a file, but is a directory.");
+                return;
+            } else if (!headerFile.isFile() || headerFile.length() == 0) {
+                return;
+            }
+
+            try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(headerFile.toPath())))) {
+
+                if (inputStream.readInt() != MAGIC || inputStream.readInt() != FORMAT_VERSION
+                    || !PMDVersion.VERSION.equals(inputStream.readUTF())) {
+                    LOG.debug("Analysis cache invalidated, PMD version changed.");
+                    return;
+                }
+
+                loadRuleChecksums(inputStream);
+                final long cachedAuxClassPathChecksum = inputStream.readLong();
+                final long cachedExecutionClassPathChecksum = inputStream.readLong();
+                final long cachedIndexGeneration = inputStream.readLong();
+                final long cachedDataGeneration = inputStream.readLong();
+                final long dataLength = inputStream.readLong();
+
+                final ByteBuffer cachedIndex = map(siblingFile(INDEX_SUFFIX, cachedIndexGeneration), -1);
+                final ByteBuffer cachedData = map(siblingFile(DATA_SUFFIX, cachedDataGeneration), dataLength);
+                final int capacity = cachedIndex.getInt(0);
+                if (Integer.bitCount(capacity) != 1
+                    || cachedIndex.capacity() != INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                    throw new EOFException();
+                }
+
+                auxClassPathChecksum = cachedAuxClassPathChecksum;
+                executionClassPathChecksum = cachedExecutionClassPathChecksum;
+                indexGeneration = cachedIndexGeneration;
+                dataGeneration = cachedDataGeneration;
+                index = cachedIndex;
+                data = cachedData;
+
+                LOG.debug("Analysis cache loaded from {}", headerFile);
+            } catch (final EOFException e) {
+                LOG.warn("Cache file {} is malformed, will not be used for current analysis", headerFile.getPath());
+            } catch (final IOException e) {
+                LOG.error("Could not load analysis cache from file: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Maps the first bytes of the given file in memory, or the whole file if
+     * the size is negative. The mapping stays valid after the channel is closed.
+     */
+    private static ByteBuffer map(final File file, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long mappedSize = size < 0 ? channel.size() : size;
+            if (mappedSize > channel.size()) {
+                throw new EOFException();
+            } else if (mappedSize > Integer.MAX_VALUE) {
+                throw new IOException("Cache file " + file + " is too large");
+            }
+            return channel.map(MapMode.READ_ONLY, 0, mappedSize);
+        }
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        return index != null;
+    }
+
+    @Override
+    protected void clearCache() {
+        super.clearCache();
+        index = null;
+        data = null;
+    }
+
+    @Override
+    protected @Nullable AnalysisResult getCachedResult(final FileId fileId) {
+        AnalysisResult result = fileResultsCache.get(fileId);
+        if (result == null && index != null) {
+            result = lookup(fileId);
+            if (result != null) {
+                final AnalysisResult previous = fileResultsCache.putIfAbsent(fileId, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
+
+    private @Nullable StoredResult lookup(final FileId fileId) {
+        final String key = fileId.getUriString();
+        final long hash = hash(key);
+        final int capacity = index.getInt(0);
+        final int mask = capacity - 1;
+
+        for (int slot = (int) hash & mask, probes = 0; probes < capacity; slot = (slot + 1) & mask, probes++) {
+            final int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            final int length = index.getInt(position + 16);
+            if (length == 0) {
+                // empty slot, the file is not in the cache
+                return null;
+            } else if (index.getLong(position) == hash) {
+                final StoredResult result = readRecord(fileId, key, index.getLong(position + 8), length);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    private @Nullable StoredResult readRecord(final FileId fileId, final String key, final long offset, final int length) {
+        if (offset < 0 || offset + length > data.capacity()) {
+            LOG.warn("Cache file {} is malformed, ignoring entry for {}", headerFile.getPath(), key);
+            return null;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(readData(offset, length)))) {
+            if (!key.equals(inputStream.readUTF())) {
+                // hash collision
+                return null;
+            }
+            final AnalysisResult result = AnalysisResult.loadFromStream(inputStream, fileId, ruleMapper);
+            return new StoredResult(result, offset, length);
+        } catch (final IOException e) {
+            LOG.warn("Cache file {} is malformed, ignoring entry for {}", headerFile.getPath(), key);
+            return null;
+        }
+    }
+
+    /** Copies a record out of the mapped data file. */
+    private byte[] readData(final long offset, final int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer buffer = data.duplicate();
+        buffer.position((int) offset);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (headerFile.isDirectory()) {
+                LOG.error("Cannot persist the cache, the given path points to a directory.");
+                return;
+            }
+
+            final boolean cacheFileShouldBeCreated = !headerFile.exists();
+
+            // Create directories missing along the way
+            if (cacheFileShouldBeCreated) {
+                final File parentFile = headerFile.getAbsoluteFile().getParentFile();
+                if (parentFile != null && !parentFile.exists()) {
+                    parentFile.mkdirs();
+                }
+            }
+
+            try {
+                writeNewGeneration();
+                if (cacheFileShouldBeCreated) {
+                    LOG.debug("Analysis cache created");
+                } else {
+                    LOG.debug("Analysis cache updated");
+                }
+            } catch (final IOException e) {
+                LOG.error("Could not persist analysis cache to file: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writeNewGeneration() throws IOException {
+        // Only the files of the current analysis are kept
+        final List<Map.Entry<FileId, AnalysisResult>> entries = new ArrayList<>(updatedResultsCache.entrySet());
+        final long[] offsets = new long[entries.size()];
+        final int[] lengths = new int[entries.size()];
+
+        long liveBytes = 0;
+        for (final Map.Entry<FileId, AnalysisResult> entry : entries) {
+            if (entry.getValue() instanceof StoredResult) {
+                liveBytes += ((StoredResult) entry.getValue()).length;
+            }
+        }
+
+        final long oldDataLength = data == null ? 0 : data.capacity();
+        final boolean compact = data == null
+            || oldDataLength >= MIN_COMPACTION_SIZE && oldDataLength - liveBytes > MAX_DEAD_RATIO * oldDataLength;
+
+        final long newDataGeneration = compact ? dataGeneration + 1 : dataGeneration;
+        final long newIndexGeneration = indexGeneration + 1;
+        final long newDataLength;
+
+        try (FileChannel channel = FileChannel.open(siblingFile(DATA_SUFFIX, newDataGeneration).toPath(),
+                                                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drop anything written past the end of the data by an interrupted run.
+            // When appending, this never truncates the part of the file that is mapped.
+            channel.truncate(compact ? 0 : oldDataLength);
+            channel.position(compact ? 0 : oldDataLength);
+
+            final OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel));
+            final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            final DataOutputStream recordStream = new DataOutputStream(recordBytes);
+            long position = compact ? 0 : oldDataLength;
+
+            for (int i = 0; i < entries.size(); i++) {
+                final Map.Entry<FileId, AnalysisResult> entry = entries.get(i);
+                final AnalysisResult result = entry.getValue();
+
+                if (result instanceof StoredResult && !compact) {
+                    // unchanged record, keep it where it is
+                    offsets[i] = ((StoredResult) result).offset;
+                    lengths[i] = ((StoredResult) result).length;
+                    continue;
+                }
+
+                recordBytes.reset();
+                if (result instanceof StoredResult && data != null) {
+                    // copy the record to the new generation as is
+                    final StoredResult stored = (StoredResult) result;
+                    recordBytes.write(readData(stored.offset, stored.length));
+                } else {
+                    recordStream.writeUTF(entry.getKey().getUriString()); // the path id
+                    AnalysisResult.storeToStream(recordStream, result);
+                    recordStream.flush();
+                }
+
+                recordBytes.writeTo(outputStream);
+                offsets[i] = position;
+                lengths[i] = recordBytes.size();
+                position += recordBytes.size();
+            }
+            outputStream.flush();
+            newDataLength = position;
+        }
+
+        writeIndex(siblingFile(INDEX_SUFFIX, newIndexGeneration), entries, offsets, lengths);
+        writeHeader(newIndexGeneration, newDataGeneration, newDataLength);
+
+        // The mapped files are stale now, any further persist starts from scratch
+        index = null;
+        data = null;
+        indexGeneration = newIndexGeneration;
+        dataGeneration = newDataGeneration;
+        deleteStaleFiles();
+    }
+
+    private static void writeIndex(final File indexFile, final List<Map.Entry<FileId, AnalysisResult>> entries,
+                                   final long[] offsets, final int[] lengths) throws IOException {
+        // keep the load factor under 0.5, so that probe sequences are short
+        int capacity = MIN_INDEX_CAPACITY;
+        while (capacity < 2 * entries.size()) {
+            capacity <<= 1;
+        }
+        final int mask = capacity - 1;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + capacity * SLOT_SIZE);
+        buffer.putInt(0, capacity);
+        buffer.putInt(4, entries.size());
+
+        for (int i = 0; i < entries.size(); i++) {
+            final long hash = hash(entries.get(i).getKey().getUriString());
+            int slot = (int) hash & mask;
+            while (buffer.getInt(INDEX_HEADER_SIZE + slot * SLOT_SIZE + 16) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            final int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            buffer.putLong(position, hash);
+            buffer.putLong(position + 8, offsets[i]);
+            buffer.putInt(position + 16, lengths[i]);
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private void writeHeader(final long newIndexGeneration, final long newDataGeneration, final long dataLength) throws IOException {
+        final Path headerPath = headerFile.toPath();
+        final Path tempPath = headerPath.resolveSibling(headerPath.getFileName() + ".tmp");
+
+        try (DataOutputStream outputStream = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeUTF(pmdVersion);
+
+            storeRuleChecksums(outputStream);
+            outputStream.writeLong(auxClassPathChecksum);
+            outputStream.writeLong(executionClassPathChecksum);
+
+            outputStream.writeLong(newIndexGeneration);
+            outputStream.writeLong(newDataGeneration);
+            outputStream.writeLong(dataLength);
+        }
+
+        try {
+            Files.move(tempPath, headerPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, headerPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the index and data files of previous generations. This
+     * may fail on some platforms while they are still mapped, in which
+     * case they are deleted by a later analysis.
+     */
+    private void deleteStaleFiles() {
+        final Path headerPath = headerFile.getAbsoluteFile().toPath();
+        final String currentIndex = siblingFile(INDEX_SUFFIX, indexGeneration).getName();
+        final String currentData = siblingFile(DATA_SUFFIX, dataGeneration).getName();
+        final String prefix = headerPath.getFileName().toString();
+
+        final DirectoryStream.Filter<Path> isGeneration = path -> {
+            final String name = path.getFileName().toString();
+            return name.startsWith(prefix + INDEX_SUFFIX) || name.startsWith(prefix + DATA_SUFFIX);
+        };
+
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(headerPath.getParent(), isGeneration)) {
+            for (final Path sibling : siblings) {
+                final String name = sibling.getFileName().toString();
+                if (!name.equals(currentIndex) && !name.equals(currentData)) {
+                    Files.deleteIfExists(sibling);
+                }
+            }
+        } catch (final IOException e) {
+            LOG.debug("Could not delete stale analysis cache files: {}", e.getMessage());
+        }
+    }
+
+    private File siblingFile(final String suffix, final long generation) {
+        return new File(headerFile.getAbsoluteFile().getParentFile(), headerFile.getName() + suffix + generation);
+    }
+
+    /** A 64-bit FNV-1a hash, which is stable across runs and JVMs. */
+    private static long hash(final String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * A result that was read from the data file. If the file is still
+     * up-to-date, its record is kept as is.
+     */
+    private static final class StoredResult extends AnalysisResult {
+
+        private final long offset;
+        private final int length;
+
+        StoredResult(final AnalysisResult result, final long offset, final int length) {
+            super(result.getFileChecksum(), result.getFileMetadata(), result.getViolations());
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.document.Chars;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+/**
+ * An analysis cache whose entries can be shared between machines and
+ * checkouts. The other caches use the absolute path of a file as key,
+ * and store all entries in a single file, so they can only be reused by
+ * later analyses of the same checkout. This cache stores each entry in
+ * an {@link AnalysisCacheStore}, with a key that is a hash of:
+ * <ul>
+ * <li>the path of the file, relative to a base directory,
+ * <li>the contents of the file, and its language version,
+ * <li>the PMD version and the checksum of the execution classpath,
+ * <li>the checksums of the rules of the language of the file,
+ * <li>the checksum of the auxclasspath, if some of those rules depend on it.
+ * </ul>
+ *
+ * <p>Entries are therefore never invalidated: when any of those change,
+ * another key is used. Several versions of a file may be cached at the same
+ * time, for instance for the different branches of a repository, and several
+ * analyses may share the same store concurrently. Unlike {@link FileAnalysisCache},
+ * changing a rule misses all the files of its language, instead of only
+ * applying again the changed rule.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class SharedAnalysisCache extends AbstractAnalysisCache {
+
+    /** Changing this changes all the keys. */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int DIGEST_BUFFER_SIZE = 8192;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final AnalysisCacheStore store;
+    private final String baseDirPrefix;
+
+    /** Digests of the configuration of the analysis, for each language. */
+    private Map<Language, byte[]> languageDigests = Collections.emptyMap();
+    /** Keys of the documents looked up in the store. */
+    private final ConcurrentMap<FileId, String> documentKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param store   The store in which entries are kept
+     * @param baseDir The directory paths of files are relative to in keys, usually
+     *                the root of the checkout. Files outside of it are keyed by
+     *                their absolute path, and are only shared by analyses
+     *                of the same location.
+     */
+    public SharedAnalysisCache(final AnalysisCacheStore store, final Path baseDir) {
+        super();
+        this.store = store;
+        this.baseDirPrefix = baseDir.toAbsolutePath().normalize().toString() + File.separator;
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        // Entries are keyed by the configuration, nothing needs to be invalidated
+        return false;
+    }
+
+    @Override
+    public void checkValidity(RuleSets ruleSets, ClassLoader auxclassPathClassLoader, Collection<? extends TextFile> files) {
+        super.checkValidity(ruleSets, auxclassPathClassLoader, files);
+
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "validity check")) {
+            final Map<Language, SortedMap<String, Long>> checksumsByLanguage = new HashMap<>();
+            final Map<Language, Boolean> usesAuxClasspath = new HashMap<>();
+            final Map<Language, Boolean> dependsOnAuxClasspath = new HashMap<>();
+            for (final Rule rule : ruleSets.getAllRules()) {
+                final String ruleKey = CachedRuleMapper.getRuleKey(rule);
+                checksumsByLanguage.computeIfAbsent(rule.getLanguage(), lang -> new TreeMap<>())
+                                   .put(ruleKey, ruleChecksums.get(ruleKey));
+                if (dependsOnAuxClasspath(rule, usesAuxClasspath)) {
+                    dependsOnAuxClasspath.put(rule.getLanguage(), true);
+                }
+            }
+
+            final Map<Language, byte[]> digests = new HashMap<>();
+            for (final Map.Entry<Language, SortedMap<String, Long>> entry : checksumsByLanguage.entrySet()) {
+                final MessageDigest digest = newDigest();
+                updateDigest(digest, PMDVersion.VERSION);
+                updateDigest(digest, executionClassPathChecksum);
+                updateDigest(digest, entry.getKey().getId());
+                for (final Map.Entry<String, Long> rule : entry.getValue().entrySet()) {
+                    updateDigest(digest, rule.getKey());
+                    updateDigest(digest, rule.getValue() == null ? 0 : rule.getValue());
+                }
+                updateDigest(digest, dependsOnAuxClasspath.containsKey(entry.getKey()) ? auxClassPathChecksum : 0);
+                digests.put(entry.getKey(), digest.digest());
+            }
+            languageDigests = digests;
+        }
+    }
+
+    @Override
+    protected @Nullable AnalysisResult getCachedResult(final TextDocument document) {
+        final FileId fileId = document.getFileId();
+        AnalysisResult result = fileResultsCache.get(fileId);
+        if (result == null) {
+            result = lookup(fileId, documentKeys.computeIfAbsent(fileId, id -> computeKey(document)));
+            if (result != null) {
+                final AnalysisResult previous = fileResultsCache.putIfAbsent(fileId, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
+
+    private @Nullable AnalysisResult lookup(final FileId fileId, final String key) {
+        try {
+            final byte[] entry = store.load(key);
+            if (entry == null) {
+                return null;
+            }
+            try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(entry))) {
+                return AnalysisResult.loadFromStream(inputStream, fileId, ruleMapper);
+            }
+        } catch (final IOException e) {
+            LOG.warn("Could not read the analysis cache entry of {} from {}: {}", fileId.getOriginalPath(), store, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the key of the entry of the given document, as a hexadecimal string.
+     */
+    private String computeKey(final TextDocument document) {
+        final MessageDigest digest = newDigest();
+        final byte[] languageDigest = languageDigests.get(document.getLanguageVersion().getLanguage());
+        if (languageDigest != null) {
+            digest.update(languageDigest);
+        }
+        updateDigest(digest, FORMAT_VERSION);
+        updateDigest(digest, document.getLanguageVersion().getVersion());
+        updateDigest(digest, getRelativePath(document.getFileId()));
+        updateDigest(digest, document.getText());
+        return toHex(digest.digest());
+    }
+
+    private String getRelativePath(final FileId fileId) {
+        final String path = fileId.getAbsolutePath();
+        if (path.startsWith(baseDirPrefix)) {
+            // use the same separator on all platforms
+            return path.substring(baseDirPrefix.length()).replace(File.separatorChar, '/');
+        }
+        return path;
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            int stored = 0;
+            for (final Map.Entry<FileId, AnalysisResult> entry : updatedResultsCache.entrySet()) {
+                final String key = documentKeys.get(entry.getKey());
+                // entries that were found in the store are not written again
+                if (key == null || fileResultsCache.containsKey(entry.getKey()) || store.contains(key)) {
+                    continue;
+                }
+
+                final AnalysisResult result = entry.getValue();
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream outputStream = new DataOutputStream(bytes)) {
+                    // the metadata of the file is only meaningful on this machine
+                    AnalysisResult.storeToStream(outputStream, new AnalysisResult(result.getFileChecksum(), result.getViolations()));
+                }
+                store.store(key, bytes.toByteArray());
+                stored++;
+            }
+            LOG.debug("Analysis cache updated, {} entries stored in {}", stored, store);
+        } catch (final IOException e) {
+            LOG.error("Could not persist analysis cache to {}: {}", store, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every implementation of the Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void updateDigest(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void updateDigest(final MessageDigest digest, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    private static void updateDigest(final MessageDigest digest, final Chars text) {
+        final char[] chars = new char[DIGEST_BUFFER_SIZE];
+        final byte[] bytes = new byte[DIGEST_BUFFER_SIZE * 2];
+        for (int start = 0; start < text.length(); start += DIGEST_BUFFER_SIZE) {
+            final int count = Math.min(DIGEST_BUFFER_SIZE, text.length() - start);
+            text.getChars(start, chars, 0, count);
+            for (int i = 0; i < count; i++) {
+                bytes[2 * i] = (byte) (chars[i] >>> 8);
+                bytes[2 * i + 1] = (byte) chars[i];
+            }
+            digest.update(bytes, 0, 2 * count);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
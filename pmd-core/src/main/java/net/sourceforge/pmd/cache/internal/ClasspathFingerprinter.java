@@ -21,7 +21,7 @@ public class ClasspathFingerprinter {
     private static final List<ClasspathEntryFingerprinter> FINGERPRINTERS = Collections.unmodifiableList(Arrays.asList(
             new ZipFileFingerprinter(),
             new RawFileFingerprinter(),
-            new NoopFingerprinter() // catch-all fingerprinter, MUST be last
+            new FileMetadataFingerprinter() // catch-all fingerprinter, MUST be last
         ));
 
     public long fingerprint(final URL... classpathEntry) {
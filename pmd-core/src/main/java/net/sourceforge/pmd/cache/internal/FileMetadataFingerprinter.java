@@ -0,0 +1,62 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.Checksum;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Catch-all {@link ClasspathEntryFingerprinter}, which fingerprints
+ * regular files by their size and modification time. Their content
+ * is not read, since it is not known how to read it. Directories and
+ * entries that are not local files are ignored.
+ */
+public class FileMetadataFingerprinter implements ClasspathEntryFingerprinter {
+    private static final Logger LOG = LoggerFactory.getLogger(FileMetadataFingerprinter.class);
+
+    @Override
+    public boolean appliesTo(String fileExtension) {
+        return true;
+    }
+
+    @Override
+    public void fingerprint(URL entry, Checksum checksum) throws IOException {
+        Path file;
+        try {
+            file = Paths.get(entry.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOG.debug("Ignoring classpath entry {}", entry);
+            return;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final NoSuchFileException ignored) {
+            LOG.warn("Classpath entry {} doesn't exist, ignoring it", entry);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            LOG.debug("Ignoring classpath entry {}", entry);
+            return;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(16); // Size of two longs
+        buffer.putLong(attributes.size());
+        buffer.putLong(attributes.lastModifiedTime().toMillis());
+        checksum.update(buffer.array(), 0, buffer.capacity());
+    }
+}
@@ -7,9 +7,14 @@ package net.sourceforge.pmd.cpd;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -28,6 +33,7 @@ import net.sourceforge.pmd.lang.document.FileCollector;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.TextDocument;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.impl.PmdThreadFactory;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 import net.sourceforge.pmd.util.log.MessageReporter;
 
@@ -68,6 +74,8 @@ import net.sourceforge.pmd.util.log.MessageReporter;
 public final class CpdAnalysis implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CpdAnalysis.class);
+    /** Number of files that may be tokenized ahead of the next file to merge, per thread. */
+    private static final int PENDING_FILES_PER_THREAD = 4;
     private final CPDConfiguration configuration;
     private final FileCollector files;
     private final MessageReporter reporter;
@@ -137,11 +145,132 @@ public final class CpdAnalysis implements AutoCloseable {
         this.listener = cpdListener;
     }
 
-    private int doTokenize(TextDocument document, Tokenizer tokenizer, Tokens tokens) throws IOException, TokenMgrError {
+    private static Tokens doTokenize(TextDocument document, Tokenizer tokenizer) throws IOException, TokenMgrError {
         LOGGER.trace("Tokenizing {}", document.getFileId().getAbsolutePath());
-        int lastTokenSize = tokens.size();
+        Tokens tokens = new Tokens();
         Tokenizer.tokenize(tokenizer, document, tokens);
-        return tokens.size() - lastTokenSize - 1; /* EOF */
+        return tokens;
+    }
+
+    private Map<Language, Tokenizer> createTokenizers(SourceManager sourceManager) {
+        return sourceManager.getTextFiles().stream()
+                            .map(it -> it.getLanguageVersion().getLanguage())
+                            .distinct()
+                            .filter(it -> it instanceof CpdCapableLanguage)
+                            .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdTokenizer(configuration.getLanguageProperties(lang))));
+    }
+
+    /**
+     * Tokenizes a file into its own {@link Tokens}. This may run on any
+     * thread, errors are returned to be reported by the calling thread.
+     */
+    private static TokenizedFile tokenizeFile(TextFile textFile, SourceManager sourceManager, Map<Language, Tokenizer> tokenizers,
+                                              @Nullable CpdTokenCache tokenCache) {
+        try {
+            TextDocument textDocument = sourceManager.get(textFile);
+            Tokens tokens = tokenCache != null ? tokenCache.get(textDocument) : null;
+            if (tokens == null) {
+                tokens = doTokenize(textDocument, tokenizers.get(textFile.getLanguageVersion().getLanguage()));
+                if (tokenCache != null) {
+                    tokenCache.put(textDocument, tokens);
+                }
+            }
+            return new TokenizedFile(textFile, tokens, null);
+        } catch (TokenMgrError | IOException e) {
+            if (e instanceof FileAnalysisException) { // NOPMD
+                ((FileAnalysisException) e).setFileId(textFile.getFileId());
+            }
+            return new TokenizedFile(textFile, null, e);
+        }
+    }
+
+    /**
+     * Tokenizes all the files, on several threads if configured, and
+     * merges their tokens in the order of the files. The result is
+     * therefore the same as when tokenizing on a single thread. At most
+     * a few files per thread are waiting to be merged at any time.
+     * If a cache is configured, only the files that changed since the
+     * last run are tokenized.
+     */
+    private Tokens tokenizeFiles(SourceManager sourceManager, Map<FileId, Integer> numberOfTokensPerFile) throws InterruptedException {
+        Tokens tokens = new Tokens();
+        boolean hasErrors = false;
+        CpdTokenCache tokenCache = createTokenCache();
+        int threads = configuration.getThreads();
+        if (threads <= 1) {
+            Map<Language, Tokenizer> tokenizers = createTokenizers(sourceManager);
+            for (TextFile textFile : sourceManager.getTextFiles()) {
+                hasErrors |= !mergeFile(tokens, tokenizeFile(textFile, sourceManager, tokenizers, tokenCache), numberOfTokensPerFile);
+            }
+        } else {
+            // tokenizers are not required to be thread-safe
+            ThreadLocal<Map<Language, Tokenizer>> tokenizers = ThreadLocal.withInitial(() -> createTokenizers(sourceManager));
+            ExecutorService executor = PmdThreadFactory.newAnalysisExecutor(threads);
+            try {
+                Deque<Future<TokenizedFile>> pending = new ArrayDeque<>();
+                for (TextFile textFile : sourceManager.getTextFiles()) {
+                    if (pending.size() >= threads * PENDING_FILES_PER_THREAD) {
+                        hasErrors |= !mergeFile(tokens, getTokenizedFile(pending.removeFirst()), numberOfTokensPerFile);
+                    }
+                    pending.addLast(executor.submit(() -> tokenizeFile(textFile, sourceManager, tokenizers.get(), tokenCache)));
+                }
+                while (!pending.isEmpty()) {
+                    hasErrors |= !mergeFile(tokens, getTokenizedFile(pending.removeFirst()), numberOfTokensPerFile);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (tokenCache != null) {
+            tokenCache.persist();
+        }
+        if (hasErrors && !configuration.isSkipLexicalErrors()) {
+            // will be caught by CPD command
+            throw new IllegalStateException("Errors were detected while lexing source, exiting because --skip-lexical-errors is unset.");
+        }
+        return tokens;
+    }
+
+    private @Nullable CpdTokenCache createTokenCache() {
+        if (configuration.getCacheLocation() == null) {
+            return null;
+        }
+        CpdTokenCache tokenCache = new CpdTokenCache(configuration.getCacheLocation(), configuration);
+        tokenCache.load();
+        return tokenCache;
+    }
+
+    /**
+     * Appends the tokens of the file, or reports its error.
+     *
+     * @return False if the file could not be tokenized
+     */
+    private boolean mergeFile(Tokens tokens, TokenizedFile file, Map<FileId, Integer> numberOfTokensPerFile) {
+        if (file.error != null) {
+            String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
+            reporter.errorEx(message, file.error);
+            return false;
+        }
+        tokens.addAll(file.tokens);
+        numberOfTokensPerFile.put(file.textFile.getFileId(), file.tokens.size() - 1 /* EOF */);
+        listener.addedFile(1);
+        return true;
+    }
+
+    private static TokenizedFile getTokenizedFile(Future<TokenizedFile> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // lexical errors are returned, other exceptions abort the analysis
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
     }
 
     public void performAnalysis() {
@@ -152,48 +281,23 @@ public final class CpdAnalysis implements AutoCloseable {
     public void performAnalysis(Consumer<CPDReport> consumer) {
 
         try (SourceManager sourceManager = new SourceManager(files.getCollectedFiles())) {
-            Map<Language, Tokenizer> tokenizers =
-                sourceManager.getTextFiles().stream()
-                             .map(it -> it.getLanguageVersion().getLanguage())
-                             .distinct()
-                             .filter(it -> it instanceof CpdCapableLanguage)
-                             .collect(Collectors.toMap(lang -> lang, lang -> ((CpdCapableLanguage) lang).createCpdTokenizer(configuration.getLanguageProperties(lang))));
-
             Map<FileId, Integer> numberOfTokensPerFile = new HashMap<>();
+            Tokens tokens = tokenizeFiles(sourceManager, numberOfTokensPerFile);
 
-            boolean hasErrors = false;
-            Tokens tokens = new Tokens();
-            for (TextFile textFile : sourceManager.getTextFiles()) {
-                TextDocument textDocument = sourceManager.get(textFile);
-                Tokens.State savedState = tokens.savePoint();
-                try {
-                    int newTokens = doTokenize(textDocument, tokenizers.get(textFile.getLanguageVersion().getLanguage()), tokens);
-                    numberOfTokensPerFile.put(textDocument.getFileId(), newTokens);
-                    listener.addedFile(1);
-                } catch (TokenMgrError | IOException e) {
-                    if (e instanceof FileAnalysisException) { // NOPMD
-                        ((FileAnalysisException) e).setFileId(textFile.getFileId());
-                    }
-                    String message = configuration.isSkipLexicalErrors() ? "Skipping file" : "Error while tokenizing";
-                    reporter.errorEx(message, e);
-                    hasErrors = true;
-                    savedState.restore(tokens);
-                }
-            }
-            if (hasErrors && !configuration.isSkipLexicalErrors()) {
-                // will be caught by CPD command
-                throw new IllegalStateException("Errors were detected while lexing source, exiting because --skip-lexical-errors is unset.");
+            LOGGER.debug("Running match algorithm on {} files...", sourceManager.getTextFiles().size());
+            List<Match> matches;
+            if (configuration.isUseSuffixArray()) {
+                matches = new SuffixArrayMatchAlgorithm(tokens, configuration.getMinimumTileSize()).findMatches(listener, sourceManager);
+            } else {
+                matches = new MatchAlgorithm(tokens, configuration.getMinimumTileSize()).findMatches(listener, sourceManager);
             }
-
-            LOGGER.debug("Running match algorithm on {} files...", sourceManager.size());
-            MatchAlgorithm matchAlgorithm = new MatchAlgorithm(tokens, configuration.getMinimumTileSize());
-            List<Match> matches = matchAlgorithm.findMatches(listener, sourceManager);
             tokens = null; // NOPMD null it out before rendering
             LOGGER.debug("Finished: {} duplicates found", matches.size());
 
             CPDReport cpdReport = new CPDReport(sourceManager, matches, numberOfTokensPerFile);
 
             if (renderer != null) {
+                sourceManager.expectSlices(matches);
                 try (Writer writer = IOUtil.createWriter(Charset.defaultCharset(), null)) {
                     renderer.render(cpdReport, writer);
                 }
@@ -212,4 +316,17 @@ public final class CpdAnalysis implements AutoCloseable {
         // nothing for now
     }
 
+    private static final class TokenizedFile {
+
+        private final TextFile textFile;
+        private final @Nullable Tokens tokens;
+        private final @Nullable Exception error;
+
+        TokenizedFile(TextFile textFile, @Nullable Tokens tokens, @Nullable Exception error) {
+            this.textFile = textFile;
+            this.tokens = tokens;
+            this.error = error;
+        }
+    }
+
 }
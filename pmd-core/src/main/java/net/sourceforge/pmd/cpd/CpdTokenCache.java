@@ -0,0 +1,278 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguagePropertyBundle;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+
+/**
+ * Persists the tokens of each file between runs of CPD, so that only the
+ * files that changed are tokenized again. Entries are keyed by the path
+ * of the file, and are only used if the checksum of the contents of the
+ * file, its language version and the properties of its language (which
+ * configure the tokenizer) did not change. The images of the tokens
+ * are stored once in a dictionary shared by all entries.
+ *
+ * <p>Only the entries of the files of the last run are persisted. The
+ * methods {@link #get(TextDocument)} and {@link #put(TextDocument, Tokens)}
+ * may be called concurrently.
+ */
+final class CpdTokenCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CpdTokenCache.class);
+
+    /** Changing this invalidates all existing caches. */
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path location;
+    private final CPDConfiguration configuration;
+
+    /** Entries read from the cache file, by path. */
+    private final Map<String, CacheEntry> cachedEntries = new HashMap<>();
+    /** Fingerprints of the properties of each language, when the cache was written. */
+    private final Map<String, String> cachedFingerprints = new HashMap<>();
+
+    /** Entries of the files of the current run. */
+    private final ConcurrentMap<String, CacheEntry> updatedEntries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Language, String> fingerprints = new ConcurrentHashMap<>();
+
+    CpdTokenCache(Path location, CPDConfiguration configuration) {
+        this.location = location;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Reads the cache file, if it exists and was written by the same
+     * version of PMD. Otherwise, the cache is empty.
+     */
+    void load() {
+        if (!Files.isRegularFile(location)) {
+            LOG.debug("CPD token cache {} does not exist yet", location);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(location)))) {
+            if (in.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(in.readUTF())) {
+                LOG.debug("CPD token cache {} was written by another version of PMD, it is ignored", location);
+                return;
+            }
+            int languageCount = in.readInt();
+            for (int i = 0; i < languageCount; i++) {
+                cachedFingerprints.put(in.readUTF(), readString(in));
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String path = readString(in);
+                String languageId = in.readUTF();
+                String languageVersion = in.readUTF();
+                long checksum = in.readLong();
+                int[] tokens = new int[in.readInt()];
+                for (int t = 0; t < tokens.length; t++) {
+                    tokens[t] = in.readInt();
+                }
+                cachedEntries.put(path, new CacheEntry(languageId, languageVersion, checksum, tokens));
+            }
+            // entries all share the same dictionary
+            String[] dictionary = new String[in.readInt() + 1];
+            for (int id = 1; id < dictionary.length; id++) {
+                dictionary[id] = readString(in);
+            }
+            for (CacheEntry entry : cachedEntries.values()) {
+                entry.dictionary = dictionary;
+            }
+            LOG.debug("CPD token cache {} loaded with {} entries", location, entryCount);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read the CPD token cache {}, all files will be tokenized: {}", location, e.toString());
+            cachedEntries.clear();
+            cachedFingerprints.clear();
+        }
+    }
+
+    /**
+     * Returns the cached tokens of the document, or null if they are
+     * not up to date.
+     */
+    @Nullable Tokens get(TextDocument document) {
+        String path = document.getFileId().getAbsolutePath();
+        CacheEntry entry = cachedEntries.get(path);
+        if (entry == null
+            || entry.checksum != document.getCheckSum()
+            || !entry.languageVersion.equals(document.getLanguageVersion().getTerseName())
+            || !fingerprint(document.getLanguageVersion().getLanguage()).equals(cachedFingerprints.get(entry.languageId))) {
+            return null;
+        }
+        updatedEntries.put(path, entry);
+        return Tokens.fromCacheEntry(document.getFileId(), entry.tokens, entry.dictionary);
+    }
+
+    /**
+     * Records the tokens of a document that was tokenized.
+     *
+     * @param tokens Tokens of the document only
+     */
+    void put(TextDocument document, Tokens tokens) {
+        // the entry has its own dictionary, until it is persisted
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> images = new ArrayList<>();
+        CacheEntry entry = new CacheEntry(document.getLanguageVersion().getLanguage().getId(),
+                                          document.getLanguageVersion().getTerseName(),
+                                          document.getCheckSum(),
+                                          tokens.toCacheEntry(image -> intern(ids, images, image)));
+        entry.dictionary = toDictionary(images);
+        updatedEntries.put(document.getFileId().getAbsolutePath(), entry);
+    }
+
+    /**
+     * Writes the entries of the files of the current run.
+     */
+    void persist() {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> images = new ArrayList<>();
+        Map<String, String> usedFingerprints = new TreeMap<>();
+        try {
+            if (location.getParent() != null) {
+                Files.createDirectories(location.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(location)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(PMDVersion.VERSION);
+
+                for (CacheEntry entry : updatedEntries.values()) {
+                    usedFingerprints.computeIfAbsent(entry.languageId, this::fingerprintOf);
+                }
+                out.writeInt(usedFingerprints.size());
+                for (Map.Entry<String, String> fingerprint : usedFingerprints.entrySet()) {
+                    out.writeUTF(fingerprint.getKey());
+                    writeString(out, fingerprint.getValue());
+                }
+
+                out.writeInt(updatedEntries.size());
+                for (Map.Entry<String, CacheEntry> e : updatedEntries.entrySet()) {
+                    CacheEntry entry = e.getValue();
+                    int[] tokens = remap(entry, dictionary, images);
+                    writeString(out, e.getKey());
+                    out.writeUTF(entry.languageId);
+                    out.writeUTF(entry.languageVersion);
+                    out.writeLong(entry.checksum);
+                    out.writeInt(tokens.length);
+                    for (int t : tokens) {
+                        out.writeInt(t);
+                    }
+                }
+
+                out.writeInt(images.size());
+                for (String image : images) {
+                    writeString(out, image);
+                }
+            }
+            LOG.debug("CPD token cache {} updated with {} entries", location, updatedEntries.size());
+        } catch (IOException e) {
+            LOG.error("Could not persist the CPD token cache to {}: {}", location, e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the image ids of an entry with ids of the persisted dictionary.
+     */
+    private static int[] remap(CacheEntry entry, Map<String, Integer> dictionary, List<String> images) {
+        int[] tokens = entry.tokens.clone();
+        for (int t = 0; t < tokens.length; t += Tokens.CACHE_ENTRY_INTS) {
+            if (tokens[t] != TokenEntry.EOF) {
+                tokens[t] = intern(dictionary, images, entry.dictionary[tokens[t]]);
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] toDictionary(List<String> images) {
+        String[] dictionary = new String[images.size() + 1];
+        for (int id = 1; id < dictionary.length; id++) {
+            dictionary[id] = images.get(id - 1);
+        }
+        return dictionary;
+    }
+
+    private static int intern(Map<String, Integer> dictionary, List<String> images, String image) {
+        return dictionary.computeIfAbsent(image, k -> {
+            images.add(k);
+            // the first id is 1, 0 is the id of EOF
+            return images.size();
+        });
+    }
+
+    private String fingerprintOf(String languageId) {
+        Language language = configuration.getLanguageRegistry().getLanguageById(languageId);
+        return language == null ? "" : fingerprint(language);
+    }
+
+    /**
+     * Returns a string that changes when a property of the language changes.
+     * Tokenizers are configured with those properties, e.g. to ignore
+     * literals.
+     */
+    private String fingerprint(Language language) {
+        return fingerprints.computeIfAbsent(language, lang -> {
+            LanguagePropertyBundle properties = configuration.getLanguageProperties(lang);
+            StringBuilder sb = new StringBuilder();
+            for (PropertyDescriptor<?> descriptor : properties.getPropertyDescriptors()) {
+                sb.append(descriptor.name()).append('=').append(properties.getProperty(descriptor)).append('\n');
+            }
+            return sb.toString();
+        });
+    }
+
+    /** Writes a string, which unlike writeUTF may be longer than 64KB. */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class CacheEntry {
+
+        private final String languageId;
+        private final String languageVersion;
+        private final long checksum;
+        /** Tokens of the file, see {@link Tokens#toCacheEntry(java.util.function.ToIntFunction)}. */
+        private final int[] tokens;
+        /** Images of the tokens, by id. */
+        private String[] dictionary;
+
+        CacheEntry(String languageId, String languageVersion, long checksum, int[] tokens) {
+            this.languageId = languageId;
+            this.languageVersion = languageVersion;
+            this.checksum = checksum;
+            this.tokens = tokens;
+        }
+    }
+}
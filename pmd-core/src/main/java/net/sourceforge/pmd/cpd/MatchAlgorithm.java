@@ -4,12 +4,9 @@
 
 package net.sourceforge.pmd.cpd;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -19,12 +16,10 @@ class MatchAlgorithm {
     private int lastMod = 1;
 
     private final Tokens tokens;
-    private final List<TokenEntry> code;
     private final int minTileSize;
 
     MatchAlgorithm(Tokens tokens, int minTileSize) {
         this.tokens = tokens;
-        this.code = tokens.getTokens();
         this.minTileSize = minTileSize;
         for (int i = 0; i < minTileSize; i++) {
             lastMod *= MOD;
@@ -32,8 +27,16 @@ class MatchAlgorithm {
     }
 
 
-    public TokenEntry tokenAt(int offset, TokenEntry m) {
-        return code.get(offset + m.getIndex());
+    /**
+     * Returns the image identifier of the token at the given offset
+     * from the token at the given index.
+     */
+    int identifierAt(int offset, int index) {
+        return tokens.getIdentifier(offset + index);
+    }
+
+    TokenEntry getToken(int index) {
+        return tokens.getToken(index);
     }
 
     public int getMinimumTileSize() {
@@ -44,23 +47,41 @@ class MatchAlgorithm {
         MatchCollector matchCollector = new MatchCollector(this);
         {
             cpdListener.phaseUpdate(CPDListener.HASH);
-            Map<TokenEntry, Object> markGroups = hash();
+            long[] marks = hash();
 
             cpdListener.phaseUpdate(CPDListener.MATCH);
-            markGroups.values()
-                      .stream()
-                      .filter(it -> it instanceof List)
-                      .forEach(it -> {
-                          @SuppressWarnings("unchecked")
-                          List<TokenEntry> l = (List<TokenEntry>) it;
-                          Collections.reverse(l);
-                          matchCollector.collect(l);
-                      });
-            // put markGroups out of scope
+            int[] group = new int[0];
+            for (int start = 0, end; start < marks.length; start = end) {
+                int hash = hashOf(marks[start]);
+                end = start + 1;
+                while (end < marks.length && hashOf(marks[end]) == hash) {
+                    end++;
+                }
+                int groupSize = end - start;
+                if (groupSize > 1) {
+                    if (group.length < groupSize) {
+                        group = new int[groupSize];
+                    }
+                    for (int i = 0; i < groupSize; i++) {
+                        group[i] = indexOf(marks[start + i]);
+                    }
+                    matchCollector.collect(group, groupSize);
+                }
+            }
+            // put marks out of scope
         }
 
         cpdListener.phaseUpdate(CPDListener.GROUPING);
         List<Match> matches = matchCollector.getMatches();
+        finishMatches(tokens, matches);
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Sorts the matches and sets the end token of their marks.
+     */
+    static void finishMatches(Tokens tokens, List<Match> matches) {
         matches.sort(Comparator.naturalOrder());
 
         for (Match match : matches) {
@@ -71,48 +92,52 @@ class MatchAlgorithm {
                 mark.setEndToken(endToken);
             }
         }
-        cpdListener.phaseUpdate(CPDListener.DONE);
-        return matches;
     }
 
+    /**
+     * Computes the hash of the tiles of {@link #minTileSize} tokens starting
+     * at each token. Returns an array with the hash and index of each token
+     * that starts a tile, packed in a long, and sorted. Tokens that start
+     * a tile with the same hash are then adjacent, and sorted by index.
+     * Sorting a primitive array uses much less memory than grouping token
+     * objects in a hash map.
+     */
     @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
+    private long[] hash() {
         int lastHash = 0;
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (!token.isEof()) {
-                int last = tokenAt(minTileSize, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
-                }
+        long[] marks = new long[tokens.size()];
+        int count = 0;
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            int identifier = tokens.getIdentifier(i);
+            if (identifier != TokenEntry.EOF) {
+                int last = identifierAt(minTileSize, i);
+                lastHash = MOD * lastHash + identifier - lastMod * last;
+                marks[count++] = pack(lastHash, i);
             } else {
                 lastHash = 0;
                 for (int end = Math.max(0, i - minTileSize + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (token.isEof()) {
+                    identifier = tokens.getIdentifier(i - 1);
+                    lastHash = MOD * lastHash + identifier;
+                    if (identifier == TokenEntry.EOF) {
                         break;
                     }
                 }
             }
         }
-        return markGroups;
+        marks = Arrays.copyOf(marks, count);
+        Arrays.parallelSort(marks);
+        return marks;
+    }
+
+    private static long pack(int hash, int index) {
+        return (long) hash << 32 | index & 0xFFFF_FFFFL;
+    }
+
+    private static int hashOf(long mark) {
+        return (int) (mark >> 32);
+    }
+
+    private static int indexOf(long mark) {
+        return (int) mark;
     }
 }
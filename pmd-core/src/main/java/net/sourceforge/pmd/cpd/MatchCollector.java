@@ -19,13 +19,19 @@ class MatchCollector {
         this.ma = ma;
     }
 
-    public void collect(List<TokenEntry> marks) {
+    /**
+     * Collects the matches between tokens that start a tile with the same hash.
+     *
+     * @param marks Indices of the tokens, in ascending order
+     * @param count Number of marks to consider in the array
+     */
+    public void collect(int[] marks, int count) {
         // first get a pairwise collection of all maximal matches
-        for (int i = 0; i < marks.size() - 1; i++) {
-            TokenEntry mark1 = marks.get(i);
-            for (int j = i + 1; j < marks.size(); j++) {
-                TokenEntry mark2 = marks.get(j);
-                int diff = mark1.getIndex() - mark2.getIndex();
+        for (int i = 0; i < count - 1; i++) {
+            int mark1 = marks[i];
+            for (int j = i + 1; j < count; j++) {
+                int mark2 = marks[j];
+                int diff = mark1 - mark2;
                 if (-diff < ma.getMinimumTileSize()) {
                     continue;
                 }
@@ -47,33 +53,33 @@ class MatchCollector {
         }
     }
 
-    private void reportMatch(TokenEntry mark1, TokenEntry mark2, int dupes) {
+    private void reportMatch(int mark1, int mark2, int dupes) {
         matchTree.compute(dupes, (dupCount, matches) -> {
             if (matches == null) {
                 matches = new TreeMap<>();
                 addNewMatch(mark1, mark2, dupCount, matches);
             } else {
-                Match matchA = matches.get(mark1.getIndex());
-                Match matchB = matches.get(mark2.getIndex());
+                Match matchA = matches.get(mark1);
+                Match matchB = matches.get(mark2);
 
                 if (matchA == null && matchB == null) {
                     addNewMatch(mark1, mark2, dupes, matches);
                 } else if (matchA == null) {
-                    matchB.addMark(mark1);
-                    matches.put(mark1.getIndex(), matchB);
+                    matchB.addMark(ma.getToken(mark1));
+                    matches.put(mark1, matchB);
                 } else if (matchB == null) {
-                    matchA.addMark(mark2);
-                    matches.put(mark2.getIndex(), matchA);
+                    matchA.addMark(ma.getToken(mark2));
+                    matches.put(mark2, matchA);
                 }
             }
             return matches;
         });
     }
 
-    private void addNewMatch(TokenEntry mark1, TokenEntry mark2, int dupes, Map<Integer, Match> matches) {
-        Match match = new Match(dupes, mark1, mark2);
-        matches.put(mark1.getIndex(), match);
-        matches.put(mark2.getIndex(), match);
+    private void addNewMatch(int mark1, int mark2, int dupes, Map<Integer, Match> matches) {
+        Match match = new Match(dupes, ma.getToken(mark1), ma.getToken(mark2));
+        matches.put(mark1, match);
+        matches.put(mark2, match);
         matchList.add(match);
     }
 
@@ -81,21 +87,21 @@ class MatchCollector {
         return matchList;
     }
 
-    private boolean hasPreviousDupe(TokenEntry mark1, TokenEntry mark2) {
-        return mark1.getIndex() != 0 && !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
+    private boolean hasPreviousDupe(int mark1, int mark2) {
+        return mark1 != 0 && !matchEnded(ma.identifierAt(-1, mark1), ma.identifierAt(-1, mark2));
     }
 
-    private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
+    private int countDuplicateTokens(int mark1, int mark2) {
         int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+        while (!matchEnded(ma.identifierAt(index, mark1), ma.identifierAt(index, mark2))) {
             index++;
         }
         return index;
     }
 
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier()
-                || token1.isEof()
-                || token2.isEof();
+    private boolean matchEnded(int identifier1, int identifier2) {
+        return identifier1 != identifier2
+                || identifier1 == TokenEntry.EOF
+                || identifier2 == TokenEntry.EOF;
     }
 }
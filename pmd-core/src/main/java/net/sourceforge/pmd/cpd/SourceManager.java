@@ -6,12 +6,17 @@ package net.sourceforge.pmd.cpd;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.internal.util.IOUtil;
 import net.sourceforge.pmd.lang.document.Chars;
@@ -23,19 +28,54 @@ import net.sourceforge.pmd.lang.document.TextRegion;
 import net.sourceforge.pmd.reporting.FileNameRenderer;
 
 /**
- * Maps {@link FileId} to {@link TextDocument}, reusing documents with
- * {@link SoftReference} if they have not been replaced yet.
+ * Maps {@link FileId} to {@link TextDocument}. Documents are kept in
+ * a least-recently-used cache, whose size is bounded by the estimated
+ * memory used by the text of the documents.
+ *
+ * <p>The slices of the first marks of the matches can be extracted ahead
+ * of time, see {@link #expectSlices(List)}. They are extracted in file
+ * order by windows of matches, so that a file is read once per window,
+ * even if the matches are rendered in another order.
  */
 class SourceManager implements AutoCloseable {
 
-    private final Map<TextFile, SoftReference<TextDocument>> files = new ConcurrentHashMap<>();
+    private static final Logger LOG = LoggerFactory.getLogger(SourceManager.class);
+
+    /** Estimated size of a char of a document, in bytes. */
+    private static final int BYTES_PER_CHAR = 2;
+    /** Number of matches whose slices are extracted at once. */
+    static final int SLICE_WINDOW = 256;
+
     private final Map<FileId, TextFile> fileByPathId = new HashMap<>();
     private final List<TextFile> textFiles;
     private FileNameRenderer fileNameRenderer = FileId::getAbsolutePath;
 
+    // guarded by this
+    private final LinkedHashMap<TextFile, TextDocument> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxCacheSize;
+    private long cacheSize;
+    private long hits;
+    private long misses;
+
+    // guarded by this
+    private List<Mark> expectedMarks = Collections.emptyList();
+    private Map<Mark, Integer> expectedIndices = Collections.emptyMap();
+    /** Index in {@link #expectedMarks} of the first mark that was not extracted yet. */
+    private int nextExpected;
+    private final Map<Mark, Chars> extractedSlices = new HashMap<>();
+
     SourceManager(List<? extends TextFile> files) {
+        // by default, use at most an eighth of the heap
+        this(files, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * @param maxCacheSize Maximum estimated size of the cached documents, in bytes
+     */
+    SourceManager(List<? extends TextFile> files, long maxCacheSize) {
         textFiles = new ArrayList<>(files);
         files.forEach(f -> fileByPathId.put(f.getFileId(), f));
+        this.maxCacheSize = maxCacheSize;
     }
 
 
@@ -52,31 +92,140 @@ class SourceManager implements AutoCloseable {
     }
 
     TextDocument get(TextFile file) {
-        TextDocument textDocument = files.computeIfAbsent(file, f -> new SoftReference<>(load(f))).get();
-        if (textDocument == null) {
-            // SoftReference was freed up already, recreate it
-            TextDocument doc = load(file);
-            files.put(file, new SoftReference<>(doc));
-            return doc;
+        synchronized (this) {
+            TextDocument textDocument = cache.get(file);
+            if (textDocument != null) {
+                hits++;
+                return textDocument;
+            }
+            misses++;
+        }
+        // load outside the lock, files may be read concurrently
+        TextDocument doc = load(file);
+        synchronized (this) {
+            long size = sizeOf(doc);
+            if (size <= maxCacheSize && cache.put(file, doc) == null) {
+                cacheSize += size;
+                evict();
+            }
         }
-        return textDocument;
+        return doc;
     }
 
-    public int size() {
-        return files.size();
+    private void evict() {
+        Iterator<TextDocument> lru = cache.values().iterator();
+        while (cacheSize > maxCacheSize && lru.hasNext()) {
+            cacheSize -= sizeOf(lru.next());
+            lru.remove();
+        }
+    }
+
+    private static long sizeOf(TextDocument doc) {
+        return (long) doc.getLength() * BYTES_PER_CHAR;
+    }
+
+    /** Returns the number of documents that were found in the cache. */
+    synchronized long getCacheHits() {
+        return hits;
+    }
+
+    /** Returns the number of documents that were read, because they were not in the cache. */
+    synchronized long getCacheMisses() {
+        return misses;
+    }
+
+    /** Returns the number of slices that were extracted ahead of time, and not requested yet. */
+    synchronized int getPendingSliceCount() {
+        return extractedSlices.size();
+    }
+
+    /** Returns the number of documents in the cache. */
+    public synchronized int size() {
+        return cache.size();
     }
 
 
     @Override
     public void close() throws Exception {
+        LOG.debug("Source cache: {} hits, {} misses", getCacheHits(), getCacheMisses());
         Exception exception = IOUtil.closeAll(textFiles);
         if (exception != null) {
             throw exception;
         }
     }
 
-    @SuppressWarnings("PMD.CloseResource")
+    /**
+     * Declares that the slices of the first marks of the given matches
+     * will be requested in this order, e.g. by a renderer. When one of
+     * them is requested, the slices of the next {@link #SLICE_WINDOW}
+     * matches are extracted in file order, so that each file is read
+     * once per window. The slices are extracted until their estimated
+     * size exceeds the size of the document cache, and released when
+     * they are requested.
+     */
+    synchronized void expectSlices(List<Match> matches) {
+        List<Mark> marks = new ArrayList<>(matches.size());
+        Map<Mark, Integer> indices = new HashMap<>();
+        for (Match match : matches) {
+            indices.putIfAbsent(match.getFirstMark(), marks.size());
+            marks.add(match.getFirstMark());
+        }
+        expectedMarks = marks;
+        expectedIndices = indices;
+        nextExpected = 0;
+        extractedSlices.clear();
+    }
+
     public Chars getSlice(Mark mark) {
+        List<Mark> window;
+        synchronized (this) {
+            Chars slice = extractedSlices.remove(mark);
+            if (slice != null) {
+                return slice;
+            }
+            Integer index = expectedIndices.get(mark);
+            if (index == null || index < nextExpected) {
+                window = null;
+            } else {
+                int end = Math.min(index + SLICE_WINDOW, expectedMarks.size());
+                window = new ArrayList<>(expectedMarks.subList(index, end));
+                nextExpected = end;
+            }
+        }
+        // read files outside the lock
+        return window == null ? extractSlice(mark) : extractWindow(mark, window);
+    }
+
+    /**
+     * Extracts the slices of the given marks in file order, and returns
+     * the slice of the requested one. The other slices are kept until
+     * they are requested.
+     */
+    private Chars extractWindow(Mark requested, List<Mark> window) {
+        // marks are ordered by token index, so by file, then by position
+        window.sort(Comparator.naturalOrder());
+        Map<Mark, Chars> slices = new HashMap<>();
+        Chars result = null;
+        long size = 0;
+        for (Mark mark : window) {
+            if (mark.equals(requested)) {
+                result = extractSlice(mark);
+            } else if (size < maxCacheSize && !slices.containsKey(mark)) {
+                // copy the slice, so that it doesn't retain the text of the whole file
+                Chars slice = Chars.wrap(extractSlice(mark).toString());
+                size += (long) slice.length() * BYTES_PER_CHAR;
+                slices.put(mark, slice);
+            }
+        }
+        synchronized (this) {
+            extractedSlices.putAll(slices);
+        }
+        assert result != null : "The requested mark is in the window";
+        return result;
+    }
+
+    @SuppressWarnings("PMD.CloseResource")
+    private Chars extractSlice(Mark mark) {
         TextFile textFile = fileByPathId.get(mark.getToken().getFileId());
         assert textFile != null : "No such file " + mark.getToken().getFileId();
         TextDocument doc = get(textFile);
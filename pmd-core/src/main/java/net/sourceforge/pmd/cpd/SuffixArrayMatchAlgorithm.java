@@ -0,0 +1,449 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Finds duplicates using a suffix array and its LCP array (longest
+ * common prefixes) over the image ids of the tokens. This reports the
+ * same matches as {@link MatchAlgorithm}, but does not compare every
+ * pair of tokens that start a tile with the same hash, which is quadratic
+ * in the number of copies of a piece of code. The suffix array is built
+ * by prefix doubling in O(n log n), the LCP array in O(n) with Kasai's
+ * algorithm.
+ *
+ * <p>The suffixes that share a prefix of length at least {@code minTileSize}
+ * form an interval of the suffix array, in which all LCP values are at
+ * least that length. The intervals are enumerated bottom-up with a stack.
+ * Two tokens of an interval of length {@code l} have a common prefix of
+ * exactly {@code l} tokens if they are in different child intervals. They
+ * form a duplicate if that prefix cannot be extended to the left, that is,
+ * if the tokens that precede them are different, and if the copies do not
+ * overlap. These pairs are grouped into matches as in {@link MatchCollector}.
+ * Only the intervals whose copies are not all preceded by the same token
+ * are considered, and the pairs of an interval of k copies are grouped in
+ * O(k log k), instead of comparing every pair of every tile.
+ */
+class SuffixArrayMatchAlgorithm {
+
+    /** Key of the token before the first one, different from all others. */
+    private static final int START = -1;
+
+    private final Tokens tokens;
+    private final int minTileSize;
+
+    SuffixArrayMatchAlgorithm(Tokens tokens, int minTileSize) {
+        this.tokens = tokens;
+        this.minTileSize = minTileSize;
+    }
+
+    public List<Match> findMatches(@NonNull CPDListener cpdListener, SourceManager sourceManager) {
+        List<Match> matches = new ArrayList<>();
+        {
+            cpdListener.phaseUpdate(CPDListener.HASH);
+            int[] text = keys();
+            int[] suffixArray = new int[text.length];
+            int[] ranks = new int[text.length];
+            sort(text, suffixArray, ranks);
+            int[] lcp = longestCommonPrefixes(text, suffixArray, ranks);
+            ranks = null; // NOPMD free some memory before collecting matches
+
+            cpdListener.phaseUpdate(CPDListener.MATCH);
+            collectMatches(text, suffixArray, lcp, matches);
+            // put arrays out of scope
+        }
+
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        MatchAlgorithm.finishMatches(tokens, matches);
+        cpdListener.phaseUpdate(CPDListener.DONE);
+        return matches;
+    }
+
+    /**
+     * Returns the image ids of the tokens, in which each EOF token is
+     * replaced with a distinct key, greater than all image ids. Common
+     * prefixes then never extend past the end of a file.
+     */
+    private int[] keys() {
+        int n = tokens.size();
+        int[] text = new int[n];
+        int maxId = 0;
+        for (int i = 0; i < n; i++) {
+            text[i] = tokens.getIdentifier(i);
+            maxId = Math.max(maxId, text[i]);
+        }
+        int nextEof = maxId + 1;
+        for (int i = 0; i < n; i++) {
+            if (text[i] == TokenEntry.EOF) {
+                text[i] = nextEof++;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Sorts the suffixes of the text by prefix doubling, with a radix
+     * sort on the ranks at each step. The text ends with a unique key,
+     * as the last token is always an EOF. On return, {@code ranks} is the
+     * inverse of the suffix array.
+     */
+    static void sort(int[] text, int[] suffixArray, int[] ranks) {
+        int n = text.length;
+        if (n == 0) {
+            return;
+        }
+        int[] tmp = new int[n];
+        int alphabetSize = 0;
+        for (int key : text) {
+            alphabetSize = Math.max(alphabetSize, key + 1);
+        }
+        int[] counts = new int[Math.max(alphabetSize, n)];
+
+        // sort by the first key
+        for (int key : text) {
+            counts[key]++;
+        }
+        for (int c = 1; c < alphabetSize; c++) {
+            counts[c] += counts[c - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffixArray[--counts[text[i]]] = i;
+        }
+        ranks[suffixArray[0]] = 0;
+        for (int k = 1; k < n; k++) {
+            boolean same = text[suffixArray[k]] == text[suffixArray[k - 1]];
+            ranks[suffixArray[k]] = ranks[suffixArray[k - 1]] + (same ? 0 : 1);
+        }
+
+        // then by the first 2, 4, 8... keys, until all ranks are different
+        for (int len = 1; ranks[suffixArray[n - 1]] < n - 1; len <<= 1) {
+            // order by second half: suffixes shorter than len come first
+            int p = 0;
+            for (int i = n - len; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int k = 0; k < n; k++) {
+                if (suffixArray[k] >= len) {
+                    tmp[p++] = suffixArray[k] - len;
+                }
+            }
+            // stable sort by first half
+            int classes = ranks[suffixArray[n - 1]] + 1;
+            Arrays.fill(counts, 0, classes, 0);
+            for (int i = 0; i < n; i++) {
+                counts[ranks[i]]++;
+            }
+            for (int c = 1; c < classes; c++) {
+                counts[c] += counts[c - 1];
+            }
+            for (int k = n - 1; k >= 0; k--) {
+                suffixArray[--counts[ranks[tmp[k]]]] = tmp[k];
+            }
+
+            tmp[suffixArray[0]] = 0;
+            for (int k = 1; k < n; k++) {
+                int prev = suffixArray[k - 1];
+                int cur = suffixArray[k];
+                boolean same = ranks[prev] == ranks[cur]
+                    && secondRank(ranks, prev + len) == secondRank(ranks, cur + len);
+                tmp[cur] = tmp[prev] + (same ? 0 : 1);
+            }
+            System.arraycopy(tmp, 0, ranks, 0, n);
+        }
+    }
+
+    private static int secondRank(int[] ranks, int index) {
+        return index < ranks.length ? ranks[index] : -1;
+    }
+
+    /**
+     * Computes the LCP array with Kasai's algorithm: {@code lcp[k]} is the
+     * length of the common prefix of the suffixes at {@code k - 1} and
+     * {@code k} in the suffix array, and {@code lcp[0]} is zero.
+     */
+    static int[] longestCommonPrefixes(int[] text, int[] suffixArray, int[] ranks) {
+        int n = text.length;
+        int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (ranks[i] > 0) {
+                int j = suffixArray[ranks[i] - 1];
+                while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                    h++;
+                }
+                lcp[ranks[i]] = h;
+                if (h > 0) {
+                    h--;
+                }
+            } else {
+                h = 0;
+            }
+        }
+        return lcp;
+    }
+
+    /**
+     * Enumerates the LCP intervals bottom-up, and collects the matches of
+     * those whose length is at least the minimum tile size.
+     */
+    private void collectMatches(int[] text, int[] suffixArray, int[] lcp, List<Match> matches) {
+        int n = text.length;
+        int[] stackLcp = new int[n + 1];
+        int[] stackStart = new int[n + 1];
+        int top = 0; // the root interval, with length 0
+        for (int k = 1; k <= n; k++) {
+            // at the end, close all intervals but the root
+            int length = k < n ? lcp[k] : 0;
+            int start = k - 1;
+            while (length < stackLcp[top]) {
+                int intervalLength = stackLcp[top];
+                start = stackStart[top];
+                top--;
+                if (intervalLength >= minTileSize) {
+                    collectInterval(text, suffixArray, lcp, intervalLength, start, k - 1, matches);
+                }
+            }
+            if (length > stackLcp[top]) {
+                top++;
+                stackLcp[top] = length;
+                stackStart[top] = start;
+            }
+        }
+    }
+
+    /**
+     * Reports the matches of an interval of the suffix array, if any.
+     *
+     * @param length Length of the common prefix of the suffixes of the interval
+     * @param first  Index of the first suffix of the interval
+     * @param last   Index of the last suffix of the interval (inclusive)
+     */
+    private void collectInterval(int[] text, int[] suffixArray, int[] lcp, int length, int first, int last, List<Match> matches) {
+        int size = last - first + 1;
+        // the position of each suffix, packed with its index in the interval
+        long[] byPosition = new long[size];
+        int[] childOfSuffix = new int[size];
+        int child = 0;
+        boolean leftDiverse = false;
+        int firstPreviousKey = previousKey(text, suffixArray[first]);
+        for (int i = 0; i < size; i++) {
+            int k = first + i;
+            if (i > 0 && lcp[k] == length) {
+                child++;
+            }
+            byPosition[i] = (long) suffixArray[k] << 32 | i;
+            childOfSuffix[i] = child;
+            leftDiverse |= previousKey(text, suffixArray[k]) != firstPreviousKey;
+        }
+        if (!leftDiverse) {
+            // all copies can be extended to the left, they are reported
+            // by an interval with a longer length
+            return;
+        }
+        Arrays.sort(byPosition);
+
+        // the copies, in increasing order of positions
+        int[] positions = new int[size];
+        int[] children = new int[size];
+        int[] previousKeys = new int[size];
+        for (int m = 0; m < size; m++) {
+            positions[m] = (int) (byPosition[m] >> 32);
+            children[m] = childOfSuffix[(int) byPosition[m]];
+            previousKeys[m] = previousKey(text, positions[m]);
+        }
+
+        // Pairs are grouped like in MatchCollector: in increasing order
+        // of positions, a pair starts a new match if none of its copies
+        // is in a match yet, otherwise the other copy joins that match.
+        // Two copies form a pair if they do not overlap, are in different
+        // children, and are preceded by different tokens. Instead of testing
+        // every pair, the partners of a copy are looked up in search trees,
+        // so that each copy joins a match once.
+        CopyTree allCopies = new CopyTree(children, previousKeys);
+        CopyTree freeCopies = new CopyTree(allCopies);
+        int[] matchIds = new int[size];
+        Arrays.fill(matchIds, -1);
+        int matchCount = 0;
+        int firstFar = 0;
+        for (int a = 0; a < size - 1; a++) {
+            // skip the copies that would overlap
+            while (firstFar < size && positions[firstFar] - positions[a] < length) {
+                firstFar++;
+            }
+            if (firstFar == size) {
+                // the next copies have no partner either
+                break;
+            }
+            if (matchIds[a] < 0) {
+                // the first pair of this copy decides its match
+                int b = allCopies.firstPartner(firstFar, a);
+                if (b < 0) {
+                    continue;
+                }
+                matchIds[a] = matchIds[b] >= 0 ? matchIds[b] : matchCount++;
+            }
+            // the partners that are not in a match yet join this one
+            for (int b = freeCopies.firstPartner(firstFar, a); b >= 0; b = freeCopies.firstPartner(b + 1, a)) {
+                matchIds[b] = matchIds[a];
+                freeCopies.remove(b);
+            }
+        }
+
+        Match[] newMatches = new Match[matchCount];
+        int[] firstMarks = new int[matchCount];
+        for (int m = 0; m < size; m++) {
+            int matchId = matchIds[m];
+            if (matchId < 0) {
+                continue;
+            }
+            int position = positions[m];
+            if (firstMarks[matchId] == 0) {
+                // one-based, so that zero means no mark yet
+                firstMarks[matchId] = position + 1;
+            } else if (newMatches[matchId] == null) {
+                newMatches[matchId] = new Match(length, tokens.getToken(firstMarks[matchId] - 1), tokens.getToken(position));
+                matches.add(newMatches[matchId]);
+            } else {
+                newMatches[matchId].addMark(tokens.getToken(position));
+            }
+        }
+    }
+
+    private static int previousKey(int[] text, int position) {
+        return position == 0 ? START : text[position - 1];
+    }
+
+    /**
+     * A segment tree over the copies of an interval, in increasing order
+     * of positions, to find the first copy at or after some index that
+     * forms a pair with a given copy, that is, which is in another child
+     * and is preceded by another token. Each node keeps at most five copies
+     * of its range, chosen so that the range contains a partner of any
+     * given copy if and only if the kept copies do: one copy {@code e},
+     * two copies in another child than {@code e} preceded by different
+     * tokens, and two copies preceded by another token than {@code e}
+     * in different children. The copies kept by a node are chosen among
+     * those kept by its children. Lookups and removals are in O(log k)
+     * for an interval of k copies.
+     */
+    private static final class CopyTree {
+
+        private static final int KEPT = 5;
+
+        private final int[] children;
+        private final int[] previousKeys;
+        private final int leaves;
+        /** The copies kept by each node, -1 for an empty slot. */
+        private final int[] kept;
+
+        CopyTree(int[] children, int[] previousKeys) {
+            this.children = children;
+            this.previousKeys = previousKeys;
+            int n = children.length;
+            int leafCount = 1;
+            while (leafCount < n) {
+                leafCount <<= 1;
+            }
+            this.leaves = leafCount;
+            this.kept = new int[2 * leaves * KEPT];
+            Arrays.fill(kept, -1);
+            for (int m = 0; m < n; m++) {
+                kept[(leaves + m) * KEPT] = m;
+            }
+            for (int node = leaves - 1; node >= 1; node--) {
+                update(node);
+            }
+        }
+
+        CopyTree(CopyTree other) {
+            this.children = other.children;
+            this.previousKeys = other.previousKeys;
+            this.leaves = other.leaves;
+            this.kept = other.kept.clone();
+        }
+
+        /**
+         * Returns the index of the first copy at or after {@code from}
+         * that forms a pair with the given copy, or -1 if there is none.
+         */
+        int firstPartner(int from, int copy) {
+            return firstPartner(1, 0, leaves, from, children[copy], previousKeys[copy]);
+        }
+
+        private int firstPartner(int node, int lo, int hi, int from, int child, int previousKey) {
+            if (hi <= from || !hasPartner(node, child, previousKey)) {
+                return -1;
+            }
+            if (hi - lo == 1) {
+                return lo;
+            }
+            int mid = (lo + hi) >>> 1;
+            int result = firstPartner(2 * node, lo, mid, from, child, previousKey);
+            return result >= 0 ? result : firstPartner(2 * node + 1, mid, hi, from, child, previousKey);
+        }
+
+        private boolean hasPartner(int node, int child, int previousKey) {
+            for (int s = node * KEPT; s < (node + 1) * KEPT; s++) {
+                int copy = kept[s];
+                if (copy >= 0 && children[copy] != child && previousKeys[copy] != previousKey) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Removes a copy from the tree. */
+        void remove(int copy) {
+            int node = leaves + copy;
+            kept[node * KEPT] = -1;
+            for (node >>= 1; node >= 1; node >>= 1) {
+                update(node);
+            }
+        }
+
+        private void update(int node) {
+            int base = node * KEPT;
+            int e = -1;
+            int otherChild1 = -1;
+            int otherChild2 = -1;
+            int otherKey1 = -1;
+            int otherKey2 = -1;
+            for (int s = 2 * node * KEPT; s < (2 * node + 2) * KEPT; s++) {
+                int copy = kept[s];
+                if (copy < 0) {
+                    continue;
+                }
+                if (e < 0) {
+                    e = copy;
+                    continue;
+                }
+                if (children[copy] != children[e]) {
+                    if (otherChild1 < 0) {
+                        otherChild1 = copy;
+                    } else if (otherChild2 < 0 && previousKeys[copy] != previousKeys[otherChild1]) {
+                        otherChild2 = copy;
+                    }
+                }
+                if (previousKeys[copy] != previousKeys[e]) {
+                    if (otherKey1 < 0) {
+                        otherKey1 = copy;
+                    } else if (otherKey2 < 0 && children[copy] != children[otherKey1]) {
+                        otherKey2 = copy;
+                    }
+                }
+            }
+            kept[base] = e;
+            kept[base + 1] = otherChild1;
+            kept[base + 2] = otherChild2;
+            kept[base + 3] = otherKey1;
+            kept[base + 4] = otherKey2;
+        }
+    }
+}
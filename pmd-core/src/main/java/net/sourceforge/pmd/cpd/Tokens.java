@@ -4,11 +4,14 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.ToIntFunction;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -21,12 +24,29 @@ import net.sourceforge.pmd.lang.document.TextDocument;
 /**
  * Global token collector for CPD. This is populated by lexing all files,
  * after which the match algorithm proceeds.
+ *
+ * <p>Tokens are stored in parallel arrays of ints, indexed by the index
+ * of the token, instead of one object per token. The files of the tokens
+ * are stored once in a separate table. {@link TokenEntry} instances are
+ * only created on demand, eg for the boundaries of a {@link Match}.
  */
 @InternalApi
 public class Tokens {
 
-    // This stores all the token entries recorded during the run.
-    private final List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 1024;
+    /** Number of ints per token in an entry of the {@link CpdTokenCache}. */
+    static final int CACHE_ENTRY_INTS = 5;
+
+    private int size;
+    private int[] identifiers = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] beginColumns = new int[INITIAL_CAPACITY];
+    private int[] endLines = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+    // index of the file of each token in the file table
+    private int[] fileIndices = new int[INITIAL_CAPACITY];
+    private final List<FileId> files = new ArrayList<>();
+
     private final Map<String, Integer> images = new HashMap<>();
     // the first ID is 1, 0 is the ID of the EOF token.
     private int curImageId = 1;
@@ -40,16 +60,49 @@ public class Tokens {
         // constructor is needed to place the annotations
     }
 
-    private void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > identifiers.length) {
+            int newCapacity = Math.max(minCapacity, identifiers.length + (identifiers.length >> 1));
+            identifiers = Arrays.copyOf(identifiers, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            beginColumns = Arrays.copyOf(beginColumns, newCapacity);
+            endLines = Arrays.copyOf(endLines, newCapacity);
+            endColumns = Arrays.copyOf(endColumns, newCapacity);
+            fileIndices = Arrays.copyOf(fileIndices, newCapacity);
+        }
+    }
+
+    private int add(int imageId, int fileIndex, int beginLine, int beginColumn, int endLine, int endColumn) {
+        ensureCapacity(size + 1);
+        identifiers[size] = imageId;
+        beginLines[size] = beginLine;
+        beginColumns[size] = beginColumn;
+        endLines[size] = endLine;
+        endColumns[size] = endColumn;
+        fileIndices[size] = fileIndex;
+        return size++;
+    }
+
+    private void addEof(int fileIndex, int line, int column) {
+        add(TokenEntry.EOF, fileIndex, line, column, line, column);
     }
 
-    private void addEof(FileId filePathId, int line, int column) {
-        add(new TokenEntry(filePathId, line, column));
+    /**
+     * Returns the index of the file in the file table. Tokens of a file are
+     * recorded contiguously, so only the last file needs to be checked.
+     */
+    private int fileIndex(FileId fileId) {
+        int last = files.size() - 1;
+        if (last >= 0 && files.get(last).equals(fileId)) {
+            return last;
+        }
+        files.add(fileId);
+        return last + 1;
     }
 
     private void setImage(TokenEntry entry, String newImage) {
         int i = getImageId(newImage);
+        identifiers[entry.getIndex()] = i;
         entry.setImageIdentifier(i);
     }
 
@@ -62,33 +115,153 @@ public class Tokens {
     }
 
     private TokenEntry peekLastToken() {
-        return tokens.isEmpty() ? null : getToken(size() - 1);
+        return size == 0 ? null : getToken(size - 1);
+    }
+
+    /**
+     * Returns a new entry for the token at the given index.
+     */
+    TokenEntry getToken(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return new TokenEntry(identifiers[index], files.get(fileIndices[index]),
+                              beginLines[index], beginColumns[index],
+                              endLines[index], endColumns[index], index);
     }
 
-    private TokenEntry getToken(int index) {
-        return tokens.get(index);
+    /**
+     * Returns the image identifier of the token at the given index. This
+     * is zero for EOF tokens.
+     */
+    int getIdentifier(int index) {
+        return identifiers[index];
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     TokenEntry getEndToken(TokenEntry mark, Match match) {
         return getToken(mark.getIndex() + match.getTokenCount() - 1);
     }
 
+    /**
+     * Returns a view of the tokens. Entries of the list are created when
+     * they are accessed, so this should not be used in performance-sensitive
+     * code.
+     */
     public List<TokenEntry> getTokens() {
-        return tokens;
+        return new AbstractList<TokenEntry>() {
+            @Override
+            public TokenEntry get(int index) {
+                return getToken(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     TokenEntry addToken(String image, FileId fileName, int startLine, int startCol, int endLine, int endCol) {
-        TokenEntry newToken = new TokenEntry(getImageId(image), fileName, startLine, startCol, endLine, endCol, tokens.size());
-        add(newToken);
-        return newToken;
+        int index = add(getImageId(image), fileIndex(fileName), startLine, startCol, endLine, endCol);
+        return getToken(index);
     }
 
-    State savePoint() {
-        return new State(this);
+    /**
+     * Appends all the tokens of another instance at the end of this one.
+     * This is used to merge the tokens of files that were tokenized
+     * separately, possibly concurrently, each in their own instance. The
+     * image ids of the other instance are only meaningful there, they
+     * are replaced with the ids of the same images in this instance.
+     * Merging the files in the same order therefore produces the same ids.
+     *
+     * @param other Tokens to append, not modified
+     */
+    void addAll(Tokens other) {
+        String[] localImages = other.imagesById();
+        // ids are assigned in the order of the tokens, images that are
+        // not used anymore (replaced with setImage) are not interned
+        int[] imageIds = new int[other.curImageId];
+        int[] fileIds = new int[other.files.size()];
+        for (int i = 0; i < fileIds.length; i++) {
+            fileIds[i] = fileIndex(other.files.get(i));
+        }
+
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            int localId = other.identifiers[i];
+            if (localId != TokenEntry.EOF && imageIds[localId] == 0) {
+                imageIds[localId] = getImageId(localImages[localId]);
+            }
+            identifiers[size + i] = imageIds[localId];
+            fileIndices[size + i] = fileIds[other.fileIndices[i]];
+        }
+        System.arraycopy(other.beginLines, 0, beginLines, size, other.size);
+        System.arraycopy(other.beginColumns, 0, beginColumns, size, other.size);
+        System.arraycopy(other.endLines, 0, endLines, size, other.size);
+        System.arraycopy(other.endColumns, 0, endColumns, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Returns the images of this instance, indexed by their id. The
+     * element at index zero (EOF) is null.
+     */
+    private String[] imagesById() {
+        String[] result = new String[curImageId];
+        for (Entry<String, Integer> image : images.entrySet()) {
+            result[image.getValue()] = image.getKey();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tokens of this instance as an entry of the {@link CpdTokenCache}.
+     * This instance must contain the tokens of a single file. The entry has
+     * {@value #CACHE_ENTRY_INTS} ints per token: the id of its image in the
+     * given dictionary, or zero for EOF, then its begin line, begin column,
+     * end line and end column.
+     *
+     * @param dictionary Returns the id of an image in the dictionary of the cache
+     */
+    int[] toCacheEntry(ToIntFunction<String> dictionary) {
+        String[] localImages = imagesById();
+        int[] dictionaryIds = new int[curImageId];
+        int[] entry = new int[size * CACHE_ENTRY_INTS];
+        for (int i = 0, e = 0; i < size; i++, e += CACHE_ENTRY_INTS) {
+            int localId = identifiers[i];
+            if (localId != TokenEntry.EOF && dictionaryIds[localId] == 0) {
+                dictionaryIds[localId] = dictionary.applyAsInt(localImages[localId]);
+            }
+            entry[e] = dictionaryIds[localId];
+            entry[e + 1] = beginLines[i];
+            entry[e + 2] = beginColumns[i];
+            entry[e + 3] = endLines[i];
+            entry[e + 4] = endColumns[i];
+        }
+        return entry;
+    }
+
+    /**
+     * Creates an instance with the tokens of a file from an entry of the
+     * {@link CpdTokenCache}. This is the inverse of {@link #toCacheEntry(ToIntFunction)}.
+     *
+     * @param fileId     File of the tokens
+     * @param entry      Entry of the cache
+     * @param dictionary Images of the cache, indexed by their id
+     */
+    static Tokens fromCacheEntry(FileId fileId, int[] entry, String[] dictionary) {
+        Tokens tokens = new Tokens();
+        int fileIndex = tokens.fileIndex(fileId);
+        tokens.ensureCapacity(entry.length / CACHE_ENTRY_INTS);
+        for (int e = 0; e < entry.length; e += CACHE_ENTRY_INTS) {
+            int imageId = entry[e] == TokenEntry.EOF ? TokenEntry.EOF : tokens.getImageId(dictionary[entry[e]]);
+            tokens.add(imageId, fileIndex, entry[e + 1], entry[e + 2], entry[e + 3], entry[e + 4]);
+        }
+        return tokens;
     }
 
     /**
@@ -104,11 +277,12 @@ public class Tokens {
     static TokenFactory factoryForFile(TextDocument file, Tokens tokens) {
         return new TokenFactory() {
             final FileId fileId = file.getFileId();
+            final int fileIndex = tokens.fileIndex(fileId);
             final int firstToken = tokens.size();
 
             @Override
             public void recordToken(@NonNull String image, int startLine, int startCol, int endLine, int endCol) {
-                tokens.addToken(image, fileId, startLine, startCol, endLine, endCol);
+                tokens.add(tokens.getImageId(image), fileIndex, startLine, startCol, endLine, endCol);
             }
 
             @Override
@@ -131,37 +305,14 @@ public class Tokens {
 
             @Override
             public void close() {
-                TokenEntry tok = peekLastToken();
-                if (tok == null) {
-                    tokens.addEof(fileId, 1, 1);
+                if (tokens.size() <= firstToken) {
+                    tokens.addEof(fileIndex, 1, 1);
                 } else {
-                    tokens.addEof(fileId, tok.getEndLine(), tok.getEndColumn());
+                    int last = tokens.size() - 1;
+                    tokens.addEof(fileIndex, tokens.endLines[last], tokens.endColumns[last]);
                 }
             }
         };
     }
 
-    /**
-     * Helper class to preserve and restore the current state of the token
-     * entries.
-     */
-    static final class State {
-
-        private final int tokenCount;
-        private final int curImageId;
-
-        State(Tokens tokens) {
-            this.tokenCount = tokens.tokens.size();
-            this.curImageId = tokens.curImageId;
-        }
-
-        public void restore(Tokens tokens) {
-            tokens.images.entrySet().removeIf(e -> e.getValue() >= curImageId);
-            tokens.curImageId = this.curImageId;
-
-            final List<TokenEntry> entries = tokens.getTokens();
-            entries.subList(tokenCount, entries.size()).clear();
-        }
-    }
-
 }
@@ -7,18 +7,18 @@ package net.sourceforge.pmd.cpd;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Map;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import net.sourceforge.pmd.lang.document.Chars;
 import net.sourceforge.pmd.lang.document.FileId;
@@ -32,6 +32,9 @@ import net.sourceforge.pmd.util.StringUtil;
  */
 public final class XMLRenderer implements CPDReportRenderer {
 
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+    private static final int BUFFER_SIZE = 8192;
+
     private String encoding;
 
     /**
@@ -64,91 +67,123 @@ public final class XMLRenderer implements CPDReportRenderer {
         return this.encoding;
     }
 
-    private Document createDocument() {
+    private TransformerHandler createHandler(Writer writer) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder parser = factory.newDocumentBuilder();
-            return parser.newDocument();
-        } catch (ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private void dumpDocToWriter(Document doc, Writer writer) {
-        try {
-            TransformerFactory tf = TransformerFactory.newInstance();
-            Transformer transformer = tf.newTransformer();
+            SAXTransformerFactory tf = (SAXTransformerFactory) TransformerFactory.newInstance();
+            TransformerHandler handler = tf.newTransformerHandler();
+            Transformer transformer = handler.getTransformer();
             transformer.setOutputProperty(OutputKeys.VERSION, "1.0");
             transformer.setOutputProperty(OutputKeys.METHOD, "xml");
             transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
             transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "codefragment");
-            transformer.transform(new DOMSource(doc), new StreamResult(writer));
-        } catch (TransformerException e) {
+            handler.setResult(new StreamResult(writer));
+            return handler;
+        } catch (TransformerConfigurationException e) {
             throw new IllegalStateException(e);
         }
     }
 
 
+    /**
+     * Renders the report as SAX events, which are serialized as they are
+     * produced. Unlike a DOM, this does not keep the whole report in memory,
+     * and code fragments are fetched one match at a time.
+     */
     @Override
     public void render(final CPDReport report, final Writer writer) throws IOException {
-        final Document doc = createDocument();
-        final Element root = doc.createElement("pmd-cpd");
-        final Map<FileId, Integer> numberOfTokensPerFile = report.getNumberOfTokensPerFile();
-        doc.appendChild(root);
-
-        for (final Map.Entry<FileId, Integer> pair : numberOfTokensPerFile.entrySet()) {
-            final Element fileElement = doc.createElement("file");
-            fileElement.setAttribute("path", report.getDisplayName(pair.getKey()));
-            fileElement.setAttribute("totalNumberOfTokens", String.valueOf(pair.getValue()));
-            root.appendChild(fileElement);
-        }
-
-        for (Match match : report.getMatches()) {
-            Element dupElt = createDuplicationElement(doc, match);
-            addFilesToDuplicationElement(doc, dupElt, match, report);
-            addCodeSnippet(doc, dupElt, match, report);
-            root.appendChild(dupElt);
+        final TransformerHandler handler = createHandler(writer);
+        try {
+            handler.startDocument();
+            handler.startElement("", "", "pmd-cpd", NO_ATTRIBUTES);
+
+            final AttributesImpl attributes = new AttributesImpl();
+            for (final Map.Entry<FileId, Integer> pair : report.getNumberOfTokensPerFile().entrySet()) {
+                attributes.clear();
+                addAttribute(attributes, "path", report.getDisplayName(pair.getKey()));
+                addAttribute(attributes, "totalNumberOfTokens", String.valueOf(pair.getValue()));
+                handler.startElement("", "", "file", attributes);
+                handler.endElement("", "", "file");
+            }
+
+            final char[] buffer = new char[BUFFER_SIZE];
+            for (Match match : report.getMatches()) {
+                attributes.clear();
+                addAttribute(attributes, "lines", String.valueOf(match.getLineCount()));
+                addAttribute(attributes, "tokens", String.valueOf(match.getTokenCount()));
+                handler.startElement("", "", "duplication", attributes);
+                addFilesToDuplicationElement(handler, attributes, match, report);
+                addCodeSnippet(handler, buffer, match, report);
+                handler.endElement("", "", "duplication");
+            }
+
+            handler.endElement("", "", "pmd-cpd");
+            handler.endDocument();
+        } catch (SAXException e) {
+            throw new IOException(e);
         }
-        dumpDocToWriter(doc, writer);
         writer.flush();
     }
 
-    private void addFilesToDuplicationElement(Document doc, Element duplication, Match match, CPDReport report) {
+    private void addFilesToDuplicationElement(ContentHandler handler, AttributesImpl attributes, Match match, CPDReport report) throws SAXException {
         for (Mark mark : match) {
-            final Element file = doc.createElement("file");
             FileLocation loc = mark.getLocation();
-            file.setAttribute("line", String.valueOf(loc.getStartLine()));
-            // only remove invalid characters, escaping is done by the DOM impl.
+            attributes.clear();
+            addAttribute(attributes, "line", String.valueOf(loc.getStartLine()));
+            // only remove invalid characters, escaping is done by the serializer.
             String filenameXml10 = StringUtil.removedInvalidXml10Characters(report.getDisplayName(loc.getFileId()));
-            file.setAttribute("path", filenameXml10);
-            file.setAttribute("endline", String.valueOf(loc.getEndLine()));
-            file.setAttribute("column", String.valueOf(loc.getStartColumn()));
-            file.setAttribute("endcolumn", String.valueOf(loc.getEndColumn()));
-            file.setAttribute("begintoken", String.valueOf(mark.getBeginTokenIndex()));
-            file.setAttribute("endtoken", String.valueOf(mark.getEndTokenIndex()));
-            duplication.appendChild(file);
+            addAttribute(attributes, "path", filenameXml10);
+            addAttribute(attributes, "endline", String.valueOf(loc.getEndLine()));
+            addAttribute(attributes, "column", String.valueOf(loc.getStartColumn()));
+            addAttribute(attributes, "endcolumn", String.valueOf(loc.getEndColumn()));
+            addAttribute(attributes, "begintoken", String.valueOf(mark.getBeginTokenIndex()));
+            addAttribute(attributes, "endtoken", String.valueOf(mark.getEndTokenIndex()));
+            handler.startElement("", "", "file", attributes);
+            handler.endElement("", "", "file");
         }
     }
 
-    private void addCodeSnippet(Document doc, Element duplication, Match match, CPDReport report) {
+    private void addCodeSnippet(TransformerHandler handler, char[] buffer, Match match, CPDReport report) throws SAXException {
         Chars codeSnippet = report.getSourceCodeSlice(match.getFirstMark());
         if (codeSnippet != null) {
-            // the code snippet has normalized line endings
-            String platformSpecific = codeSnippet.toString().replace("\n", System.lineSeparator());
-            Element codefragment = doc.createElement("codefragment");
-            // only remove invalid characters, escaping is not necessary in CDATA.
-            // if the string contains the end marker of a CDATA section, then the DOM impl will
-            // create two cdata sections automatically.
-            codefragment.appendChild(doc.createCDATASection(StringUtil.removedInvalidXml10Characters(platformSpecific)));
-            duplication.appendChild(codefragment);
+            handler.startElement("", "", "codefragment", NO_ATTRIBUTES);
+            // if the text contains the end marker of a CDATA section, then the serializer
+            // will create two cdata sections automatically.
+            handler.startCDATA();
+            writeCodeFragment(handler, buffer, codeSnippet);
+            handler.endCDATA();
+            handler.endElement("", "", "codefragment");
+        }
+    }
+
+    /**
+     * Writes the code snippet in chunks, without copying it to a string.
+     * Only invalid characters are removed, escaping is not necessary in CDATA.
+     */
+    private static void writeCodeFragment(ContentHandler handler, char[] buffer, Chars codeSnippet) throws SAXException {
+        // the code snippet has normalized line endings
+        final String lineSeparator = System.lineSeparator();
+        int length = 0;
+        for (int i = 0; i < codeSnippet.length(); i++) {
+            char c = codeSnippet.charAt(i);
+            // leave room for a line separator, and don't split surrogate pairs
+            if (length >= buffer.length - 2 && !Character.isLowSurrogate(c)) {
+                handler.characters(buffer, 0, length);
+                length = 0;
+            }
+            if (c == '\n') {
+                lineSeparator.getChars(0, lineSeparator.length(), buffer, length);
+                length += lineSeparator.length();
+            } else if (c >= 0x20 || c == '\t' || c == '\r') {
+                buffer[length++] = c;
+            }
+        }
+        if (length > 0) {
+            handler.characters(buffer, 0, length);
         }
     }
 
-    private Element createDuplicationElement(Document doc, Match match) {
-        Element duplication = doc.createElement("duplication");
-        duplication.setAttribute("lines", String.valueOf(match.getLineCount()));
-        duplication.setAttribute("tokens", String.valueOf(match.getTokenCount()));
-        return duplication;
+    private static void addAttribute(AttributesImpl attributes, String name, String value) {
+        attributes.addAttribute("", "", name, "CDATA", value);
     }
 }
@@ -17,6 +17,7 @@ import java.util.Objects;
 import java.util.StringTokenizer;
 
 import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,10 @@ import net.sourceforge.pmd.util.AssertionUtil;
  * the String looks like a URL to a file (e.g. starts with <code>file://</code>)
  * the file will be read with each line representing an path on the classpath.
  *
+ * <p>Resources are looked up in a {@link ClasspathIndex}, which is built
+ * on the first lookup, so that each lookup only probes the entries that
+ * contain the package of the resource.
+ *
  * @author Edwin Chan
  */
 public class ClasspathClassLoader extends URLClassLoader {
@@ -37,6 +42,11 @@ public class ClasspathClassLoader extends URLClassLoader {
         registerAsParallelCapable();
     }
 
+    private final Object indexLock = new Object();
+    private volatile boolean indexBuilt;
+    /** Null once the loader is closed, then lookups are done by the superclass. */
+    private @Nullable ClasspathIndex index;
+
     public ClasspathClassLoader(List<File> files, ClassLoader parent) throws IOException {
         super(fileToURL(files), parent);
     }
@@ -108,6 +118,46 @@ public class ClasspathClassLoader extends URLClassLoader {
             + "] parent: " + getParent() + ']';
     }
 
+    private @Nullable ClasspathIndex getIndex() {
+        if (!indexBuilt) {
+            synchronized (indexLock) {
+                if (!indexBuilt) {
+                    index = ClasspathIndex.build(getURLs());
+                    indexBuilt = true;
+                }
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public URL findResource(String name) {
+        ClasspathIndex classpathIndex = getIndex();
+        if (classpathIndex != null) {
+            try {
+                return classpathIndex.findResource(name);
+            } catch (MalformedURLException e) {
+                LOG.debug("Cannot create URL for resource {}", name, e);
+            }
+        }
+        return super.findResource(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (indexLock) {
+                if (index != null) {
+                    index.close();
+                    index = null;
+                }
+                indexBuilt = true;
+            }
+        } finally {
+            super.close();
+        }
+    }
+
     @Override
     public URL getResource(String name) {
         // Override to make it child-first. This is the method used by
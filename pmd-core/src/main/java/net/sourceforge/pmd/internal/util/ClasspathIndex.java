@@ -0,0 +1,288 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Index of the resources of the entries of a {@link ClasspathClassLoader}.
+ * The entries are read once, and their packages are indexed, so that
+ * a resource is only looked up in the entries that contain its package.
+ * In particular, a missing class whose package is not on the classpath
+ * is found missing without looking at any entry.
+ *
+ * <p>Entries are either directories or jar files. Jars are kept open,
+ * their central directory is read once by {@link JarFile}, which then
+ * finds an entry with a hash lookup.
+ *
+ * <p>Some entries cannot be indexed: entries that are not local files,
+ * multi-release jars, whose resources depend on the runtime, and jars
+ * whose manifest adds other entries to the classpath. Those are probed
+ * for every resource, with a {@link URLClassLoader} of their own, in
+ * their position in the classpath. The other entries are still indexed.
+ */
+final class ClasspathIndex implements Closeable {
+
+    /** Entries that contain each package, in classpath order. */
+    private final Map<String, List<Entry>> entriesByPackage = new HashMap<>();
+    /** Entries that are not indexed, in classpath order. */
+    private final List<Entry> unindexedEntries = new ArrayList<>();
+    private final List<Closeable> openFiles = new ArrayList<>();
+
+    private ClasspathIndex() {
+        // use build
+    }
+
+    /**
+     * Returns an index of the given URLs.
+     */
+    static ClasspathIndex build(URL[] urls) {
+        ClasspathIndex index = new ClasspathIndex();
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                index.addEntry(urls[i], i);
+            }
+        } catch (RuntimeException e) {
+            IOUtil.closeQuietly(index);
+            throw e;
+        }
+        return index;
+    }
+
+    private void addEntry(URL url, int position) {
+        File file = toLocalFile(url);
+        if (file == null) {
+            addUnindexedEntry(url, position);
+        } else if (file.isDirectory()) {
+            indexDirectory(new DirEntry(position, file, url), file, "", new HashSet<>());
+        } else if (file.isFile()) {
+            JarFile jar;
+            try {
+                jar = new JarFile(file);
+            } catch (IOException e) {
+                // let the URLClassLoader deal with it
+                addUnindexedEntry(url, position);
+                return;
+            }
+            if (isIndexable(jar)) {
+                openFiles.add(jar);
+                indexJar(new ArchiveEntry(position, jar, url));
+            } else {
+                IOUtil.closeQuietly(jar);
+                addUnindexedEntry(url, position);
+            }
+        }
+        // missing entries are ignored, like in URLClassLoader
+    }
+
+    private static @Nullable File toLocalFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void addUnindexedEntry(URL url, int position) {
+        UrlEntry entry = new UrlEntry(position, url);
+        openFiles.add(entry.loader);
+        unindexedEntries.add(entry);
+    }
+
+    /**
+     * Indexes the packages of a directory. Symbolic links are followed,
+     * the canonical paths of the visited directories are recorded so
+     * that a link to a parent directory doesn't make this loop.
+     */
+    private void indexDirectory(DirEntry entry, File dir, String packagePath, Set<String> visited) {
+        try {
+            if (!visited.add(dir.getCanonicalPath())) {
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean hasFiles = false;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                indexDirectory(entry, file, packagePath + file.getName() + "/", visited);
+            } else {
+                hasFiles = true;
+            }
+        }
+        if (hasFiles) {
+            addPackage(packagePath, entry);
+        }
+    }
+
+    private static boolean isIndexable(JarFile jar) {
+        Manifest manifest;
+        try {
+            manifest = jar.getManifest();
+        } catch (IOException e) {
+            return false;
+        }
+        if (manifest == null) {
+            return true;
+        }
+        Attributes attributes = manifest.getMainAttributes();
+        return attributes.getValue(Attributes.Name.CLASS_PATH) == null
+            && !Boolean.parseBoolean(attributes.getValue("Multi-Release"));
+    }
+
+    private void indexJar(ArchiveEntry entry) {
+        Enumeration<? extends ZipEntry> zipEntries = entry.jar.entries();
+        String lastPackage = null;
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry zipEntry = zipEntries.nextElement();
+            if (zipEntry.isDirectory()) {
+                continue;
+            }
+            String packagePath = packagePath(zipEntry.getName());
+            // entries of a package are usually contiguous
+            if (!packagePath.equals(lastPackage)) {
+                addPackage(packagePath, entry);
+                lastPackage = packagePath;
+            }
+        }
+    }
+
+    private void addPackage(String packagePath, Entry entry) {
+        List<Entry> entries = entriesByPackage.computeIfAbsent(packagePath, p -> new ArrayList<>(1));
+        if (entries.isEmpty() || entries.get(entries.size() - 1) != entry) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Returns the URL of the resource in the first entry that contains
+     * it, or null if no entry contains it.
+     */
+    @Nullable URL findResource(String name) throws MalformedURLException {
+        List<Entry> entries = entriesByPackage.getOrDefault(packagePath(name), Collections.emptyList());
+        // merge the indexed entries with the unindexed ones, by position
+        int i = 0;
+        int j = 0;
+        while (i < entries.size() || j < unindexedEntries.size()) {
+            Entry entry;
+            if (j == unindexedEntries.size()
+                || i < entries.size() && entries.get(i).position < unindexedEntries.get(j).position) {
+                entry = entries.get(i++);
+            } else {
+                entry = unindexedEntries.get(j++);
+            }
+            URL url = entry.findResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the package of a resource, e.g. {@code java/lang/} for {@code java/lang/String.class}. */
+    private static String packagePath(String name) {
+        return name.substring(0, name.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Exception e = IOUtil.closeAll(openFiles);
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException(e);
+        }
+    }
+
+
+    private abstract static class Entry {
+
+        /** Index of the entry in the classpath. */
+        final int position;
+
+        Entry(int position) {
+            this.position = position;
+        }
+
+        abstract @Nullable URL findResource(String name) throws MalformedURLException;
+    }
+
+    private static final class DirEntry extends Entry {
+
+        private final File root;
+        private final URL url;
+
+        DirEntry(int position, File root, URL url) {
+            super(position);
+            this.root = root;
+            this.url = url;
+        }
+
+        @Override
+        @Nullable URL findResource(String name) throws MalformedURLException {
+            return new File(root, name).isFile() ? new URL(url, name) : null;
+        }
+    }
+
+    private static final class ArchiveEntry extends Entry {
+
+        private final JarFile jar;
+        private final String urlPrefix;
+
+        ArchiveEntry(int position, JarFile jar, URL url) {
+            super(position);
+            this.jar = jar;
+            this.urlPrefix = "jar:" + url + "!/";
+        }
+
+        @Override
+        @Nullable URL findResource(String name) throws MalformedURLException {
+            return jar.getEntry(name) != null ? new URL(urlPrefix + name) : null;
+        }
+    }
+
+    /** An entry that is not indexed, and looked up by a URLClassLoader. */
+    private static final class UrlEntry extends Entry {
+
+        private final URLClassLoader loader;
+
+        UrlEntry(int position, URL url) {
+            super(position);
+            this.loader = new URLClassLoader(new URL[] {url}, null);
+        }
+
+        @Override
+        @Nullable URL findResource(String name) {
+            return loader.findResource(name);
+        }
+    }
+}
@@ -6,8 +6,10 @@ package net.sourceforge.pmd.lang;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.annotation.InternalApi;
@@ -67,6 +69,7 @@ public interface LanguageProcessor extends AutoCloseable {
         private final AnalysisCache analysisCache;
         private final MessageReporter messageReporter;
         private final LanguageProcessorRegistry lpRegistry;
+        private final ExecutorService executor;
 
 
         /**
@@ -81,6 +84,22 @@ public interface LanguageProcessor extends AutoCloseable {
                             AnalysisCache analysisCache,
                             MessageReporter messageReporter,
                             LanguageProcessorRegistry lpRegistry) {
+            this(rulesets, files, listener, threadCount, analysisCache, messageReporter, lpRegistry, null);
+        }
+
+        /**
+         * Create a new task. This constructor is internal and will be
+         * called by PMD.
+         */
+        @InternalApi
+        public AnalysisTask(RuleSets rulesets,
+                            List<TextFile> files,
+                            GlobalAnalysisListener listener,
+                            int threadCount,
+                            AnalysisCache analysisCache,
+                            MessageReporter messageReporter,
+                            LanguageProcessorRegistry lpRegistry,
+                            @Nullable ExecutorService executor) {
             this.rulesets = rulesets;
             this.files = files;
             this.listener = listener;
@@ -88,6 +107,7 @@ public interface LanguageProcessor extends AutoCloseable {
             this.analysisCache = analysisCache;
             this.messageReporter = messageReporter;
             this.lpRegistry = lpRegistry;
+            this.executor = executor;
         }
 
         public RuleSets getRulesets() {
@@ -118,6 +138,17 @@ public interface LanguageProcessor extends AutoCloseable {
             return lpRegistry;
         }
 
+        /**
+         * Returns the executor shared by all language processors of
+         * the analysis, or null if there is none. In that case, processors
+         * that run in parallel must create their own threads. The executor
+         * is owned by the caller of {@link LanguageProcessor#launchAnalysis(AnalysisTask)}
+         * and must not be shut down by the language processors.
+         */
+        public @Nullable ExecutorService getExecutor() {
+            return executor;
+        }
+
         /**
          * Produce a new analysis task with just different files.
          */
@@ -129,7 +160,8 @@ public interface LanguageProcessor extends AutoCloseable {
                 threadCount,
                 analysisCache,
                 messageReporter,
-                lpRegistry
+                lpRegistry,
+                executor
             );
         }
     }
@@ -10,6 +10,10 @@ import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -23,6 +27,9 @@ import net.sourceforge.pmd.util.AssertionUtil;
  */
 class NioTextFile extends BaseCloseable implements TextFile {
 
+    /** Files modified more recently than this have no {@linkplain #getMetadataFingerprint() metadata fingerprint}. */
+    private static final long RECENT_MODIFICATION_MILLIS = 2000;
+
     private final Path path;
     private final Charset charset;
     private final LanguageVersion languageVersion;
@@ -55,6 +62,37 @@ class NioTextFile extends BaseCloseable implements TextFile {
         return fileId;
     }
 
+    @Override
+    public long getSizeHint() {
+        try {
+            return Files.size(path);
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public long getMetadataFingerprint() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            FileTime lastModified = attributes.lastModifiedTime();
+            if (!attributes.isRegularFile()
+                || System.currentTimeMillis() - lastModified.toMillis() < RECENT_MODIFICATION_MILLIS) {
+                // Timestamps have a coarse resolution on some file systems, so
+                // a recently modified file may change again without its
+                // timestamp changing. Its contents must then be checked.
+                return 0;
+            }
+            long fingerprint = attributes.size();
+            fingerprint = 31 * fingerprint + lastModified.to(TimeUnit.NANOSECONDS);
+            fingerprint = 31 * fingerprint + Objects.hashCode(attributes.fileKey()); // the inode, where available
+            fingerprint = 31 * fingerprint + charset.name().hashCode();
+            return fingerprint == 0 ? 1 : fingerprint;
+        } catch (IOException | SecurityException e) {
+            return 0;
+        }
+    }
+
     @Override
     public boolean isReadOnly() {
         return readOnly || !Files.isWritable(path);
@@ -39,6 +39,11 @@ class StringTextFile implements TextFile {
         return fileId;
     }
 
+    @Override
+    public long getSizeHint() {
+        return content.getNormalizedText().length();
+    }
+
     @Override
     public TextFileContent readContents() {
         return content;
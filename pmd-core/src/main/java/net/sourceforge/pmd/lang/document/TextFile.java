@@ -67,6 +67,29 @@ public interface TextFile extends Closeable {
     FileId getFileId();
 
 
+    /**
+     * Returns an estimate of the size of this file in bytes, or a negative
+     * value if it is unknown or expensive to compute. This is only used as
+     * a scheduling hint, eg to start the analysis of large files first, and
+     * must not require reading the contents of the file.
+     */
+    default long getSizeHint() {
+        return -1;
+    }
+
+    /**
+     * Returns a fingerprint of the metadata of this file, for instance of
+     * its size and last modification time, or 0 if it is not available.
+     * This must not require reading the contents of the file. If the
+     * fingerprint of a file is the same as in a previous analysis, the
+     * analysis cache assumes that its contents have not changed, and
+     * does not read them again.
+     */
+    default long getMetadataFingerprint() {
+        return 0;
+    }
+
+
     /**
      * Returns true if this file cannot be written to. In that case,
      * {@link #writeContents(TextFileContent)} will throw an exception.
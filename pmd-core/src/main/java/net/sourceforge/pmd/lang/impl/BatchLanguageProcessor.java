@@ -67,7 +67,9 @@ public abstract class BatchLanguageProcessor<P extends LanguagePropertyBundle> i
         // launch processing.
         AbstractPMDProcessor processor = AbstractPMDProcessor.newFileProcessor(newTask);
         // If this is a multi-threaded processor, this call is non-blocking,
-        // the call to close on the returned instance blocks instead.
+        // as files are submitted from another thread. This lets the next
+        // languages queue their files on the shared executor too. The call
+        // to close on the returned instance blocks instead.
         processor.processFiles();
         return processor;
     }
@@ -4,83 +4,193 @@
 
 package net.sourceforge.pmd.lang.impl;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.lang.LanguageProcessor.AnalysisTask;
+import net.sourceforge.pmd.lang.ast.FileAnalysisException;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.util.log.MessageReporter;
 
 
 /**
+ * Processes files in parallel. Files are submitted to the executor as
+ * they are iterated, but at most a bounded number of them are pending
+ * at any time. This keeps memory usage independent of the number of files,
+ * as no per-file future or queued runnable is retained.
+ *
+ * <p>Submission happens on a dedicated thread, so that {@link #processFiles()}
+ * does not block. When the executor is shared by several languages, all of
+ * them are then queued before the first one is done, and the worker threads
+ * take files of any language.
+ *
+ * <p>The executor may use virtual threads. Files are then read concurrently,
+ * while the number of files being parsed and analysed is capped by the
+ * thread count of the task, see {@link RuleSetsPool}.
+ *
  * @author Romain Pelisse &lt;belaran@gmail.com&gt;
  */
 final class MultiThreadProcessor extends AbstractPMDProcessor {
+
+    /**
+     * Number of pending tasks allowed per thread. This needs to be more
+     * than one so that threads don't starve while the producer is blocked.
+     */
+    private static final int PENDING_TASKS_PER_THREAD = 4;
+
     private final ExecutorService executor;
+    /** Whether the executor was created by this instance, in which case it must shut it down. */
+    private final boolean ownsExecutor;
 
-    private final List<Future<?>> futureList;
+    /** Each pending or running task holds a permit. */
+    private final Semaphore pendingTasks;
+    private final int maxPendingTasks;
+    /** The first throwable thrown by a task. */
+    private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+    /** Thread that submits the files, null until {@link #processFiles()} is called. */
+    private Thread submitter;
 
     MultiThreadProcessor(final AnalysisTask task) {
         super(task);
 
-        executor = Executors.newFixedThreadPool(task.getThreadCount(), new PmdThreadFactory());
-        futureList = new LinkedList<>();
+        if (task.getExecutor() != null) {
+            // shared by all languages of the analysis
+            executor = task.getExecutor();
+            ownsExecutor = false;
+        } else {
+            executor = PmdThreadFactory.newAnalysisExecutor(task.getThreadCount());
+            ownsExecutor = true;
+        }
+        maxPendingTasks = Math.max(1, task.getThreadCount()) * PENDING_TASKS_PER_THREAD;
+        pendingTasks = new Semaphore(maxPendingTasks);
     }
 
+    /**
+     * Starts submitting the files, and returns immediately. Submission
+     * blocks when too many files are pending. The call to {@link #close()}
+     * waits for the last file to be submitted, then for the remaining ones
+     * to be processed.
+     */
     @Override
-    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
     public void processFiles() {
-        // The thread-local is not static, but analysis-global
+        // The pool is not static, but analysis-global
         // This means we don't have to reset it manually, every analysis is isolated.
-        // The initial value makes a copy of the rulesets
-        final ThreadLocal<RuleSets> ruleSetCopy = ThreadLocal.withInitial(() -> {
-            RuleSets copy = new RuleSets(task.getRulesets());
-            // use a noop reporter because the copy should only contain rules that
-            // initialized properly
-            copy.initializeRules(task.getLpRegistry(), MessageReporter.quiet());
-            return copy;
-        });
+        // There are at most as many copies of the rulesets as there are threads,
+        // which also caps the number of files processed concurrently when
+        // using virtual threads. Thread-safe rules are shared by all copies,
+        // only the other rules are copied and initialized again.
+        // Use a noop reporter because the copy should only contain rules that
+        // initialized properly
+        final RuleSetsPool ruleSetCopies = new RuleSetsPool(
+            Math.max(1, task.getThreadCount()),
+            () -> task.getRulesets().copyStatefulRules(task.getLpRegistry(), MessageReporter.quiet())
+        );
 
+        submitter = new Thread(() -> {
+            try {
+                submitFiles(ruleSetCopies);
+            } catch (Throwable e) { // NOPMD AvoidCatchingThrowable: rethrown or reported in close
+                firstError.compareAndSet(null, e);
+            }
+        }, "PmdFileSubmitter");
+        submitter.setDaemon(true);
+        submitter.start();
+    }
+
+    @SuppressWarnings("PMD.CloseResource") // closed by the PMDRunnable
+    private void submitFiles(RuleSetsPool ruleSetCopies) {
         for (final TextFile textFile : task.getFiles()) {
-            futureList.add(executor.submit(new PmdRunnable(textFile, task) {
+            if (isAborted()) {
+                return;
+            }
+            try {
+                pendingTasks.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            PmdRunnable runnable = new PmdRunnable(textFile, task) {
                 @Override
                 protected RuleSets getRulesets() {
-                    return ruleSetCopy.get();
+                    try {
+                        return ruleSetCopies.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new FileAnalysisException("Interrupted while waiting for rulesets", e);
+                    }
                 }
-            }));
+
+                @Override
+                protected void releaseRulesets(RuleSets ruleSets) {
+                    ruleSetCopies.release(ruleSets);
+                }
+            };
+            try {
+                executor.execute(() -> runTask(runnable));
+            } catch (RuntimeException e) { // RejectedExecutionException
+                pendingTasks.release();
+                throw e;
+            }
         }
     }
 
+    private void runTask(PmdRunnable runnable) {
+        try {
+            if (!isAborted()) {
+                runnable.run();
+            }
+        } catch (Throwable e) { // NOPMD AvoidCatchingThrowable: rethrown or reported in close
+            firstError.compareAndSet(null, e);
+        } finally {
+            pendingTasks.release();
+        }
+    }
+
+    /** Errors abort the analysis, exceptions are only reported. */
+    private boolean isAborted() {
+        return firstError.get() instanceof Error;
+    }
+
     @Override
     public void close() {
         try {
-            try {
-                for (Future<?> task : futureList) {
-                    task.get();
-                }
-            } catch (ExecutionException e) {
-                task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
-                        e.getCause().toString(), e.getCause());
-                if (e.getCause() instanceof Error) {
-                    throw (Error) e.getCause();
-                }
+            if (submitter != null) {
+                submitter.join();
             }
+            // all permits are available again once all tasks are done
+            pendingTasks.acquire(maxPendingTasks);
+            pendingTasks.release(maxPendingTasks);
 
-            executor.shutdown();
-            while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
-                // still waiting
-                Thread.yield();
+            if (ownsExecutor) {
+                executor.shutdown();
+                while (!executor.awaitTermination(10, TimeUnit.HOURS)) {
+                    // still waiting
+                    Thread.yield();
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            if (submitter != null) {
+                // stop submitting files
+                submitter.interrupt();
+            }
         } finally {
-            executor.shutdownNow();
+            if (ownsExecutor) {
+                executor.shutdownNow();
+            }
+        }
+
+        Throwable error = firstError.get();
+        if (error != null) {
+            task.getMessageReporter().error("Unknown error occurred while executing a PmdRunnable: {0}",
+                                            error.toString(), error);
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
         }
     }
 }
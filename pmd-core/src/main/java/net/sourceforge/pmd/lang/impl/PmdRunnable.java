@@ -6,10 +6,14 @@ package net.sourceforge.pmd.lang.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.listOf;
 
+import java.util.List;
+import java.util.function.Predicate;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.benchmark.TimeTracker;
@@ -47,10 +51,21 @@ abstract class PmdRunnable implements Runnable {
     /**
      * This is only called within the run method (when we are on the actual carrier thread).
      * That way an implementation that uses a ThreadLocal will see the
-     * correct thread.
+     * correct thread. It is only called once the file has been read,
+     * and if it is not found in the analysis cache. The returned instance
+     * is passed to {@link #releaseRulesets(RuleSets)} once the file has
+     * been processed.
      */
     protected abstract RuleSets getRulesets();
 
+    /**
+     * Called when the rulesets returned by {@link #getRulesets()} are
+     * not used by this runnable anymore.
+     */
+    protected void releaseRulesets(RuleSets ruleSets) {
+        // do nothing by default
+    }
+
     @Override
     public void run() throws FileAnalysisException {
         TimeTracker.initThread();
@@ -58,36 +73,16 @@ abstract class PmdRunnable implements Runnable {
         try (TimedOperation ignored = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING);
              FileAnalysisListener listener = task.getListener().startFileAnalysis(textFile)) {
 
-            RuleSets ruleSets = getRulesets();
-
             // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
-            if (ruleSets.applies(textFile)) {
+            // This only depends on the file name patterns, so the rulesets of the task can be used.
+            if (task.getRulesets().applies(textFile)) {
                 AnalysisCache analysisCache = task.getAnalysisCache();
-                try (TextDocument textDocument = TextDocument.create(textFile);
-                     FileAnalysisListener cacheListener = analysisCache.startFileAnalysis(textDocument)) {
-
-                    @SuppressWarnings("PMD.CloseResource")
-                    FileAnalysisListener completeListener = FileAnalysisListener.tee(listOf(listener, cacheListener));
-
-                    if (analysisCache.isUpToDate(textDocument)) {
-                        LOG.trace("Skipping file (lang: {}) because it was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
-                        // note: no cache listener here
-                        //                         vvvvvvvv
-                        reportCachedRuleViolations(listener, textDocument);
-                    } else {
-                        LOG.trace("Processing file (lang: {}): {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
-                        try {
-                            processSource(completeListener, textDocument, ruleSets);
-                        } catch (Exception | StackOverflowError | AssertionError e) {
-                            if (e instanceof Error && !SystemProps.isErrorRecoveryMode()) { // NOPMD:
-                                throw e;
-                            }
-
-                            // The listener handles logging if needed,
-                            // it may also rethrow the error, as a FileAnalysisException (which we let through below)
-                            completeListener.onError(new Report.ProcessingError(e, textFile.getFileId()));
-                        }
-                    }
+                if (analysisCache.isUpToDateByMetadata(textFile)) {
+                    LOG.trace("Skipping file (lang: {}) because its metadata was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                    // note: the file is not even read
+                    reportCachedRuleViolations(listener, analysisCache.getCachedViolations(textFile));
+                } else {
+                    readAndProcess(listener, analysisCache);
                 }
             } else {
                 LOG.trace("Skipping file (lang: {}) because no rule applies: {}", textFile.getLanguageVersion(), textFile.getFileId());
@@ -101,8 +96,45 @@ abstract class PmdRunnable implements Runnable {
         TimeTracker.finishThread();
     }
 
-    private void reportCachedRuleViolations(final FileAnalysisListener ctx, TextDocument file) {
-        for (final RuleViolation rv : task.getAnalysisCache().getCachedViolations(file)) {
+    private void readAndProcess(FileAnalysisListener listener, AnalysisCache analysisCache) throws Exception {
+        try (TextDocument textDocument = TextDocument.create(textFile);
+             FileAnalysisListener cacheListener = analysisCache.startFileAnalysis(textDocument)) {
+
+            @SuppressWarnings("PMD.CloseResource")
+            FileAnalysisListener completeListener = FileAnalysisListener.tee(listOf(listener, cacheListener));
+
+            if (analysisCache.isUpToDate(textDocument)) {
+                LOG.trace("Skipping file (lang: {}) because it was found in the cache: {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                // note: no cache listener here
+                //                         vvvvvvvv
+                reportCachedRuleViolations(listener, analysisCache.getCachedViolations(textDocument));
+            } else {
+                LOG.trace("Processing file (lang: {}): {}", textFile.getLanguageVersion(), textFile.getFileId().getAbsolutePath());
+                // If only some rules changed since the file was cached, the
+                // violations of the other rules are still valid, and only
+                // the changed rules are applied.
+                reportCachedRuleViolations(completeListener, analysisCache.getCachedViolations(textDocument));
+                Predicate<Rule> rulesToApply = analysisCache.getRulesToApply(textDocument);
+                RuleSets ruleSets = getRulesets();
+                try {
+                    processSource(completeListener, textDocument, ruleSets, rulesToApply);
+                } catch (Exception | StackOverflowError | AssertionError e) {
+                    if (e instanceof Error && !SystemProps.isErrorRecoveryMode()) { // NOPMD:
+                        throw e;
+                    }
+
+                    // The listener handles logging if needed,
+                    // it may also rethrow the error, as a FileAnalysisException (which we let through below)
+                    completeListener.onError(new Report.ProcessingError(e, textFile.getFileId()));
+                } finally {
+                    releaseRulesets(ruleSets);
+                }
+            }
+        }
+    }
+
+    private void reportCachedRuleViolations(final FileAnalysisListener ctx, List<RuleViolation> violations) {
+        for (final RuleViolation rv : violations) {
             ctx.onRuleViolation(rv);
         }
     }
@@ -116,7 +148,8 @@ abstract class PmdRunnable implements Runnable {
 
     private void processSource(FileAnalysisListener listener,
                                TextDocument textDocument,
-                               RuleSets ruleSets) throws FileAnalysisException {
+                               RuleSets ruleSets,
+                               Predicate<Rule> rulesToApply) throws FileAnalysisException {
 
         SemanticErrorReporter reporter = SemanticErrorReporter.reportToLogger(task.getMessageReporter());
         @SuppressWarnings("PMD.CloseResource")
@@ -137,7 +170,7 @@ abstract class PmdRunnable implements Runnable {
             throw semanticError;
         }
 
-        ruleSets.apply(rootNode, listener);
+        ruleSets.apply(rootNode, listener, rulesToApply);
     }
 
 }
@@ -4,16 +4,78 @@
 
 package net.sourceforge.pmd.lang.impl;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class PmdThreadFactory implements ThreadFactory {
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * Creates the worker threads of the analysis. This is internal API.
+ */
+@InternalApi
+public final class PmdThreadFactory implements ThreadFactory, ForkJoinWorkerThreadFactory {
 
     private final AtomicInteger counter = new AtomicInteger();
 
     @Override
     public Thread newThread(Runnable r) {
-        return new Thread(r, "PmdThread " + counter.incrementAndGet());
+        return new Thread(r, nextName());
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = new PmdWorkerThread(pool);
+        thread.setName(nextName());
+        return thread;
+    }
+
+    private String nextName() {
+        return "PmdThread " + counter.incrementAndGet();
+    }
+
+    /**
+     * Returns a new work-stealing executor with the given parallelism.
+     * A single instance is shared by all language processors of an
+     * analysis, so that the number of worker threads does not depend
+     * on the number of languages being analysed, and that threads are
+     * not left idle when a language has few files.
+     *
+     * @param threads Number of worker threads, must be positive
+     */
+    public static ExecutorService newAnalysisExecutor(int threads) {
+        // async mode: tasks are never joined, FIFO order is better suited
+        return new ForkJoinPool(threads, new PmdThreadFactory(), null, true);
     }
 
+    /**
+     * Returns a new executor that starts a virtual thread for each task,
+     * or null if virtual threads are not supported by the current runtime.
+     * Virtual threads were introduced in Java 21. This uses reflection
+     * as PMD is compiled for older Java versions.
+     */
+    public static @Nullable ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // not available, or a preview feature that is not enabled
+            return null;
+        }
+    }
+
+    private static final class PmdWorkerThread extends ForkJoinWorkerThread {
+
+        // this constructor keeps the context class loader of the creating thread
+        PmdWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
 }
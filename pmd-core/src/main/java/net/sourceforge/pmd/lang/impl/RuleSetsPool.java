@@ -0,0 +1,58 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import net.sourceforge.pmd.RuleSets;
+
+/**
+ * A bounded pool of copies of the rulesets. Rule instances are not
+ * thread-safe, so a copy may only be used by one file at a time.
+ * Copies are created lazily, and at most {@code maxCopies} of them
+ * exist. Acquiring a copy blocks while all of them are in use, which
+ * also caps the number of files that are parsed and analysed concurrently,
+ * whatever the number of threads.
+ */
+final class RuleSetsPool {
+
+    private final Semaphore permits;
+    private final Queue<RuleSets> idleCopies = new ConcurrentLinkedQueue<>();
+    private final Supplier<RuleSets> copyFactory;
+
+    RuleSetsPool(int maxCopies, Supplier<RuleSets> copyFactory) {
+        this.permits = new Semaphore(maxCopies);
+        this.copyFactory = copyFactory;
+    }
+
+    /**
+     * Returns a copy that is not used by anyone else, waiting for
+     * one to be {@linkplain #release(RuleSets) released} if needed.
+     */
+    RuleSets acquire() throws InterruptedException {
+        permits.acquire();
+        RuleSets copy = idleCopies.poll();
+        if (copy == null) {
+            try {
+                copy = copyFactory.get();
+            } catch (RuntimeException | Error e) {
+                permits.release();
+                throw e;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy obtained with {@link #acquire()} to the pool.
+     */
+    void release(RuleSets copy) {
+        idleCopies.add(copy);
+        permits.release();
+    }
+}
@@ -242,6 +242,21 @@ public abstract class AbstractDelegateRule implements Rule {
         rule.initialize(languageProcessor);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return rule.isThreadSafe();
+    }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return rule.dependsOnAuxClasspath();
+    }
+
+    @Override
+    public boolean usesTypeResolution() {
+        return rule.usesTypeResolution();
+    }
+
     /**
      * @see Rule#hasDescriptor(PropertyDescriptor)
      */
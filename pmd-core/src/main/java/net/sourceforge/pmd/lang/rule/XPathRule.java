@@ -162,6 +162,25 @@ public final class XPathRule extends AbstractRule {
         }
     }
 
+    /**
+     * XPath rules are thread-safe: the compiled query is immutable, and
+     * evaluation state is per file.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * XPath rules use type resolution if they call an extension function,
+     * eg {@code pmd-java:typeIs}. Attributes that depend on types compute
+     * them when they are evaluated.
+     */
+    @Override
+    public boolean usesTypeResolution() {
+        return xpathRuleQuery == null || xpathRuleQuery.usesExtensionFunctions();
+    }
+
     private SaxonXPathRuleQuery getQueryMaybeInitialize() throws PmdXPathException {
         if (xpathRuleQuery == null) {
             throw new IllegalStateException("Not initialized");
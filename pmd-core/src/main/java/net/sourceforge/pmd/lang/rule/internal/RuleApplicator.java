@@ -6,6 +6,7 @@ package net.sourceforge.pmd.lang.rule.internal;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.exception.ExceptionContext;
 import org.slf4j.Logger;
@@ -52,12 +53,19 @@ public class RuleApplicator {
     }
 
     public void apply(Collection<? extends Rule> rules, FileAnalysisListener listener) {
-        applyOnIndex(idx, rules, listener);
+        apply(rules, rule -> true, listener);
     }
 
-    private void applyOnIndex(TreeIndex idx, Collection<? extends Rule> rules, FileAnalysisListener listener) {
+    /**
+     * Applies the rules that match the given filter, the other rules are skipped.
+     */
+    public void apply(Collection<? extends Rule> rules, Predicate<? super Rule> ruleFilter, FileAnalysisListener listener) {
+        applyOnIndex(idx, rules, ruleFilter, listener);
+    }
+
+    private void applyOnIndex(TreeIndex idx, Collection<? extends Rule> rules, Predicate<? super Rule> ruleFilter, FileAnalysisListener listener) {
         for (Rule rule : rules) {
-            if (!RuleSet.applies(rule, currentLangVer)) {
+            if (!RuleSet.applies(rule, currentLangVer) || !ruleFilter.test(rule)) {
                 continue; // No point in even trying to apply the rule
             }
             
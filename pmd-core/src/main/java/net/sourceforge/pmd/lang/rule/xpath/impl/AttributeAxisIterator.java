@@ -10,14 +10,21 @@ import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
@@ -34,8 +41,16 @@ import net.sourceforge.pmd.util.AssertionUtil;
  */
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AttributeAxisIterator.class);
+
     /** Caches the precomputed attribute accessors of a given class. */
-    private static final ConcurrentMap<Class<?>, List<MethodWrapper>> METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, AttributeTable> METHOD_CACHE = new ConcurrentHashMap<>();
+    /**
+     * Same as {@link #METHOD_CACHE}, for each subclass of this iterator,
+     * as they may override {@link #isAttributeAccessor(Class, Method)}.
+     */
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, AttributeTable>> SUBCLASS_METHOD_CACHE
+        = new ConcurrentHashMap<>();
 
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
@@ -60,8 +75,9 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
                                       "getScope"));
 
     /* Iteration variables */
-    private final Iterator<MethodWrapper> iterator;
+    private final AttributeTable table;
     private final Node node;
+    private int index;
 
 
     /**
@@ -71,30 +87,47 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     public AttributeAxisIterator(Node contextNode) {
         this.node = contextNode;
-        this.iterator = METHOD_CACHE.computeIfAbsent(contextNode.getClass(), this::getWrappersForClass).iterator();
+        if (getClass() == AttributeAxisIterator.class) {
+            this.table = getTable(contextNode.getClass());
+        } else {
+            this.table = SUBCLASS_METHOD_CACHE.computeIfAbsent(getClass(), k -> new ConcurrentHashMap<>())
+                                              .computeIfAbsent(contextNode.getClass(),
+                                                               c -> new AttributeTable(c, this::isAttributeAccessor));
+        }
     }
 
-    private List<MethodWrapper> getWrappersForClass(Class<?> nodeClass) {
-        return Arrays.stream(nodeClass.getMethods())
-                     .filter(m -> isAttributeAccessor(nodeClass, m))
-                     .map(m -> {
-                         try {
-                             return new MethodWrapper(m);
-                         } catch (IllegalAccessException e) {
-                             throw AssertionUtil.shouldNotReachHere("Method should be accessible " + e);
-                         }
-                     })
-                     .collect(Collectors.toList());
+    private static AttributeTable getTable(Class<?> nodeClass) {
+        return METHOD_CACHE.computeIfAbsent(nodeClass, c -> new AttributeTable(c, AttributeAxisIterator::isAccessor));
+    }
+
+    /**
+     * Returns the table of the attributes of the nodes of the given class,
+     * if these nodes use this iterator to enumerate their attributes, that is,
+     * if their class does not override {@link Node#getXPathAttributesIterator()}.
+     * Otherwise, returns null.
+     *
+     * <p>This can be used to fetch the value of a single attribute, without
+     * creating an {@link Attribute} for every attribute of the node.
+     */
+    @InternalApi
+    public static @Nullable AttributeTable getAttributeTable(Class<? extends Node> nodeClass) {
+        AttributeTable table = getTable(nodeClass);
+        return table.usesDefaultIterator ? table : null;
     }
 
     /**
      * Returns whether the given method is an attribute accessor,
      * in which case a corresponding Attribute will be added to
-     * the iterator.
+     * the iterator. This is called once per node class and subclass
+     * of this iterator, when the table of the attributes is built.
      *
      * @param method The method to test
      */
     protected boolean isAttributeAccessor(Class<?> nodeClass, Method method) {
+        return isAccessor(nodeClass, method);
+    }
+
+    private static boolean isAccessor(Class<?> nodeClass, Method method) {
         String methodName = method.getName();
 
         return !methodName.startsWith("jjt")
@@ -107,12 +140,12 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
             && !isIgnored(nodeClass, method);
     }
 
-    private boolean isConsideredReturnType(Method method) {
+    private static boolean isConsideredReturnType(Method method) {
         Class<?> klass = method.getReturnType();
         return CONSIDERED_RETURN_TYPES.contains(klass) || klass.isEnum();
     }
 
-    private boolean isIgnored(Class<?> nodeClass, Method method) {
+    private static boolean isIgnored(Class<?> nodeClass, Method method) {
         Class<?> declaration = method.getDeclaringClass();
         if (method.isAnnotationPresent(NoAttribute.class)) {
             return true;
@@ -151,14 +184,111 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
 
     @Override
     public Attribute next() {
-        MethodWrapper m = iterator.next();
-        return new Attribute(node, m.name, m.methodHandle, m.method);
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return table.getAttribute(node, index++);
     }
 
 
     @Override
     public boolean hasNext() {
-        return iterator.hasNext();
+        return index < table.size();
+    }
+
+
+    /**
+     * The attribute accessors of a node class, indexed by the name of
+     * the attribute. They are built once per class. Fetching the value
+     * of an attribute is then a lookup in this table and a call to its
+     * accessor, without creating an {@link Attribute}.
+     */
+    @InternalApi
+    public static final class AttributeTable {
+
+        private final MethodWrapper[] wrappers;
+        private final Map<String, Integer> indexByName;
+        private final boolean usesDefaultIterator;
+
+        AttributeTable(Class<?> nodeClass, BiPredicate<Class<?>, Method> isAccessor) {
+            this.wrappers = Arrays.stream(nodeClass.getMethods())
+                                  .filter(m -> isAccessor.test(nodeClass, m))
+                                  .map(m -> {
+                                      try {
+                                          return new MethodWrapper(m);
+                                      } catch (IllegalAccessException e) {
+                                          throw AssertionUtil.shouldNotReachHere("Method should be accessible " + e);
+                                      }
+                                  })
+                                  .toArray(MethodWrapper[]::new);
+            this.indexByName = new HashMap<>();
+            for (int i = 0; i < wrappers.length; i++) {
+                // like the map of the attributes of a node, the last one wins
+                indexByName.put(wrappers[i].name, i);
+            }
+            this.usesDefaultIterator = usesDefaultIterator(nodeClass);
+        }
+
+        private static boolean usesDefaultIterator(Class<?> nodeClass) {
+            try {
+                return nodeClass.getMethod("getXPathAttributesIterator").getDeclaringClass() == Node.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        /** Returns the number of attributes. */
+        public int size() {
+            return wrappers.length;
+        }
+
+        /** Returns the index of the attribute with the given name, or -1 if there is none. */
+        public int indexOf(String name) {
+            Integer index = indexByName.get(name);
+            return index == null ? -1 : index;
+        }
+
+        /** Returns the name of the attribute at the given index. */
+        public String getName(int index) {
+            return wrappers[index].name;
+        }
+
+        /**
+         * Returns whether the attribute at the given index is deprecated.
+         * Usages of deprecated attributes should be reported with an
+         * {@link Attribute}, see {@link #getAttribute(Node, int)}.
+         */
+        public boolean isDeprecated(int index) {
+            return wrappers[index].deprecated;
+        }
+
+        /** Creates the attribute at the given index for the given node. */
+        public Attribute getAttribute(Node node, int index) {
+            MethodWrapper m = wrappers[index];
+            return new Attribute(node, m.name, m.methodHandle, m.method);
+        }
+
+        /**
+         * Returns the value of the attribute at the given index for the
+         * given node, like {@link Attribute#getValue()}.
+         */
+        public Object getValue(Node node, int index) {
+            try {
+                return wrappers[index].methodHandle.invokeExact(node);
+            } catch (Throwable e) { // NOPMD
+                LOG.debug("Exception while fetching attribute value", e);
+                return null;
+            }
+        }
+
+        /**
+         * Returns the string value of the attribute at the given index for
+         * the given node, like {@link Attribute#getStringValue()}.
+         */
+        public String getStringValue(Node node, int index) {
+            Object v = getValue(node, index);
+            return v == null ? "" : String.valueOf(v);
+        }
     }
 
 
@@ -174,12 +304,14 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
         public MethodHandle methodHandle;
         public Method method;
         public String name;
+        public boolean deprecated;
 
 
         MethodWrapper(Method m) throws IllegalAccessException {
             this.method = m;
             this.methodHandle = LOOKUP.unreflect(m).asType(GETTER_TYPE);
             this.name = truncateMethodName(m.getName());
+            this.deprecated = new Attribute(null, name, methodHandle, m).isDeprecated();
         }
 
 
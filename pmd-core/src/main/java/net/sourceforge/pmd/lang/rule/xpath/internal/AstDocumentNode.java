@@ -33,6 +33,7 @@ class AstDocumentNode extends BaseNodeInfo implements AstNodeOwner {
                     RootNode wrappedNode,
                     Configuration configuration) {
         super(Type.DOCUMENT, configuration.getNamePool(), "", null);
+        this.treeInfo = document;
         this.rootElement = new AstElementNode(document, idGenerator, this, wrappedNode, configuration);
         this.children = Collections.singletonList(rootElement);
     }
@@ -56,6 +57,15 @@ class AstDocumentNode extends BaseNodeInfo implements AstNodeOwner {
         return filter(nodeTest, iterateList(children));
     }
 
+    @Override
+    protected AxisIterator iterateDescendants(Predicate<? super NodeInfo> nodeTest, boolean includeSelf) {
+        if (includeSelf && (nodeTest == null || nodeTest.test(this))) {
+            return super.iterateDescendants(nodeTest, true);
+        }
+        // all the elements of the tree, in document order
+        return filter(nodeTest, getTreeInfo().iterateRange(1, getTreeInfo().getSubtreeEnd(0)));
+    }
+
     @Override
     protected AxisIterator iterateSiblings(Predicate<? super NodeInfo> nodeTest, boolean forwards) {
         return EmptyIterator.ofNodes();
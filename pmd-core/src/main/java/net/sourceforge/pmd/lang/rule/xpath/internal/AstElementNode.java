@@ -18,7 +18,8 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
-import net.sourceforge.pmd.util.CollectionUtil;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator.AttributeTable;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.om.NodeInfo;
@@ -43,7 +44,6 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
     /** The index of the node in the tree according to document order */
     private final int id;
 
-    private final List<AstElementNode> children;
     private @Nullable Map<String, AstAttributeNode> attributes;
     private @Nullable Map<String, Attribute> lightAttributes;
 
@@ -59,11 +59,11 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         this.wrappedNode = wrappedNode;
         this.id = idGenerator.getAndIncrement();
 
-        this.children = new ArrayList<>(wrappedNode.getNumChildren());
-
+        document.addElement(this, parent instanceof AstElementNode ? ((AstElementNode) parent).id : 0);
         for (int i = 0; i < wrappedNode.getNumChildren(); i++) {
-            children.add(new AstElementNode(document, idGenerator, this, wrappedNode.getChild(i), configuration));
+            new AstElementNode(document, idGenerator, this, wrappedNode.getChild(i), configuration);
         }
+        document.endElement(this, idGenerator.intValue());
     }
 
     private static int determineType(Node node) {
@@ -108,13 +108,23 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
         return lightAttributes;
     }
 
+    /** Returns the index of the node in the tree, according to document order. */
+    int getId() {
+        return id;
+    }
+
     @Override
     public boolean hasChildNodes() {
-        return !children.isEmpty();
+        return getTreeInfo().hasChildren(id);
     }
 
     @Override
     List<AstElementNode> getChildren() {
+        List<AstElementNode> children = new ArrayList<>(wrappedNode.getNumChildren());
+        AstTreeInfo tree = getTreeInfo();
+        for (int child = id + 1; child < tree.getSubtreeEnd(id); child = tree.getSubtreeEnd(child)) {
+            children.add(tree.getElement(child));
+        }
         return children;
     }
 
@@ -157,24 +167,43 @@ public final class AstElementNode extends BaseNodeInfo implements SiblingCountin
 
     @Override
     protected AxisIterator iterateChildren(Predicate<? super NodeInfo> nodeTest) {
-        return filter(nodeTest, iterateList(children));
+        return filter(nodeTest, getTreeInfo().iterateChildren(id));
     }
 
     @Override // this excludes self
     protected AxisIterator iterateSiblings(Predicate<? super NodeInfo> nodeTest, boolean forwards) {
-        if (parent == null) {
+        if (!(parent instanceof AstElementNode)) {
+            // the root element has no siblings
             return EmptyIterator.ofNodes();
         }
 
-        List<? extends NodeInfo> siblingsList =
-            forwards ? CollectionUtil.drop(parent.getChildren(), wrappedNode.getIndexInParent() + 1)
-                     : CollectionUtil.take(parent.getChildren(), wrappedNode.getIndexInParent());
+        AstTreeInfo tree = getTreeInfo();
+        return filter(nodeTest, forwards ? tree.iterateFollowingSiblings(id)
+                                         : tree.iteratePrecedingSiblings(id));
+    }
 
-        return filter(nodeTest, iterateList(siblingsList, forwards));
+    @Override
+    protected AxisIterator iterateDescendants(Predicate<? super NodeInfo> nodeTest, boolean includeSelf) {
+        // the descendants are the elements that follow this one, until the end of its subtree
+        AstTreeInfo tree = getTreeInfo();
+        return filter(nodeTest, tree.iterateRange(includeSelf ? id : id + 1, tree.getSubtreeEnd(id)));
     }
 
     @Override
     public String getAttributeValue(String uri, String local) {
+        AttributeTable table = AttributeAxisIterator.getAttributeTable(wrappedNode.getClass());
+        if (table != null) {
+            // fetch the value directly, without creating all the attributes of the node
+            int index = table.indexOf(local);
+            if (index < 0) {
+                return null;
+            }
+            if (table.isDeprecated(index)) {
+                getTreeInfo().getLogger().recordUsageOf(table.getAttribute(wrappedNode, index));
+            }
+            return table.getStringValue(wrappedNode, index);
+        }
+
         Attribute attribute = getLightAttributes().get(local);
         if (attribute != null) {
             getTreeInfo().getLogger().recordUsageOf(attribute);
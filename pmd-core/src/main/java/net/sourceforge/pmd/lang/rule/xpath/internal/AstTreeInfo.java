@@ -4,11 +4,9 @@
 
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 
@@ -17,27 +15,38 @@ import net.sourceforge.pmd.lang.ast.RootNode;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.om.GenericTreeInfo;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.SequenceIterator.Property;
+import net.sf.saxon.tree.iter.AxisIterator;
+import net.sf.saxon.tree.iter.LookaheadIterator;
 
 
 /**
  * A wrapper around the root node of an AST, implementing {@link net.sf.saxon.om.TreeInfo}.
+ * The tree is built once per file, and is shared by all XPath queries.
+ *
+ * <p>The elements of the tree are numbered in document order, starting at
+ * 1 for the root element (0 is the document node). The structure of the
+ * tree is stored in arrays indexed by these ids: the parent of each element,
+ * and the end of its subtree. The first child of an element is the next
+ * element in document order, and the next sibling of an element is the
+ * first element after its subtree. The descendants of an element are the
+ * elements between its id and the end of its subtree.
  */
 public final class AstTreeInfo extends GenericTreeInfo {
 
+    @SuppressWarnings("PMD.LooseCoupling") // getProperties() of the iterators has to return EnumSet
+    private static final EnumSet<Property> ITERATOR_PROPERTIES = EnumSet.of(Property.LOOKAHEAD);
+
     private DeprecatedAttrLogger logger;
-    private final Map<Node, AstElementNode> wrapperCache = new LinkedHashMap<Node, AstElementNode>() {
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            /*
-            hit ratio depending on cache size:
-            512: 61%
-            1024: 75%
-            2048: 82%
-            unbounded: 85%
-             */
-            return size() > 1024;
-        }
-    };
+
+    /** Elements by id, the first one is null. */
+    private final AstElementNode[] elements;
+    /** Ids of the parents of the elements, 0 for the root element. */
+    private final int[] parents;
+    /** Ids that follow the subtrees of the elements (exclusive). */
+    private final int[] subtreeEnds;
+    private final Map<Node, AstElementNode> wrappers;
 
     /**
      * Builds an AstDocument, with the given node as the root.
@@ -49,52 +58,41 @@ public final class AstTreeInfo extends GenericTreeInfo {
      */
     public AstTreeInfo(RootNode node, Configuration configuration) {
         super(configuration);
+        int size = 1 + node.descendantsOrSelf().crossFindBoundaries().count();
+        this.elements = new AstElementNode[size];
+        this.parents = new int[size];
+        this.subtreeEnds = new int[size];
+        this.subtreeEnds[0] = size;
+        this.wrappers = new IdentityHashMap<>(size);
         MutableInt idGenerator = new MutableInt(1); // 0 is taken by the document node
         setRootNode(new AstDocumentNode(this, idGenerator, node, configuration));
     }
 
-    public AstElementNode findWrapperFor(Node node) {
-        AstElementNode element = wrapperCache.get(node);
-        if (element == null) {
-            element = findWrapperImpl(node);
-            wrapperCache.put(node, element);
-            assert element.getUnderlyingNode() == node : "Incorrect wrapper " + element + " for " + node;
-        }
-        return element;
+    /** Called by the constructor of the element, before its children are built. */
+    void addElement(AstElementNode element, int parentId) {
+        int id = element.getId();
+        elements[id] = element;
+        parents[id] = parentId;
+        wrappers.put(element.getUnderlyingNode(), element);
     }
 
-    // for the RootNode, this returns the document node
-    private AstElementNode findWrapperImpl(Node node) {
-        // find the closest cached ancestor
-        AstElementNode cur = getRootNode().getRootElement();
-        List<Node> ancestors = new ArrayList<>();
-        for (Node ancestor : node.ancestorsOrSelf()) {
-            AstElementNode wrappedAncestor = wrapperCache.get(ancestor);
-            ancestors.add(ancestor);
-            if (wrappedAncestor != null) {
-                cur = wrappedAncestor;
-                break;
-            }
-        }
-
-        // then go down the tree from that ancestor
-
-        // note we skip the first, who is the topmost ancestor
-        for (int i = ancestors.size() - 2; i >= 0; i--) {
-            Node ancestor = ancestors.get(i);
-            int idx = ancestor.getIndexInParent();
-            if (idx >= cur.getChildren().size()) {
-                throw new IllegalArgumentException("Node is not part of this tree " + node);
-            }
+    /** Called by the constructor of the element, after its children are built. */
+    void endElement(AstElementNode element, int subtreeEnd) {
+        subtreeEnds[element.getId()] = subtreeEnd;
+    }
 
-            cur = cur.getChildren().get(idx);
-            wrapperCache.put(ancestor, cur);
-        }
-        if (cur.getUnderlyingNode() != node) {
-            // may happen with the root
+    /**
+     * Returns the wrapper of the given node. For the {@link RootNode},
+     * this returns the root element, not the document node.
+     *
+     * @throws IllegalArgumentException If the node is not part of this tree
+     */
+    public AstElementNode findWrapperFor(Node node) {
+        AstElementNode element = wrappers.get(node);
+        if (element == null) {
             throw new IllegalArgumentException("Node is not part of this tree " + node);
         }
-        return cur;
+        return element;
     }
 
     /**
@@ -115,4 +113,135 @@ public final class AstTreeInfo extends GenericTreeInfo {
     public DeprecatedAttrLogger getLogger() {
         return logger == null ? DeprecatedAttrLogger.noop() : logger;
     }
+
+    AstElementNode getElement(int id) {
+        return elements[id];
+    }
+
+    int getParentId(int id) {
+        return parents[id];
+    }
+
+    int getSubtreeEnd(int id) {
+        return subtreeEnds[id];
+    }
+
+    boolean hasChildren(int id) {
+        return subtreeEnds[id] > id + 1;
+    }
+
+    /** Iterates over the children of the given element, or of the document node if the id is 0. */
+    AxisIterator iterateChildren(int id) {
+        return new SiblingIterator(id + 1, subtreeEnds[id]);
+    }
+
+    /** Iterates over the siblings that follow the given element. */
+    AxisIterator iterateFollowingSiblings(int id) {
+        return new SiblingIterator(subtreeEnds[id], subtreeEnds[parents[id]]);
+    }
+
+    /** Iterates over the siblings that precede the given element, in reverse document order. */
+    AxisIterator iteratePrecedingSiblings(int id) {
+        int parent = parents[id];
+        int count = 0;
+        for (int sibling = parent + 1; sibling < id; sibling = subtreeEnds[sibling]) {
+            count++;
+        }
+        int[] siblings = new int[count];
+        for (int sibling = parent + 1, i = count - 1; sibling < id; sibling = subtreeEnds[sibling], i--) {
+            siblings[i] = sibling;
+        }
+        return new IdArrayIterator(siblings);
+    }
+
+    /** Iterates over the elements whose id is in the given range, in document order. */
+    AxisIterator iterateRange(int from, int to) {
+        return new RangeIterator(from, to);
+    }
+
+
+    private abstract class ElementIterator implements AxisIterator, LookaheadIterator {
+
+        @Override
+        public NodeInfo next() {
+            return hasNext() ? elements[nextId()] : null;
+        }
+
+        /** Returns the next id, only called if {@link #hasNext()}. */
+        abstract int nextId();
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public EnumSet<Property> getProperties() {
+            return ITERATOR_PROPERTIES;
+        }
+    }
+
+    private final class SiblingIterator extends ElementIterator {
+
+        private int next;
+        private final int end;
+
+        SiblingIterator(int first, int end) {
+            this.next = first;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        int nextId() {
+            int id = next;
+            next = subtreeEnds[id];
+            return id;
+        }
+    }
+
+    private final class RangeIterator extends ElementIterator {
+
+        private int next;
+        private final int end;
+
+        RangeIterator(int from, int to) {
+            this.next = from;
+            this.end = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        int nextId() {
+            return next++;
+        }
+    }
+
+    private final class IdArrayIterator extends ElementIterator {
+
+        private final int[] ids;
+        private int index;
+
+        IdArrayIterator(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < ids.length;
+        }
+
+        @Override
+        int nextId() {
+            return ids[index++];
+        }
+    }
 }
@@ -0,0 +1,491 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.rule.xpath.internal.NativeXPathQuery.Comparison;
+import net.sourceforge.pmd.lang.rule.xpath.internal.NativeXPathQuery.Condition;
+import net.sourceforge.pmd.lang.rule.xpath.internal.NativeXPathQuery.Step;
+import net.sourceforge.pmd.lang.rule.xpath.internal.NativeXPathQuery.Truth;
+
+/**
+ * Parses the XPath expressions supported by {@link NativeXPathQuery}.
+ * The grammar is:
+ * <pre>{@code
+ * Query      ::= Path ( "|" Path )*
+ * Path       ::= "//" Step ( ( "/" | "//" ) Step )*
+ * Step       ::= Name ( "[" Or "]" )*
+ * Or         ::= And ( "or" And )*
+ * And        ::= Comparison ( "and" Comparison )*
+ * Comparison ::= Operand ( ( "=" | "!=" | "<" | "<=" | ">" | ">=" ) Operand )?
+ * Operand    ::= "@" Name | StringLiteral | IntegerLiteral
+ *              | "true()" | "false()" | "not(" Or ")" | "count(" RelPath ")"
+ *              | "(" Or ")" | RelPath
+ * RelPath    ::= ( "./" | ".//" )? Step ( "/" Step )*
+ * }</pre>
+ *
+ * <p>Only some comparisons are supported, see {@link #comparison(Operand, Comparison, Operand)}.
+ * Anything else, e.g. a function call, a variable or an axis, makes
+ * the whole expression unsupported.
+ */
+final class NativeXPathParser {
+
+    /** Integers up to this are represented exactly as doubles. */
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    private final String xpath;
+    private int pos;
+
+    private NativeXPathParser(String xpath) {
+        this.xpath = xpath;
+    }
+
+    /**
+     * Parses the expression, returns null if it is not supported.
+     */
+    static @Nullable NativeXPathQuery parse(String xpath) {
+        try {
+            return new NativeXPathParser(xpath).query();
+        } catch (UnsupportedExpression e) {
+            return null;
+        }
+    }
+
+    private NativeXPathQuery query() throws UnsupportedExpression {
+        Map<String, List<List<Step>>> pathsByRootName = new LinkedHashMap<>();
+        do {
+            expect("//");
+            List<Step> path = new ArrayList<>();
+            path.add(step(false));
+            while (!atEnd() && !lookingAt("|")) {
+                boolean descendant = lookingAt("//");
+                expect(descendant ? "//" : "/");
+                path.add(step(descendant));
+            }
+            pathsByRootName.computeIfAbsent(path.get(0).getName(), k -> new ArrayList<>(1)).add(path);
+        } while (consume("|"));
+
+        if (!atEnd()) {
+            throw new UnsupportedExpression();
+        }
+        return new NativeXPathQuery(pathsByRootName);
+    }
+
+    private Step step(boolean descendant) throws UnsupportedExpression {
+        String name = name();
+        if (lookingAt("(") || lookingAt(":")) {
+            // function call, kind test, axis or prefixed name
+            throw new UnsupportedExpression();
+        }
+        List<Condition> predicates = new ArrayList<>(1);
+        while (consume("[")) {
+            predicates.add(condition(or()));
+            expect("]");
+        }
+        return new Step(name, descendant, predicates);
+    }
+
+    private Operand or() throws UnsupportedExpression {
+        Operand left = and();
+        if (!lookingAtKeyword("or")) {
+            return left;
+        }
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(condition(left));
+        while (consumeKeyword("or")) {
+            conditions.add(condition(and()));
+        }
+        return Operand.condition((node, logger) -> {
+            boolean unknown = false;
+            for (Condition condition : conditions) {
+                Truth truth = condition.test(node, logger);
+                if (truth == Truth.TRUE) {
+                    return Truth.TRUE;
+                }
+                unknown |= truth == Truth.UNKNOWN;
+            }
+            return unknown ? Truth.UNKNOWN : Truth.FALSE;
+        });
+    }
+
+    private Operand and() throws UnsupportedExpression {
+        Operand left = comparison();
+        if (!lookingAtKeyword("and")) {
+            return left;
+        }
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(condition(left));
+        while (consumeKeyword("and")) {
+            conditions.add(condition(comparison()));
+        }
+        return Operand.condition((node, logger) -> {
+            boolean unknown = false;
+            for (Condition condition : conditions) {
+                Truth truth = condition.test(node, logger);
+                if (truth == Truth.FALSE) {
+                    return Truth.FALSE;
+                }
+                unknown |= truth == Truth.UNKNOWN;
+            }
+            return unknown ? Truth.UNKNOWN : Truth.TRUE;
+        });
+    }
+
+    private Operand comparison() throws UnsupportedExpression {
+        Operand left = operand();
+        Comparison op = comparisonOperator();
+        if (op == null) {
+            return left;
+        }
+        return Operand.condition(comparison(left, op, operand()));
+    }
+
+    private @Nullable Comparison comparisonOperator() {
+        if (consume("!=")) {
+            return Comparison.NE;
+        } else if (consume("=")) {
+            return Comparison.EQ;
+        } else if (consume("<=")) {
+            return Comparison.LE;
+        } else if (consume("<")) {
+            return Comparison.LT;
+        } else if (consume(">=")) {
+            return Comparison.GE;
+        } else if (consume(">")) {
+            return Comparison.GT;
+        }
+        return null;
+    }
+
+    /**
+     * Builds a comparison. The supported comparisons are those of an
+     * attribute with a literal (only equality for strings and booleans),
+     * and of a count with an integer literal.
+     */
+    private static Condition comparison(Operand left, Comparison op, Operand right) throws UnsupportedExpression {
+        if (left.kind.isLiteral() && !right.kind.isLiteral()) {
+            return comparison(right, op.swap(), left);
+        }
+
+        boolean isEquality = op == Comparison.EQ || op == Comparison.NE;
+        if (left.kind == Kind.ATTRIBUTE && right.kind == Kind.STRING && isEquality) {
+            String name = left.name;
+            String literal = right.string;
+            return (node, logger) -> {
+                Object value = NativeXPathQuery.getAttributeValue(node, name, logger);
+                String string = NativeXPathQuery.asString(value);
+                if (string == null) {
+                    return Truth.UNKNOWN;
+                }
+                return Truth.of(op.test(string.equals(literal) ? 0 : 1));
+            };
+        } else if (left.kind == Kind.ATTRIBUTE && right.kind == Kind.BOOLEAN && isEquality) {
+            String name = left.name;
+            boolean literal = right.bool;
+            return (node, logger) -> {
+                Object value = NativeXPathQuery.getAttributeValue(node, name, logger);
+                if (!(value instanceof Boolean)) {
+                    return Truth.UNKNOWN;
+                }
+                return Truth.of(op.test((Boolean) value == literal ? 0 : 1));
+            };
+        } else if (left.kind == Kind.ATTRIBUTE && right.kind == Kind.INTEGER) {
+            String name = left.name;
+            long literal = right.integer;
+            return (node, logger) -> {
+                Object value = NativeXPathQuery.getAttributeValue(node, name, logger);
+                if (!(value instanceof Integer) && !(value instanceof Long)
+                    || Math.abs(((Number) value).longValue()) > MAX_EXACT_DOUBLE) {
+                    // large values may be compared as doubles by Saxon
+                    return Truth.UNKNOWN;
+                }
+                return Truth.of(op.test(Long.compare(((Number) value).longValue(), literal)));
+            };
+        } else if (left.kind == Kind.COUNT && right.kind == Kind.INTEGER) {
+            List<Step> path = left.path;
+            long literal = right.integer;
+            return (node, logger) -> {
+                List<?> selected = NativeXPathQuery.select(path, 0, node, logger);
+                if (selected == null) {
+                    return Truth.UNKNOWN;
+                }
+                return Truth.of(op.test(Long.compare(selected.size(), literal)));
+            };
+        }
+        throw new UnsupportedExpression();
+    }
+
+    /** Converts an operand used as a predicate, or as an operand of {@code and}, {@code or} and {@code not()}. */
+    private static Condition condition(Operand operand) throws UnsupportedExpression {
+        switch (operand.kind) {
+        case CONDITION:
+            return operand.condition;
+        case BOOLEAN:
+            Truth truth = Truth.of(operand.bool);
+            return (node, logger) -> truth;
+        case ATTRIBUTE:
+            String name = operand.name;
+            return (node, logger) -> Truth.of(NativeXPathQuery.hasAttribute(node, name));
+        case PATH:
+            List<Step> path = operand.path;
+            return (node, logger) -> {
+                List<?> selected = NativeXPathQuery.select(path, 0, node, logger);
+                return selected == null ? Truth.UNKNOWN : Truth.of(!selected.isEmpty());
+            };
+        default:
+            // eg a numeric predicate
+            throw new UnsupportedExpression();
+        }
+    }
+
+    private Operand operand() throws UnsupportedExpression {
+        skipWhitespace();
+        if (atEnd()) {
+            throw new UnsupportedExpression();
+        }
+        char c = xpath.charAt(pos);
+        if (consume("@")) {
+            return Operand.attribute(name());
+        } else if (c == '\'' || c == '"') {
+            return Operand.string(stringLiteral(c));
+        } else if (Character.isDigit(c)) {
+            return Operand.integer(integerLiteral());
+        } else if (consume("(")) {
+            Operand inner = or();
+            expect(")");
+            return inner;
+        } else if (lookingAt("./") || lookingAt(".//")) {
+            return Operand.path(relativePath());
+        }
+
+        int start = pos;
+        String name = name();
+        if (consume("(")) {
+            switch (name) {
+            case "true":
+            case "false":
+                expect(")");
+                return Operand.bool("true".equals(name));
+            case "not":
+                Condition condition = condition(or());
+                expect(")");
+                return Operand.condition((node, logger) -> condition.test(node, logger).negate());
+            case "count":
+                List<Step> path = relativePath();
+                expect(")");
+                return Operand.count(path);
+            default:
+                throw new UnsupportedExpression();
+            }
+        }
+        pos = start;
+        return Operand.path(relativePath());
+    }
+
+    private List<Step> relativePath() throws UnsupportedExpression {
+        List<Step> path = new ArrayList<>();
+        boolean descendant = false;
+        if (consume(".//")) {
+            descendant = true;
+        } else {
+            consume("./");
+        }
+        path.add(step(descendant));
+        // a descendant step after the first one may select the same node twice
+        while (lookingAt("/") && !lookingAt("//")) {
+            expect("/");
+            path.add(step(false));
+        }
+        if (lookingAt("//")) {
+            throw new UnsupportedExpression();
+        }
+        return path;
+    }
+
+    private String name() throws UnsupportedExpression {
+        skipWhitespace();
+        int start = pos;
+        if (pos < xpath.length() && isNameStart(xpath.charAt(pos))) {
+            pos++;
+            while (pos < xpath.length() && isNamePart(xpath.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (start == pos) {
+            throw new UnsupportedExpression();
+        }
+        return xpath.substring(start, pos);
+    }
+
+    private static boolean isNameStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isNamePart(char c) {
+        return isNameStart(c) || c >= '0' && c <= '9' || c == '-' || c == '.';
+    }
+
+    private String stringLiteral(char quote) throws UnsupportedExpression {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (pos < xpath.length()) {
+            char c = xpath.charAt(pos++);
+            if (c == quote) {
+                if (pos < xpath.length() && xpath.charAt(pos) == quote) {
+                    // doubled quote
+                    pos++;
+                } else {
+                    return sb.toString();
+                }
+            }
+            sb.append(c);
+        }
+        throw new UnsupportedExpression();
+    }
+
+    private long integerLiteral() throws UnsupportedExpression {
+        int start = pos;
+        while (pos < xpath.length() && Character.isDigit(xpath.charAt(pos))) {
+            pos++;
+        }
+        if (pos < xpath.length() && (xpath.charAt(pos) == '.' || Character.isLetter(xpath.charAt(pos)))) {
+            // decimal or double literal
+            throw new UnsupportedExpression();
+        }
+        try {
+            return Long.parseLong(xpath.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw new UnsupportedExpression();
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < xpath.length() && Character.isWhitespace(xpath.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean atEnd() {
+        skipWhitespace();
+        return pos >= xpath.length();
+    }
+
+    private boolean lookingAt(String token) {
+        skipWhitespace();
+        return xpath.startsWith(token, pos);
+    }
+
+    private boolean lookingAtKeyword(String keyword) {
+        if (!lookingAt(keyword)) {
+            return false;
+        }
+        int end = pos + keyword.length();
+        return end == xpath.length() || !isNamePart(xpath.charAt(end));
+    }
+
+    private boolean consume(String token) {
+        if (lookingAt(token)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consumeKeyword(String keyword) {
+        if (lookingAtKeyword(keyword)) {
+            pos += keyword.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) throws UnsupportedExpression {
+        if (!consume(token)) {
+            throw new UnsupportedExpression();
+        }
+    }
+
+
+    private enum Kind {
+        ATTRIBUTE, STRING, INTEGER, BOOLEAN, COUNT, PATH, CONDITION;
+
+        boolean isLiteral() {
+            return this == STRING || this == INTEGER || this == BOOLEAN;
+        }
+    }
+
+    private static final class Operand {
+
+        final Kind kind;
+        String name;
+        String string;
+        long integer;
+        boolean bool;
+        List<Step> path;
+        Condition condition;
+
+        private Operand(Kind kind) {
+            this.kind = kind;
+        }
+
+        static Operand attribute(String name) {
+            Operand operand = new Operand(Kind.ATTRIBUTE);
+            operand.name = name;
+            return operand;
+        }
+
+        static Operand string(String string) {
+            Operand operand = new Operand(Kind.STRING);
+            operand.string = string;
+            return operand;
+        }
+
+        static Operand integer(long integer) {
+            Operand operand = new Operand(Kind.INTEGER);
+            operand.integer = integer;
+            return operand;
+        }
+
+        static Operand bool(boolean bool) {
+            Operand operand = new Operand(Kind.BOOLEAN);
+            operand.bool = bool;
+            return operand;
+        }
+
+        static Operand count(List<Step> path) {
+            Operand operand = new Operand(Kind.COUNT);
+            operand.path = path;
+            return operand;
+        }
+
+        static Operand path(List<Step> path) {
+            Operand operand = new Operand(Kind.PATH);
+            operand.path = path;
+            return operand;
+        }
+
+        static Operand condition(Condition condition) {
+            Operand operand = new Operand(Kind.CONDITION);
+            operand.condition = condition;
+            return operand;
+        }
+    }
+
+    /** Thrown when the expression is not supported, this is not an error. */
+    private static final class UnsupportedExpression extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedExpression() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator.AttributeTable;
+
+/**
+ * Evaluates simple XPath queries directly on the AST, without Saxon.
+ * The supported queries are unions of paths like {@code //A[@Name = 'foo']/B[count(C) > 1]}:
+ * <ul>
+ * <li>The first step of a path is {@code //Name}, the next steps use
+ * the child ({@code /}) or descendant ({@code //}) axis, with a name test.
+ * <li>Predicates combine conditions with {@code and}, {@code or} and
+ * {@code not()}. A condition compares an attribute with a string, integer
+ * or boolean literal, or {@code count(path)} with an integer literal, or
+ * tests the existence of an attribute or of a relative path.
+ * </ul>
+ * See {@link NativeXPathParser} for the exact grammar. Other queries
+ * are not compiled, and are evaluated by Saxon.
+ *
+ * <p>Some values could be compared differently by Saxon, for instance
+ * a string literal with an attribute whose value is a list. When
+ * such a value is found, the query is not evaluated on the node, and
+ * {@link #evaluate(Node, DeprecatedAttrLogger)} returns null, so that
+ * the node is evaluated by Saxon instead.
+ */
+final class NativeXPathQuery {
+
+    /** Value of attributes that don't exist on a node. */
+    private static final Object ABSENT = new Object();
+
+    private final Map<String, List<List<Step>>> pathsByRootName;
+
+    NativeXPathQuery(Map<String, List<List<Step>>> pathsByRootName) {
+        this.pathsByRootName = pathsByRootName;
+    }
+
+    /**
+     * Compiles the given expression, returns null if it is not supported.
+     */
+    static @Nullable NativeXPathQuery compile(String xpath) {
+        return NativeXPathParser.parse(xpath);
+    }
+
+    /**
+     * Returns the names of the nodes on which the paths start. These
+     * are the names visited by the rulechain.
+     */
+    Set<String> getRootNames() {
+        return pathsByRootName.keySet();
+    }
+
+    /**
+     * Evaluates the query on a node, whose name should be one of the
+     * {@linkplain #getRootNames() root names}. Returns the matched nodes
+     * in document order, or null if the node should be evaluated by
+     * Saxon instead.
+     */
+    @Nullable List<Node> evaluate(Node node, DeprecatedAttrLogger logger) {
+        List<List<Step>> paths = pathsByRootName.get(node.getXPathNodeName());
+        if (paths == null) {
+            return null;
+        }
+
+        boolean needsSorting = paths.size() > 1;
+        List<Node> results = new ArrayList<>();
+        for (List<Step> path : paths) {
+            Step first = path.get(0);
+            Truth matches = first.test(node, logger);
+            if (matches == Truth.UNKNOWN) {
+                return null;
+            } else if (matches == Truth.FALSE) {
+                continue;
+            }
+            List<Node> selected = select(path, 1, node, logger);
+            if (selected == null) {
+                return null;
+            }
+            results.addAll(selected);
+            needsSorting |= hasDescendantStep(path);
+        }
+
+        if (needsSorting) {
+            // paths may select the same nodes, and descendant steps
+            // may select them out of document order
+            List<Node> sorted = new ArrayList<>(new LinkedHashSet<>(results));
+            sorted.sort(RuleChainAnalyzer.documentOrderComparator());
+            return sorted;
+        }
+        return results;
+    }
+
+    private static boolean hasDescendantStep(List<Step> path) {
+        for (int i = 1; i < path.size(); i++) {
+            if (path.get(i).descendant) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects the nodes reached from the context node by the steps,
+     * starting at the given index. Returns null if that is unknown.
+     */
+    static @Nullable List<Node> select(List<Step> steps, int start, Node context, DeprecatedAttrLogger logger) {
+        List<Node> current = Collections.singletonList(context);
+        for (int i = start; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            List<Node> next = new ArrayList<>();
+            for (Node node : current) {
+                if (!step.collect(node, logger, next)) {
+                    return null;
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    static Object getAttributeValue(Node node, String name, DeprecatedAttrLogger logger) {
+        AttributeTable table = AttributeAxisIterator.getAttributeTable(node.getClass());
+        if (table != null) {
+            int index = table.indexOf(name);
+            if (index < 0) {
+                return ABSENT;
+            }
+            if (table.isDeprecated(index)) {
+                logger.recordUsageOf(table.getAttribute(node, index));
+            }
+            return table.getValue(node, index);
+        }
+
+        Iterator<Attribute> it = node.getXPathAttributesIterator();
+        while (it.hasNext()) {
+            Attribute attribute = it.next();
+            if (attribute.getName().equals(name)) {
+                logger.recordUsageOf(attribute);
+                return attribute.getValue();
+            }
+        }
+        return ABSENT;
+    }
+
+    static boolean hasAttribute(Node node, String name) {
+        AttributeTable table = AttributeAxisIterator.getAttributeTable(node.getClass());
+        if (table != null) {
+            return table.indexOf(name) >= 0;
+        }
+
+        Iterator<Attribute> it = node.getXPathAttributesIterator();
+        while (it.hasNext()) {
+            if (it.next().getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the string value of an attribute, or null if Saxon
+     * could compare it differently with a string.
+     */
+    static @Nullable String asString(Object value) {
+        if (value == null) {
+            // this is an empty untyped value for Saxon
+            return "";
+        } else if (value instanceof String || value instanceof Character
+            || value instanceof Enum || value instanceof Pattern) {
+            return String.valueOf(value);
+        }
+        return null;
+    }
+
+
+    /** Result of a condition, which is unknown if it should be evaluated by Saxon. */
+    enum Truth {
+        TRUE, FALSE, UNKNOWN;
+
+        static Truth of(boolean b) {
+            return b ? TRUE : FALSE;
+        }
+
+        Truth negate() {
+            switch (this) {
+            case TRUE:
+                return FALSE;
+            case FALSE:
+                return TRUE;
+            default:
+                return UNKNOWN;
+            }
+        }
+    }
+
+    /** A condition tested on a node, e.g. a predicate. */
+    @FunctionalInterface
+    interface Condition {
+
+        Truth test(Node node, DeprecatedAttrLogger logger);
+    }
+
+    /** Comparison operators. */
+    enum Comparison {
+        EQ, NE, LT, LE, GT, GE;
+
+        /** Tests the result of a {@code compareTo}. */
+        boolean test(int cmp) {
+            switch (this) {
+            case EQ:
+                return cmp == 0;
+            case NE:
+                return cmp != 0;
+            case LT:
+                return cmp < 0;
+            case LE:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            default:
+                return cmp >= 0;
+            }
+        }
+
+        /** Returns the comparison with swapped operands, e.g. {@code <} for {@code >}. */
+        Comparison swap() {
+            switch (this) {
+            case LT:
+                return GT;
+            case LE:
+                return GE;
+            case GT:
+                return LT;
+            case GE:
+                return LE;
+            default:
+                return this;
+            }
+        }
+    }
+
+    /** A step of a path, with a name test. */
+    static final class Step {
+
+        private final String name;
+        /** Whether this uses the descendant axis, otherwise the child axis. */
+        private final boolean descendant;
+        private final List<Condition> predicates;
+
+        Step(String name, boolean descendant, List<Condition> predicates) {
+            this.name = name;
+            this.descendant = descendant;
+            this.predicates = predicates;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /** Tests the predicates on a node. */
+        Truth test(Node node, DeprecatedAttrLogger logger) {
+            boolean unknown = false;
+            for (Condition predicate : predicates) {
+                Truth truth = predicate.test(node, logger);
+                if (truth == Truth.FALSE) {
+                    return Truth.FALSE;
+                }
+                unknown |= truth == Truth.UNKNOWN;
+            }
+            return unknown ? Truth.UNKNOWN : Truth.TRUE;
+        }
+
+        /**
+         * Adds the nodes selected from the context node to the list,
+         * returns false if that is unknown.
+         */
+        boolean collect(Node context, DeprecatedAttrLogger logger, List<Node> out) {
+            Iterable<? extends Node> candidates = descendant ? context.descendants().crossFindBoundaries()
+                                                             : context.children();
+            for (Node node : candidates) {
+                if (name.equals(node.getXPathNodeName())) {
+                    Truth truth = test(node, logger);
+                    if (truth == Truth.UNKNOWN) {
+                        return false;
+                    } else if (truth == Truth.TRUE) {
+                        out.add(node);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
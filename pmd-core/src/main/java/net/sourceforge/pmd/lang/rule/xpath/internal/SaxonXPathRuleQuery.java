@@ -4,14 +4,21 @@
 
 package net.sourceforge.pmd.lang.rule.xpath.internal;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.apache.commons.lang3.exception.ContextedRuntimeException;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +36,8 @@ import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
 import net.sf.saxon.Configuration;
 import net.sf.saxon.expr.Expression;
 import net.sf.saxon.expr.LocalVariableReference;
+import net.sf.saxon.expr.Operand;
+import net.sf.saxon.functions.IntegratedFunctionCall;
 import net.sf.saxon.lib.ExtensionFunctionDefinition;
 import net.sf.saxon.lib.NamespaceConstant;
 import net.sf.saxon.om.AtomicSequence;
@@ -61,12 +70,24 @@ public class SaxonXPathRuleQuery {
     /** Cache key for the wrapped tree for saxon. */
     private static final SimpleDataKey<AstTreeInfo> SAXON_TREE_CACHE_KEY = DataMap.simpleDataKey("saxon.tree");
 
+    /**
+     * Queries compiled by previous instances, shared by all threads.
+     * The compiled expressions are immutable, so the same one can be
+     * evaluated concurrently by several rules. The values are weakly
+     * referenced: an entry is kept only as long as a query that uses
+     * it is reachable, so that the Saxon configurations and the
+     * extension functions of the languages are not retained after
+     * the rules are discarded, e.g. when the analysis is closed.
+     */
+    private static final Map<CacheKey, CompiledQueryRef> COMPILED_QUERIES = new HashMap<>();
+    private static final ReferenceQueue<CompiledQuery> CLEARED_QUERIES = new ReferenceQueue<>();
+
     private final String xpathExpr;
     @SuppressWarnings("PMD") // may be useful later, idk
     private final XPathVersion version;
     private final Map<PropertyDescriptor<?>, Object> properties;
     private final XPathHandler xPathHandler;
-    private final List<String> rulechainQueries = new ArrayList<>();
+    private List<String> rulechainQueries = new ArrayList<>();
     private Configuration configuration;
 
     /**
@@ -79,8 +100,18 @@ public class SaxonXPathRuleQuery {
      */
     XPathExpression xpathExpression;
 
+    /**
+     * The query compiled to be evaluated without Saxon, null if it is
+     * not simple enough. See {@link NativeXPathQuery}.
+     */
+    private @Nullable NativeXPathQuery nativeQuery;
+
     private final DeprecatedAttrLogger attrCtx;
 
+    /** Keeps the entry of {@link #COMPILED_QUERIES} alive while this query is used. */
+    @SuppressWarnings({"unused", "PMD.SingularField"})
+    private CompiledQuery compiledQuery;
+
 
     public SaxonXPathRuleQuery(String xpathExpr,
                                XPathVersion version,
@@ -92,13 +123,60 @@ public class SaxonXPathRuleQuery {
         this.properties = properties;
         this.xPathHandler = xPathHandler;
         this.attrCtx = logger;
-        try {
-            initialize();
-        } catch (XPathException e) {
-            throw wrapException(e, Phase.INITIALIZATION);
+
+        CacheKey key = new CacheKey(xpathExpr, version, properties, xPathHandler);
+        CompiledQuery compiled = getCompiledQuery(key);
+        if (compiled == null) {
+            // compiled outside of the lock, two threads may compile the same query
+            try {
+                initialize();
+            } catch (XPathException e) {
+                throw wrapException(e, Phase.INITIALIZATION);
+            }
+            compiled = putCompiledQuery(key, new CompiledQuery(this));
+        }
+        compiled.copyTo(this);
+    }
+
+    private static @Nullable CompiledQuery getCompiledQuery(CacheKey key) {
+        synchronized (COMPILED_QUERIES) {
+            expungeClearedQueries();
+            CompiledQueryRef ref = COMPILED_QUERIES.get(key);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    /**
+     * Adds the query to the cache, unless another thread added one
+     * with the same key in the meantime. Returns the cached query.
+     */
+    private static CompiledQuery putCompiledQuery(CacheKey key, CompiledQuery compiled) {
+        synchronized (COMPILED_QUERIES) {
+            expungeClearedQueries();
+            CompiledQueryRef ref = COMPILED_QUERIES.get(key);
+            CompiledQuery existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            COMPILED_QUERIES.put(key, new CompiledQueryRef(key, compiled));
+            return compiled;
         }
     }
 
+    private static void expungeClearedQueries() {
+        Reference<? extends CompiledQuery> cleared;
+        while ((cleared = CLEARED_QUERIES.poll()) != null) {
+            CompiledQueryRef ref = (CompiledQueryRef) cleared;
+            // the key may have been mapped to a new entry already
+            COMPILED_QUERIES.remove(ref.key, ref);
+        }
+    }
+
+    // test only
+    static boolean isCompiledQueryCached(String xpathExpr, XPathVersion version, Map<PropertyDescriptor<?>, Object> properties, XPathHandler xPathHandler) {
+        return getCompiledQuery(new CacheKey(xpathExpr, version, properties, xPathHandler)) != null;
+    }
+
 
     public String getXpathExpression() {
         return xpathExpr;
@@ -111,6 +189,17 @@ public class SaxonXPathRuleQuery {
 
 
     public List<Node> evaluate(final Node node) {
+        if (nativeQuery != null) {
+            List<Node> results = nativeQuery.evaluate(node, attrCtx);
+            if (results != null) {
+                return results;
+            }
+        }
+        return evaluateWithSaxon(node);
+    }
+
+    // package-private for tests
+    List<Node> evaluateWithSaxon(final Node node) {
         final AstTreeInfo documentNode = getDocumentNodeForRootNode(node);
         documentNode.setAttrCtx(attrCtx);
         try {
@@ -211,6 +300,37 @@ public class SaxonXPathRuleQuery {
         xpathExpression = xpathEvaluator.createExpression(xpathExpr);
         analyzeXPathForRuleChain(xpathEvaluator);
 
+        nativeQuery = NativeXPathQuery.compile(xpathExpr);
+        if (nativeQuery != null && !nativeQuery.getRootNames().equals(new HashSet<>(rulechainQueries))) {
+            // the rulechain visits other nodes than those the native query expects
+            nativeQuery = null;
+        }
+        LOG.debug("{} native evaluation for XPath: {}", nativeQuery != null ? "Using" : "No", xpathExpr);
+    }
+
+    /**
+     * Returns true if the query calls an extension function, eg one of
+     * the functions of the language.
+     */
+    public boolean usesExtensionFunctions() {
+        return callsExtensionFunction(xpathExpression.getInternalExpression());
+    }
+
+    private static boolean callsExtensionFunction(Expression expr) {
+        if (expr instanceof IntegratedFunctionCall) {
+            return true;
+        }
+        for (Operand operand : expr.operands()) {
+            if (callsExtensionFunction(operand.getChildExpression())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // test only
+    boolean isEvaluatedNatively() {
+        return nativeQuery != null;
     }
 
     private void analyzeXPathForRuleChain(final XPathEvaluator xpathEvaluator) {
@@ -256,6 +376,90 @@ public class SaxonXPathRuleQuery {
     }
 
 
+    /**
+     * Identifies a compiled query. The properties are compared by value,
+     * and the extension functions by identity, they are singletons of the
+     * language.
+     */
+    private static final class CacheKey {
+
+        private final String xpathExpr;
+        private final XPathVersion version;
+        private final Map<PropertyDescriptor<?>, Object> properties;
+        private final Set<ExtensionFunctionDefinition> functions;
+        private final int hash;
+
+        CacheKey(String xpathExpr, XPathVersion version, Map<PropertyDescriptor<?>, Object> properties, XPathHandler xPathHandler) {
+            this.xpathExpr = xpathExpr;
+            this.version = version;
+            // copied, since the values of the rule may change
+            this.properties = new HashMap<>(properties);
+            this.functions = new HashSet<>(xPathHandler.getRegisteredExtensionFunctions());
+            this.hash = Objects.hash(xpathExpr, version, this.properties, functions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return hash == that.hash
+                && xpathExpr.equals(that.xpathExpr)
+                && version == that.version
+                && properties.equals(that.properties)
+                && functions.equals(that.functions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** The result of {@link #initialize()}, which is never modified after that. */
+    private static final class CompiledQuery {
+
+        private final Configuration configuration;
+        private final XPathExpression xpathExpression;
+        private final Map<String, List<Expression>> nodeNameToXPaths;
+        private final List<String> rulechainQueries;
+        private final @Nullable NativeXPathQuery nativeQuery;
+
+        CompiledQuery(SaxonXPathRuleQuery query) {
+            this.configuration = query.configuration;
+            this.xpathExpression = query.xpathExpression;
+            this.nodeNameToXPaths = query.nodeNameToXPaths;
+            this.rulechainQueries = Collections.unmodifiableList(query.rulechainQueries);
+            this.nativeQuery = query.nativeQuery;
+        }
+
+        void copyTo(SaxonXPathRuleQuery query) {
+            query.compiledQuery = this;
+            query.configuration = configuration;
+            query.xpathExpression = xpathExpression;
+            query.nodeNameToXPaths = nodeNameToXPaths;
+            query.rulechainQueries = rulechainQueries;
+            query.nativeQuery = nativeQuery;
+        }
+    }
+
+
+    /** A weak reference to a compiled query, which remembers its key. */
+    private static final class CompiledQueryRef extends WeakReference<CompiledQuery> {
+
+        private final CacheKey key;
+
+        CompiledQueryRef(CacheKey key, CompiledQuery query) {
+            super(query, CLEARED_QUERIES);
+            this.key = key;
+        }
+    }
+
+
     final class StaticContextWithProperties extends IndependentContext {
 
         private final Map<StructuredQName, PropertyDescriptor<?>> propertiesByName = new HashMap<>();
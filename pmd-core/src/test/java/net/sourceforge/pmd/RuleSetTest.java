@@ -17,9 +17,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -31,6 +33,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -47,6 +50,7 @@ import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.rule.MockRule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
 
@@ -461,6 +465,52 @@ class RuleSetTest {
         assertNotSame(rule, ruleSet2.getRuleByName("FooRule1"));
     }
 
+    @Test
+    void copyStatefulRulesSharesThreadSafeRules() {
+        Rule statefulRule = new FooRule();
+        statefulRule.setName("FooRule1");
+        Rule threadSafeRule = new FooRule() {
+            @Override
+            public boolean isThreadSafe() {
+                return true;
+            }
+        };
+        threadSafeRule.setName("FooRule2");
+        RuleSet ruleSet1 = createRuleSetBuilder("RuleSet1")
+            .addRule(statefulRule)
+            .addRule(threadSafeRule)
+            .build();
+        RuleSet ruleSet2 = RuleSet.copyStatefulRules(ruleSet1);
+
+        assertEquals(ruleSet1, ruleSet2);
+        assertNotSame(ruleSet1, ruleSet2);
+
+        assertEquals(statefulRule, ruleSet2.getRuleByName("FooRule1"));
+        assertNotSame(statefulRule, ruleSet2.getRuleByName("FooRule1"));
+        assertSame(threadSafeRule, ruleSet2.getRuleByName("FooRule2"));
+    }
+
+    @Test
+    void ruleChecksumsOnlyChangeForChangedRules() {
+        MockRule rule1 = PmdCoreTestUtils.setDummyLanguage(new MockRule("Rule1", "desc", "msg", "ruleset"));
+        MockRule rule2 = PmdCoreTestUtils.setDummyLanguage(new MockRule("Rule2", "desc", "msg", "ruleset"));
+        RuleSets ruleSets = new RuleSets(createRuleSetBuilder("RuleSet").addRule(rule1).addRule(rule2).build());
+
+        Map<Rule, Long> checksums = ruleSets.getRuleChecksums();
+        assertEquals(checksums, ruleSets.getRuleChecksums(), "Checksums should be stable");
+
+        rule2.setProperty(MockRule.PROP, 42);
+        Map<Rule, Long> newChecksums = ruleSets.getRuleChecksums();
+        assertEquals(checksums.get(rule1), newChecksums.get(rule1));
+        assertNotEquals(checksums.get(rule2), newChecksums.get(rule2));
+
+        RuleSets excluding = new RuleSets(createRuleSetBuilder("RuleSet").addRule(rule1)
+                                                                         .withFileExclusions(Pattern.compile(".*Foo.*"))
+                                                                         .build());
+        assertNotEquals(checksums.get(rule1), excluding.getRuleChecksums().get(rule1),
+                        "File patterns of the ruleset should change the checksum of its rules");
+    }
+
     private void verifyRuleSet(RuleSet ruleset, Set<RuleViolation> expected) throws Exception {
 
         Report report = getReportForRuleSetApply(ruleset, makeCompilationUnits());
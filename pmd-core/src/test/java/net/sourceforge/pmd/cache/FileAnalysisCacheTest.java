@@ -25,8 +25,10 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -36,9 +38,15 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.JvmLanguagePropertyBundle;
 import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageModuleBase.LanguageMetadata;
+import net.sourceforge.pmd.lang.LanguagePropertyBundle;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.lang.document.FileLocation;
@@ -46,6 +54,8 @@ import net.sourceforge.pmd.lang.document.TextDocument;
 import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.document.TextFileContent;
 import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.impl.SimpleLanguageModuleBase;
+import net.sourceforge.pmd.lang.rule.MockRule;
 import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
 import net.sourceforge.pmd.reporting.FileAnalysisListener;
 
@@ -60,9 +70,21 @@ class FileAnalysisCacheTest {
 
     private TextDocument sourceFile;
     private TextFile sourceFileBackend;
+    private Path sourcePath;
 
     private final LanguageVersion dummyVersion = PmdCoreTestUtils.dummyVersion();
 
+    /** A language that uses the auxclasspath, like Java. */
+    private static final Language JVM_LANGUAGE = new SimpleLanguageModuleBase(
+        LanguageMetadata.withId("jvmdummy").name("JvmDummy").extensions("jvmdummy").addDefaultVersion("1.0"),
+        new DummyLanguageModule.Handler()) {
+
+        @Override
+        public LanguagePropertyBundle newPropertyBundle() {
+            return new JvmLanguagePropertyBundle(this);
+        }
+    };
+
 
     @BeforeEach
     public void setUp() throws IOException {
@@ -71,6 +93,7 @@ class FileAnalysisCacheTest {
         emptyCacheFile = Files.createTempFile(tempFolder, null, null).toFile();
         Path sourceFile = tempFolder.resolve("Source.java");
         Files.write(sourceFile, listOf("dummy text"));
+        this.sourcePath = sourceFile;
         this.sourceFileBackend = TextFile.forPath(sourceFile, Charset.defaultCharset(), dummyVersion);
         this.sourceFile = TextDocument.create(sourceFileBackend);
     }
@@ -223,17 +246,61 @@ class FileAnalysisCacheTest {
     }
 
     @Test
-    void testRulesetChangeInvalidatesCache() throws IOException {
-        final RuleSets rs = mock(RuleSets.class);
+    void testRuleChangeInvalidatesCache() throws IOException {
+        final MockRule rule = newRule("Rule");
+        final RuleSets rs = new RuleSets(RuleSet.forSingleRule(rule));
         final ClassLoader cl = mock(ClassLoader.class);
 
         setupCacheWithFiles(newCacheFile, rs, cl);
 
         final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
-        when(rs.getChecksum()).thenReturn(1L);
-        reloadedCache.checkValidity(rs, cl, Collections.emptySet());
+        rule.setProperty(MockRule.PROP, 2);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
         assertFalse(reloadedCache.isUpToDate(sourceFile),
-                "Cache believes unmodified file is up to date after ruleset changed");
+                "Cache believes unmodified file is up to date after a rule changed");
+        assertTrue(reloadedCache.getRulesToApply(sourceFile).test(rule));
+    }
+
+    @Test
+    void testAddedRuleKeepsViolationsOfOtherRules() throws IOException {
+        final MockRule oldRule = newRule("OldRule");
+        final MockRule newRule = newRule("NewRule");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        setupCacheWithViolations(new RuleSets(RuleSet.forSingleRule(oldRule)), cl, oldRule);
+
+        final RuleSets rs = new RuleSets(listOf(RuleSet.forSingleRule(oldRule), RuleSet.forSingleRule(newRule)));
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes unmodified file is up to date after a rule was added");
+
+        final Predicate<Rule> rulesToApply = reloadedCache.getRulesToApply(sourceFile);
+        assertTrue(rulesToApply.test(newRule), "The added rule must be applied");
+        assertFalse(rulesToApply.test(oldRule), "The unchanged rule must not be applied again");
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals(1, cachedViolations.size(), "Violations of the unchanged rule should be kept");
+        assertSame(oldRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    void testRemovedRuleDropsItsViolations() throws IOException {
+        final MockRule keptRule = newRule("KeptRule");
+        final MockRule removedRule = newRule("RemovedRule");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        setupCacheWithViolations(new RuleSets(listOf(RuleSet.forSingleRule(keptRule), RuleSet.forSingleRule(removedRule))),
+                                 cl, keptRule, removedRule);
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(new RuleSets(RuleSet.forSingleRule(keptRule)), cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes unmodified file is not up to date after a rule was removed");
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals(1, cachedViolations.size(), "Violations of the removed rule should be dropped");
+        assertSame(keptRule, cachedViolations.get(0).getRule());
     }
 
     @Test
@@ -268,7 +335,8 @@ class FileAnalysisCacheTest {
 
     @Test
     void testAuxClasspathChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        useJvmLanguage();
+        final RuleSets rs = new RuleSets(RuleSet.forSingleRule(newJvmRule("Rule")));
         final URLClassLoader cl = mock(URLClassLoader.class);
         when(cl.getURLs()).thenReturn(new URL[] { });
 
@@ -281,9 +349,6 @@ class FileAnalysisCacheTest {
         // Make sure the auxclasspath file is not empty
         Files.write(classpathFile.toPath(), "some text".getBytes());
 
-        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
-        when(r.getLanguage()).thenReturn(mock(Language.class));
-        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
         reloadedCache.checkValidity(rs, cl, Collections.emptySet());
         assertFalse(reloadedCache.isUpToDate(sourceFile),
                 "Cache believes unmodified file is up to date after auxclasspath changed");
@@ -291,16 +356,13 @@ class FileAnalysisCacheTest {
 
     @Test
     void testAuxClasspathJarContentsChangeInvalidatesCache() throws MalformedURLException, IOException {
-        final RuleSets rs = mock(RuleSets.class);
+        useJvmLanguage();
+        final RuleSets rs = new RuleSets(RuleSet.forSingleRule(newJvmRule("Rule")));
         final URLClassLoader cl = mock(URLClassLoader.class);
 
         final File classpathFile = Files.createTempFile(tempFolder, null, "foo.class").toFile();
         when(cl.getURLs()).thenReturn(new URL[] { classpathFile.toURI().toURL(), });
 
-        final net.sourceforge.pmd.Rule r = mock(net.sourceforge.pmd.Rule.class);
-        when(r.getLanguage()).thenReturn(mock(Language.class));
-        when(rs.getAllRules()).thenReturn(Collections.singleton(r));
-
         setupCacheWithFiles(newCacheFile, rs, cl);
 
         // Edit the auxclasspath referenced file
@@ -312,6 +374,51 @@ class FileAnalysisCacheTest {
                 "Cache believes cache is up to date when a auxclasspath file changed");
     }
 
+    @Test
+    void testAuxClasspathChangeKeepsResultsOfOtherLanguages() throws MalformedURLException, IOException {
+        final RuleSets rs = new RuleSets(listOf(RuleSet.forSingleRule(newJvmRule("JvmRule")),
+                                                RuleSet.forSingleRule(newRule("Rule"))));
+        final URLClassLoader cl = mock(URLClassLoader.class);
+        when(cl.getURLs()).thenReturn(new URL[] { });
+
+        setupCacheWithFiles(newCacheFile, rs, cl);
+
+        final File classpathFile = Files.createTempFile(tempFolder, null, "foo.class").toFile();
+        Files.write(classpathFile.toPath(), "some text".getBytes());
+        when(cl.getURLs()).thenReturn(new URL[] { classpathFile.toURI().toURL(), });
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes file of a language without auxclasspath is not up to date after auxclasspath changed");
+    }
+
+    @Test
+    void testAuxClasspathChangeKeepsResultsOfRulesWithoutTypeResolution() throws MalformedURLException, IOException {
+        useJvmLanguage();
+        final MockRule rule = new MockRule("Rule", "desc", "message", "ruleset") {
+            @Override
+            public boolean dependsOnAuxClasspath() {
+                return false;
+            }
+        };
+        rule.setLanguage(JVM_LANGUAGE);
+        final RuleSets rs = new RuleSets(RuleSet.forSingleRule(rule));
+        final URLClassLoader cl = mock(URLClassLoader.class);
+        when(cl.getURLs()).thenReturn(new URL[] { });
+
+        setupCacheWithFiles(newCacheFile, rs, cl);
+
+        final File classpathFile = Files.createTempFile(tempFolder, null, "foo.class").toFile();
+        Files.write(classpathFile.toPath(), "some text".getBytes());
+        when(cl.getURLs()).thenReturn(new URL[] { classpathFile.toURI().toURL(), });
+
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                "Cache believes unmodified file is not up to date after auxclasspath changed when no rule cares");
+    }
+
     @Test
     void testClasspathNonExistingEntryIsIgnored() throws Exception {
         restoreSystemProperties(() -> {
@@ -451,6 +558,131 @@ class FileAnalysisCacheTest {
                 "Cache believes a known, changed file is up to date");
     }
 
+    @Test
+    void testFileIsUpToDateByMetadata() throws IOException {
+        makeSourceFileOld();
+        setupCacheWithFilesByMetadata();
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(cache.isUpToDateByMetadata(sourceFileBackend),
+                "Cache believes a known file with unchanged metadata is not up to date");
+        assertTrue(cache.getCachedViolations(sourceFileBackend).isEmpty());
+    }
+
+    @Test
+    void testRemovedRuleViolationsAreNotPersistedByMetadata() throws IOException {
+        makeSourceFileOld();
+        final MockRule keptRule = newRule("KeptRule");
+        final MockRule removedRule = newRule("RemovedRule");
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(new RuleSets(listOf(RuleSet.forSingleRule(keptRule), RuleSet.forSingleRule(removedRule))),
+                            cl, setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDateByMetadata(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        final FileAnalysisListener listener = cache.startFileAnalysis(sourceFile);
+        for (Rule rule : listOf(keptRule, removedRule)) {
+            listener.onRuleViolation(new ParametricRuleViolation(rule, FileLocation.range(sourceFile.getFileId(), TextRange2d.range2d(1, 1, 1, 2)), "message"));
+        }
+        cache.persist();
+
+        // the rule is removed, the file is found by its metadata
+        final RuleSets keptRuleSets = new RuleSets(RuleSet.forSingleRule(keptRule));
+        final FileAnalysisCache secondRun = new FileAnalysisCache(newCacheFile);
+        secondRun.checkValidity(keptRuleSets, cl, setOf(sourceFileBackend));
+        assertTrue(secondRun.isUpToDateByMetadata(sourceFileBackend));
+        assertEquals(1, secondRun.getCachedViolations(sourceFileBackend).size());
+        secondRun.persist();
+
+        // the violations of the removed rule must not come back
+        final FileAnalysisCache thirdRun = new FileAnalysisCache(newCacheFile);
+        thirdRun.checkValidity(keptRuleSets, cl, setOf(sourceFileBackend));
+        assertTrue(thirdRun.isUpToDateByMetadata(sourceFileBackend));
+        final List<RuleViolation> cachedViolations = thirdRun.getCachedViolations(sourceFileBackend);
+        assertEquals(1, cachedViolations.size(), "Violations of the removed rule should not be persisted");
+        assertSame(keptRule, cachedViolations.get(0).getRule());
+    }
+
+    @Test
+    void testTouchedFileIsUpToDateByContents() throws IOException {
+        makeSourceFileOld();
+        setupCacheWithFilesByMetadata();
+
+        // Change the metadata, but not the contents
+        Files.setLastModifiedTime(sourcePath,
+                                  FileTime.fromMillis(System.currentTimeMillis() - 30_000));
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDateByMetadata(sourceFileBackend),
+                "Cache believes a file with changed metadata is up to date without reading it");
+        assertTrue(cache.isUpToDate(sourceFile),
+                "Cache believes a file with unchanged contents is not up to date");
+        cache.persist();
+
+        // the new metadata was recorded
+        final FileAnalysisCache reloadedCache = new FileAnalysisCache(newCacheFile);
+        reloadedCache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDateByMetadata(sourceFileBackend));
+    }
+
+    @Test
+    void testRecentlyModifiedFileIsNotUpToDateByMetadata() throws IOException {
+        // the source file was just written, its timestamp is not reliable
+        setupCacheWithFilesByMetadata();
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDateByMetadata(sourceFileBackend));
+        assertTrue(cache.isUpToDate(sourceFile));
+    }
+
+    private void makeSourceFileOld() throws IOException {
+        Files.setLastModifiedTime(sourcePath,
+                                  FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+    }
+
+    private void setupCacheWithFilesByMetadata() throws IOException {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+
+        assertFalse(cache.isUpToDateByMetadata(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+    }
+
+    private MockRule newRule(String name) {
+        return PmdCoreTestUtils.setDummyLanguage(new MockRule(name, "desc", "message", "ruleset"));
+    }
+
+    private MockRule newJvmRule(String name) {
+        final MockRule rule = new MockRule(name, "desc", "message", "ruleset");
+        rule.setLanguage(JVM_LANGUAGE);
+        return rule;
+    }
+
+    /** Replaces the source file with the same file in a language that has an auxclasspath. */
+    private void useJvmLanguage() {
+        sourceFileBackend = TextFile.forPath(sourcePath, Charset.defaultCharset(), JVM_LANGUAGE.getDefaultVersion());
+        sourceFile = TextDocument.create(sourceFileBackend);
+    }
+
+    private void setupCacheWithViolations(final RuleSets ruleSets,
+                                          final ClassLoader classLoader,
+                                          final Rule... rules) throws IOException {
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(ruleSets, classLoader, setOf(sourceFileBackend));
+
+        cache.isUpToDate(sourceFile);
+        final FileAnalysisListener listener = cache.startFileAnalysis(sourceFile);
+        for (Rule rule : rules) {
+            listener.onRuleViolation(new ParametricRuleViolation(rule, FileLocation.range(sourceFile.getFileId(), TextRange2d.range2d(1, 1, 1, 2)), "message"));
+        }
+        cache.persist();
+    }
+
     private void setupCacheWithFiles(final File cacheFile,
                                      final RuleSets ruleSets,
                                      final ClassLoader classLoader) throws IOException {
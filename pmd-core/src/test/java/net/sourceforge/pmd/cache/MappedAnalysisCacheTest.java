@@ -0,0 +1,188 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static net.sourceforge.pmd.util.CollectionUtil.setOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+
+class MappedAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private File cacheFile;
+
+    private TextDocument sourceFile;
+    private TextFile sourceFileBackend;
+    private TextDocument otherFile;
+    private TextFile otherFileBackend;
+
+    private final LanguageVersion dummyVersion = PmdCoreTestUtils.dummyVersion();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cacheFile = tempFolder.resolve("cache").resolve("pmd-analysis.cache").toFile();
+        Path source = tempFolder.resolve("Source.java");
+        Files.write(source, listOf("dummy text"));
+        sourceFileBackend = TextFile.forPath(source, Charset.defaultCharset(), dummyVersion);
+        sourceFile = TextDocument.create(sourceFileBackend);
+        Path other = tempFolder.resolve("Other.java");
+        Files.write(other, listOf("other text"));
+        otherFileBackend = TextFile.forPath(other, Charset.defaultCharset(), dummyVersion);
+        otherFile = TextDocument.create(otherFileBackend);
+    }
+
+    @Test
+    void testLoadFromNonExistingFile() {
+        final MappedAnalysisCache cache = new MappedAnalysisCache(cacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    void testLoadFromMalformedFileShouldntThrow() throws IOException {
+        Files.createDirectories(cacheFile.toPath().getParent());
+        Files.write(cacheFile.toPath(), "not a cache".getBytes(StandardCharsets.UTF_8));
+
+        final MappedAnalysisCache cache = new MappedAnalysisCache(cacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class), setOf(sourceFileBackend));
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.persist();
+        assertTrue(cacheFile.exists(), "Cache file doesn't exist after store");
+    }
+
+    @Test
+    void testStorePersistsFilesWithViolations() throws IOException {
+        final TextRange2d textLocation = TextRange2d.range2d(1, 2, 3, 4);
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final MappedAnalysisCache cache = new MappedAnalysisCache(cacheFile);
+        cache.checkValidity(rs, cl, setOf(sourceFileBackend, otherFileBackend));
+        analyzeWithOneViolation(cache, sourceFile, textLocation);
+        assertFalse(cache.isUpToDate(otherFile));
+        cache.persist();
+
+        final MappedAnalysisCache reloadedCache = new MappedAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend, otherFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile),
+                   "Cache believes unmodified file with violations is not up to date");
+        assertTrue(reloadedCache.isUpToDate(otherFile),
+                   "Cache believes unmodified file without violations is not up to date");
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals(1, cachedViolations.size(), "Cached rule violations count mismatch");
+        final RuleViolation cachedViolation = cachedViolations.get(0);
+        assertSame(sourceFile.getFileId(), cachedViolation.getFileId());
+        assertEquals(textLocation.getStartLine(), cachedViolation.getBeginLine());
+        assertEquals(textLocation.getStartColumn(), cachedViolation.getBeginColumn());
+        assertEquals(textLocation.getEndLine(), cachedViolation.getEndLine());
+        assertEquals(textLocation.getEndColumn(), cachedViolation.getEndColumn());
+        assertTrue(reloadedCache.getCachedViolations(otherFile).isEmpty());
+    }
+
+    @Test
+    void testUnchangedRecordsAreNotRewritten() throws IOException {
+        final RuleSets rs = mock(RuleSets.class);
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final MappedAnalysisCache cache = new MappedAnalysisCache(cacheFile);
+        cache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        analyzeWithOneViolation(cache, sourceFile, TextRange2d.range2d(1, 2, 3, 4));
+        cache.persist();
+        final long dataSize = totalSize(".data.");
+
+        final MappedAnalysisCache reloadedCache = new MappedAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(reloadedCache.isUpToDate(sourceFile));
+        reloadedCache.persist();
+
+        assertEquals(dataSize, totalSize(".data."), "Up-to-date records should be kept as they are");
+        assertEquals(1, siblings(".idx.").size(), "Stale index files should be deleted");
+
+        final MappedAnalysisCache thirdCache = new MappedAnalysisCache(cacheFile);
+        thirdCache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        assertTrue(thirdCache.isUpToDate(sourceFile));
+        assertEquals(1, thirdCache.getCachedViolations(sourceFile).size());
+    }
+
+    @Test
+    void testRuleChangeInvalidatesCache() throws IOException {
+        final MockRule rule = PmdCoreTestUtils.setDummyLanguage(new MockRule("Rule", "desc", "message", "ruleset"));
+        final RuleSets rs = new RuleSets(RuleSet.forSingleRule(rule));
+        final ClassLoader cl = mock(ClassLoader.class);
+
+        final MappedAnalysisCache cache = new MappedAnalysisCache(cacheFile);
+        cache.checkValidity(rs, cl, setOf(sourceFileBackend));
+        cache.isUpToDate(sourceFile);
+        cache.persist();
+
+        final MappedAnalysisCache reloadedCache = new MappedAnalysisCache(cacheFile);
+        rule.setProperty(MockRule.PROP, 2);
+        reloadedCache.checkValidity(rs, cl, Collections.emptySet());
+        assertFalse(reloadedCache.isUpToDate(sourceFile),
+                    "Cache believes unmodified file is up to date after a rule changed");
+    }
+
+    private void analyzeWithOneViolation(MappedAnalysisCache cache, TextDocument doc, TextRange2d textLocation) {
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+
+        assertFalse(cache.isUpToDate(doc));
+        final FileAnalysisListener listener = cache.startFileAnalysis(doc);
+        listener.onRuleViolation(new ParametricRuleViolation(rule, FileLocation.range(doc.getFileId(), textLocation), "message"));
+    }
+
+    private List<Path> siblings(String infix) throws IOException {
+        try (Stream<Path> files = Files.list(cacheFile.toPath().getParent())) {
+            return files.filter(it -> it.getFileName().toString().startsWith(cacheFile.getName() + infix))
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private long totalSize(String infix) throws IOException {
+        long size = 0;
+        for (Path file : siblings(infix)) {
+            size += Files.size(file);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.PmdCoreTestUtils;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.document.FileLocation;
+import net.sourceforge.pmd.lang.document.TextDocument;
+import net.sourceforge.pmd.lang.document.TextFile;
+import net.sourceforge.pmd.lang.document.TextRange2d;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
+import net.sourceforge.pmd.reporting.FileAnalysisListener;
+
+class SharedAnalysisCacheTest {
+
+    @TempDir
+    private Path tempFolder;
+
+    private Path storeDir;
+    private Path checkoutA;
+    private Path checkoutB;
+
+    private MockRule rule;
+    private RuleSets ruleSets;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storeDir = tempFolder.resolve("store");
+        checkoutA = tempFolder.resolve("agent1/checkout");
+        checkoutB = tempFolder.resolve("agent2/work/checkout");
+        rule = PmdCoreTestUtils.setDummyLanguage(new MockRule("Rule", "desc", "message", "ruleset"));
+        ruleSets = new RuleSets(RuleSet.forSingleRule(rule));
+    }
+
+    @Test
+    void testEntriesAreSharedBetweenCheckouts() throws IOException {
+        final TextRange2d textLocation = TextRange2d.range2d(1, 2, 3, 4);
+        final TextDocument sourceA = createSource(checkoutA, "src/Source.dummy", "dummy text");
+        analyzeWithOneViolation(newCache(checkoutA), sourceA, textLocation);
+
+        final TextDocument sourceB = createSource(checkoutB, "src/Source.dummy", "dummy text");
+        final SharedAnalysisCache cache = newCache(checkoutB);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertTrue(cache.isUpToDate(sourceB), "Entry of the other checkout should be used");
+
+        final List<RuleViolation> violations = cache.getCachedViolations(sourceB);
+        assertEquals(1, violations.size());
+        assertSame(sourceB.getFileId(), violations.get(0).getFileId());
+        assertSame(rule, violations.get(0).getRule());
+        assertEquals(textLocation.getStartLine(), violations.get(0).getBeginLine());
+        assertEquals(textLocation.getEndColumn(), violations.get(0).getEndColumn());
+    }
+
+    @Test
+    void testChangedContentsAreNotUpToDate() throws IOException {
+        analyzeWithOneViolation(newCache(checkoutA), createSource(checkoutA, "Source.dummy", "dummy text"),
+                                TextRange2d.range2d(1, 2, 3, 4));
+
+        final SharedAnalysisCache cache = newCache(checkoutB);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertFalse(cache.isUpToDate(createSource(checkoutB, "Source.dummy", "other text")));
+        assertFalse(cache.isUpToDate(createSource(checkoutB, "Other.dummy", "dummy text")),
+                    "Files with the same contents but another path should not share entries");
+    }
+
+    @Test
+    void testChangedRuleIsNotUpToDate() throws IOException {
+        final TextDocument source = createSource(checkoutA, "Source.dummy", "dummy text");
+        analyzeWithOneViolation(newCache(checkoutA), source, TextRange2d.range2d(1, 2, 3, 4));
+
+        rule.setProperty(MockRule.PROP, 2);
+        final SharedAnalysisCache cache = newCache(checkoutA);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertFalse(cache.isUpToDate(source), "Entries should not be used after a rule changed");
+    }
+
+    @Test
+    void testEntriesAreWrittenOnce() throws IOException {
+        final TextDocument source = createSource(checkoutA, "Source.dummy", "dummy text");
+        analyzeWithOneViolation(newCache(checkoutA), source, TextRange2d.range2d(1, 2, 3, 4));
+        final List<Path> entries = listEntries();
+        assertEquals(1, entries.size());
+        final long lastModified = Files.getLastModifiedTime(entries.get(0)).toMillis();
+
+        final SharedAnalysisCache cache = newCache(checkoutA);
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertTrue(cache.isUpToDate(source));
+        cache.persist();
+
+        assertEquals(entries, listEntries());
+        assertEquals(lastModified, Files.getLastModifiedTime(entries.get(0)).toMillis());
+    }
+
+    @Test
+    void testDirectoryStore() throws IOException {
+        final DirectoryAnalysisCacheStore store = new DirectoryAnalysisCacheStore(storeDir);
+        final String key = "0123456789abcdef";
+        assertNull(store.load(key));
+        assertFalse(store.contains(key));
+
+        final byte[] entry = "entry".getBytes(StandardCharsets.UTF_8);
+        store.store(key, entry);
+        store.store(key, entry);
+
+        assertTrue(store.contains(key));
+        assertArrayEquals(entry, store.load(key));
+        assertTrue(Files.isRegularFile(storeDir.resolve("01").resolve(key)), "Entries should be sharded");
+        assertEquals(listOf(storeDir.resolve("01").resolve(key)), listEntries(), "Temporary files should be removed");
+    }
+
+    private SharedAnalysisCache newCache(final Path checkout) {
+        return new SharedAnalysisCache(new DirectoryAnalysisCacheStore(storeDir), checkout);
+    }
+
+    private TextDocument createSource(final Path checkout, final String path, final String contents) throws IOException {
+        final Path file = checkout.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, listOf(contents));
+        return TextDocument.create(TextFile.forPath(file, Charset.defaultCharset(), PmdCoreTestUtils.dummyVersion()));
+    }
+
+    private void analyzeWithOneViolation(final SharedAnalysisCache cache, final TextDocument doc, final TextRange2d textLocation) {
+        cache.checkValidity(ruleSets, mock(ClassLoader.class), Collections.emptySet());
+        assertFalse(cache.isUpToDate(doc));
+        final FileAnalysisListener listener = cache.startFileAnalysis(doc);
+        listener.onRuleViolation(new ParametricRuleViolation(rule, FileLocation.range(doc.getFileId(), textLocation), "message"));
+        cache.persist();
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.walk(storeDir)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.io.Files;
+
+class FileMetadataFingerprinterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ClasspathEntryFingerprinter fingerprinter = new FileMetadataFingerprinter();
+
+    @Test
+    void appliesToAnyFile() {
+        assertTrue(fingerprinter.appliesTo("lib"));
+        assertTrue(fingerprinter.appliesTo(""));
+        assertTrue(fingerprinter.appliesTo(null));
+    }
+
+    @Test
+    void fingerprintNonExistingFile() throws IOException {
+        Checksum checksum = new Adler32();
+        final long prevValue = checksum.getValue();
+
+        fingerprinter.fingerprint(new File("non-existing").toURI().toURL(), checksum);
+
+        assertEquals(prevValue, checksum.getValue());
+    }
+
+    @Test
+    void fingerprintDirectory() throws IOException {
+        Checksum checksum = new Adler32();
+        final long prevValue = checksum.getValue();
+
+        fingerprinter.fingerprint(tempDir.toUri().toURL(), checksum);
+
+        assertEquals(prevValue, checksum.getValue());
+    }
+
+    @Test
+    void fingerprintChangesWithSizeAndModificationTime() throws IOException {
+        File file = tempDir.resolve("library.lib").toFile();
+        Files.write("some content", file, StandardCharsets.UTF_8);
+        assertTrue(file.setLastModified(1_000_000L));
+
+        long initial = fingerprint(file);
+        assertNotEquals(new Adler32().getValue(), initial);
+        assertEquals(initial, fingerprint(file));
+
+        assertTrue(file.setLastModified(2_000_000L));
+        long touched = fingerprint(file);
+        assertNotEquals(initial, touched);
+
+        Files.write("some other content", file, StandardCharsets.UTF_8);
+        assertTrue(file.setLastModified(2_000_000L));
+        assertNotEquals(touched, fingerprint(file));
+    }
+
+    @Test
+    void classpathWithUnknownExtensionIsFingerprinted() throws IOException {
+        File file = tempDir.resolve("library.lib").toFile();
+        Files.write("some content", file, StandardCharsets.UTF_8);
+        assertTrue(file.setLastModified(1_000_000L));
+        ClasspathFingerprinter classpathFingerprinter = new ClasspathFingerprinter();
+        long initial = classpathFingerprinter.fingerprint(file.toURI().toURL());
+
+        assertTrue(file.setLastModified(2_000_000L));
+        assertNotEquals(initial, classpathFingerprinter.fingerprint(file.toURI().toURL()));
+    }
+
+    private long fingerprint(File file) throws IOException {
+        Checksum checksum = new Adler32();
+        fingerprinter.fingerprint(file.toURI().toURL(), checksum);
+        return checksum.getValue();
+    }
+}
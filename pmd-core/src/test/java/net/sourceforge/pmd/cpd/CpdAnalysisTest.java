@@ -5,16 +5,21 @@
 package net.sourceforge.pmd.cpd;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import net.sourceforge.pmd.lang.DummyLanguageModule;
 
@@ -145,6 +150,53 @@ class CpdAnalysisTest {
 
     }
 
+    @Test
+    void testSameReportWithThreads() throws Exception {
+        config.setThreads(0);
+        CPDReport singleThreaded = analyzeDuplicates();
+        config.setThreads(4);
+        CPDReport multiThreaded = analyzeDuplicates();
+
+        assertEquals(singleThreaded.getNumberOfTokensPerFile(), multiThreaded.getNumberOfTokensPerFile());
+        assertEquals(describeMatches(singleThreaded), describeMatches(multiThreaded));
+    }
+
+    @Test
+    void testSameReportWithCache(@TempDir Path tempDir) throws Exception {
+        CPDReport withoutCache = analyzeDuplicates();
+        config.setCacheLocation(tempDir.resolve("cpd.cache"));
+        CPDReport firstRun = analyzeDuplicates();
+        assertTrue(Files.isRegularFile(tempDir.resolve("cpd.cache")));
+        CPDReport cachedRun = analyzeDuplicates();
+
+        assertEquals(describeMatches(withoutCache), describeMatches(firstRun));
+        assertEquals(describeMatches(withoutCache), describeMatches(cachedRun));
+        assertEquals(withoutCache.getNumberOfTokensPerFile(), cachedRun.getNumberOfTokensPerFile());
+    }
+
+    private CPDReport analyzeDuplicates() throws Exception {
+        List<CPDReport> reports = new ArrayList<>();
+        try (CpdAnalysis cpd = CpdAnalysis.create(config)) {
+            cpd.files().addFile(Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup2.java"));
+            cpd.files().addFile(Paths.get("./" + BASE_TEST_RESOURCE_PATH, "dup1.java"));
+            cpd.files().addFile(Paths.get("./" + BASE_TEST_RESOURCE_PATH, "real-file.txt"));
+            cpd.performAnalysis(reports::add);
+        }
+        assertEquals(1, reports.size());
+        return reports.get(0);
+    }
+
+    private static List<String> describeMatches(CPDReport report) {
+        List<String> result = new ArrayList<>();
+        for (Match match : report.getMatches()) {
+            for (Mark mark : match) {
+                result.add(match.getTokenCount() + " " + mark.getLocation().startPosToStringWithFile()
+                               + " " + mark.getBeginTokenIndex() + "-" + mark.getEndTokenIndex());
+            }
+        }
+        return result;
+    }
+
     /**
      * Simple listener that fails, if too many files were added and not skipped.
      */
@@ -0,0 +1,137 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguagePropertyBundle;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+
+class CpdTokenCacheTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private Path cacheFile;
+    private CPDConfiguration config;
+
+    @BeforeEach
+    void setUp() {
+        cacheFile = tempDir.resolve("cache/cpd.cache");
+        config = new CPDConfiguration();
+    }
+
+    @Test
+    void testTokensAreRestored() {
+        TextDocument doc = document("Foo", "a bb a\nccc");
+        Tokens tokens = tokenize(doc);
+        CpdTokenCache cache = newCache();
+        assertNull(cache.get(doc));
+        cache.put(doc, tokens);
+        cache.persist();
+
+        Tokens cached = newCache().get(doc);
+        assertNotNull(cached, "Tokens of an unchanged file should be cached");
+        assertEquals(tokens.size(), cached.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenEntry expected = tokens.getToken(i);
+            TokenEntry actual = cached.getToken(i);
+            assertEquals(expected.getImage(tokens), actual.getImage(cached));
+            assertEquals(expected.getFileId(), actual.getFileId());
+            assertEquals(expected.getBeginLine(), actual.getBeginLine());
+            assertEquals(expected.getBeginColumn(), actual.getBeginColumn());
+            assertEquals(expected.getEndLine(), actual.getEndLine());
+            assertEquals(expected.getEndColumn(), actual.getEndColumn());
+        }
+    }
+
+    @Test
+    void testChangedFileIsNotCached() {
+        TextDocument doc = document("Foo", "a bb a");
+        CpdTokenCache cache = newCache();
+        cache.put(doc, tokenize(doc));
+        cache.persist();
+
+        assertNull(newCache().get(document("Foo", "a bb b")));
+        assertNull(newCache().get(document("Bar", "a bb a")));
+    }
+
+    @Test
+    void testChangedLanguagePropertiesInvalidateCache() {
+        TextDocument doc = document("Foo", "a bb a");
+        CpdTokenCache cache = newCache();
+        cache.put(doc, tokenize(doc));
+        cache.persist();
+
+        config.getLanguageProperties(DummyLanguageModule.getInstance())
+              .setProperty(LanguagePropertyBundle.SUPPRESS_MARKER, "NOCPD");
+        assertNull(newCache().get(doc));
+    }
+
+    @Test
+    void testOnlyFilesOfLastRunArePersisted() {
+        TextDocument foo = document("Foo", "a bb a");
+        TextDocument bar = document("Bar", "c dd c");
+        CpdTokenCache cache = newCache();
+        cache.put(foo, tokenize(foo));
+        cache.put(bar, tokenize(bar));
+        cache.persist();
+
+        cache = newCache();
+        assertNotNull(cache.get(foo));
+        cache.persist();
+
+        cache = newCache();
+        assertNotNull(cache.get(foo));
+        assertNull(cache.get(bar));
+    }
+
+    @Test
+    void testCorruptedCacheIsIgnored() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Files.write(cacheFile, new byte[] { 0, 0, 0, 1, 0 });
+
+        TextDocument doc = document("Foo", "a bb a");
+        assertNull(newCache().get(doc));
+    }
+
+    private CpdTokenCache newCache() {
+        CpdTokenCache cache = new CpdTokenCache(cacheFile, config);
+        cache.load();
+        return cache;
+    }
+
+    private static TextDocument document(String name, String text) {
+        return TextDocument.readOnlyString(text, FileId.fromPathLikeString(name),
+                                           DummyLanguageModule.getInstance().getDefaultVersion());
+    }
+
+    private static Tokens tokenize(TextDocument doc) {
+        Tokens tokens = new Tokens();
+        try (TokenFactory tf = Tokens.factoryForFile(doc, tokens)) {
+            String[] lines = doc.getText().toString().split("\n");
+            for (int line = 0; line < lines.length; line++) {
+                int column = 1;
+                for (String image : lines[line].split(" ")) {
+                    tf.recordToken(image, line + 1, column, line + 1, column + image.length());
+                    column += image.length() + 1;
+                }
+            }
+        }
+        return tokens;
+    }
+}
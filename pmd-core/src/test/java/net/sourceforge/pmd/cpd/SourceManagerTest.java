@@ -0,0 +1,150 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
+
+class SourceManagerTest {
+
+    private static final String CONTENT = CpdTestUtils.generateDummyContent(10);
+
+    private final TextFile foo = textFile(CpdTestUtils.FOO_FILE_ID);
+    private final TextFile bar = textFile(CpdTestUtils.BAR_FILE_ID);
+    private final TextFile baz = textFile(FileId.fromPathLikeString("/var/Baz.java"));
+
+    @Test
+    void testDocumentsAreCached() throws Exception {
+        try (SourceManager sourceManager = new SourceManager(Arrays.asList(foo, bar), Long.MAX_VALUE)) {
+            assertSame(sourceManager.get(foo), sourceManager.get(foo));
+            sourceManager.get(bar);
+            assertEquals(1, sourceManager.getCacheHits());
+            assertEquals(2, sourceManager.getCacheMisses());
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedDocumentIsEvicted() throws Exception {
+        // room for two documents
+        long maxSize = 2L * CONTENT.length() * 2;
+        try (SourceManager sourceManager = new SourceManager(Arrays.asList(foo, bar, baz), maxSize)) {
+            sourceManager.get(foo);
+            sourceManager.get(bar);
+            sourceManager.get(foo);
+            sourceManager.get(baz); // evicts bar
+            assertEquals(1, sourceManager.getCacheHits());
+            assertEquals(3, sourceManager.getCacheMisses());
+
+            sourceManager.get(foo);
+            sourceManager.get(baz);
+            assertEquals(3, sourceManager.getCacheHits());
+            sourceManager.get(bar);
+            assertEquals(4, sourceManager.getCacheMisses());
+        }
+    }
+
+    @Test
+    void testExpectedSlicesAreExtractedInFileOrder() throws Exception {
+        // the tokens of each file are contiguous, as in a CPD analysis
+        Tokens tokens = new Tokens();
+        List<Mark> fooMarks = marks(tokens, foo);
+        List<Mark> barMarks = marks(tokens, bar);
+        List<Mark> bazMarks = marks(tokens, baz);
+        // the first marks of the matches alternate between foo and bar
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < fooMarks.size(); i++) {
+            Mark first = i % 2 == 0 ? fooMarks.get(i) : barMarks.get(i);
+            matches.add(new Match(10, first, bazMarks.get(i)));
+        }
+
+        // no room for more than one document
+        try (SourceManager sourceManager = new SourceManager(Arrays.asList(foo, bar, baz), CONTENT.length() * 2)) {
+            sourceManager.expectSlices(matches);
+            for (Match match : matches) {
+                Mark mark = match.getFirstMark();
+                String expected = CONTENT.split("\n")[mark.getLocation().getStartLine() - 1] + "\n";
+                assertEquals(expected, sourceManager.getSlice(mark).toString());
+            }
+            assertEquals(2, sourceManager.getCacheMisses());
+        }
+    }
+
+    @Test
+    void testExpectedSlicesAreExtractedByWindows() throws Exception {
+        List<Match> matches = manyMatches(2 * SourceManager.SLICE_WINDOW + 10);
+
+        try (SourceManager sourceManager = new SourceManager(Arrays.asList(foo, bar), Long.MAX_VALUE)) {
+            sourceManager.expectSlices(matches);
+            for (int i = 0; i < matches.size(); i++) {
+                assertSliceIsCorrect(sourceManager, matches.get(i).getFirstMark());
+                // the slices of the current window are kept until they are requested
+                int remainingInWindow = SourceManager.SLICE_WINDOW - 1 - i % SourceManager.SLICE_WINDOW;
+                assertEquals(Math.min(remainingInWindow, matches.size() - 1 - i), sourceManager.getPendingSliceCount());
+            }
+        }
+    }
+
+    @Test
+    void testExpectedSlicesAreBoundedByCacheSize() throws Exception {
+        List<Match> matches = manyMatches(SourceManager.SLICE_WINDOW);
+
+        // room for one document, which is the size of ten slices
+        try (SourceManager sourceManager = new SourceManager(Arrays.asList(foo, bar), CONTENT.length() * 2)) {
+            sourceManager.expectSlices(matches);
+            assertSliceIsCorrect(sourceManager, matches.get(0).getFirstMark());
+            int pending = sourceManager.getPendingSliceCount();
+            assertTrue(pending > 0 && pending <= 11, "Too many slices extracted: " + pending);
+
+            for (Match match : matches) {
+                assertSliceIsCorrect(sourceManager, match.getFirstMark());
+            }
+            assertEquals(0, sourceManager.getPendingSliceCount());
+        }
+    }
+
+    private List<Match> manyMatches(int count) {
+        Tokens tokens = new Tokens();
+        List<Mark> fooMarks = marks(tokens, foo, count);
+        List<Mark> barMarks = marks(tokens, bar, count);
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            matches.add(new Match(10, fooMarks.get(i), barMarks.get(i)));
+        }
+        return matches;
+    }
+
+    private static void assertSliceIsCorrect(SourceManager sourceManager, Mark mark) {
+        String expected = CONTENT.split("\n")[mark.getLocation().getStartLine() - 1] + "\n";
+        assertEquals(expected, sourceManager.getSlice(mark).toString());
+    }
+
+    private static List<Mark> marks(Tokens tokens, TextFile file) {
+        return marks(tokens, file, 10);
+    }
+
+    private static List<Mark> marks(Tokens tokens, TextFile file, int count) {
+        List<Mark> marks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int line = i % 10 + 1;
+            marks.add(new Mark(tokens.addToken("public", file.getFileId(), line, 1, line, 7)));
+        }
+        return marks;
+    }
+
+    private static TextFile textFile(FileId fileId) {
+        return TextFile.forCharSeq(CONTENT, fileId, DummyLanguageModule.getInstance().getDefaultVersion());
+    }
+}
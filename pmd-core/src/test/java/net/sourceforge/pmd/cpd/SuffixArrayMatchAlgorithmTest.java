@@ -0,0 +1,147 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static net.sourceforge.pmd.util.CollectionUtil.listOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextDocument;
+
+/**
+ * Checks that {@link SuffixArrayMatchAlgorithm} reports the same matches
+ * as {@link MatchAlgorithm}.
+ */
+class SuffixArrayMatchAlgorithmTest {
+
+    @Test
+    void testSimpleDuplicate() {
+        Tokens tokens = new Tokens();
+        addFile(tokens, "Foo", "a b c d e f x y z");
+        addFile(tokens, "Bar", "q a b c d e f r");
+
+        List<Match> matches = assertSameMatches(tokens, 5);
+        assertEquals(1, matches.size());
+        assertEquals(6, matches.get(0).getTokenCount());
+        assertEquals(0, matches.get(0).getFirstMark().getBeginTokenIndex());
+        assertEquals(11, matches.get(0).getSecondMark().getBeginTokenIndex());
+    }
+
+    @Test
+    void testNoDuplicateAcrossEndOfFile() {
+        Tokens tokens = new Tokens();
+        addFile(tokens, "Foo", "a b c");
+        addFile(tokens, "Bar", "d e f a b c");
+        addFile(tokens, "Baz", "d e f");
+
+        assertEquals(0, assertSameMatches(tokens, 4).size());
+    }
+
+    @Test
+    void testOverlappingCopies() {
+        Tokens tokens = new Tokens();
+        addFile(tokens, "Foo", "a a a a a a a a a b a a a a b");
+
+        assertFalse(assertSameMatches(tokens, 2).isEmpty());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void testManyFilesWithTheSameHeader() {
+        // every file starts with the same header, half of them with a longer one
+        int fileCount = 20_000;
+        Tokens tokens = new Tokens();
+        for (int f = 0; f < fileCount; f++) {
+            String header = f % 2 == 0 ? "p q r s t u v w" : "p q r s t";
+            addFile(tokens, "File" + f, header + " f" + f);
+        }
+
+        List<Match> matches = new SuffixArrayMatchAlgorithm(tokens, 5).findMatches(new CPDNullListener(), null);
+        List<String> summary = new ArrayList<>();
+        for (Match match : matches) {
+            summary.add(match.getTokenCount() + ":" + match.getMarkCount());
+        }
+        assertEquals(listOf("8:" + fileCount / 2, "5:" + fileCount), summary);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 5, 10 })
+    void testRandomTokens(int minTileSize) {
+        Random random = new Random(minTileSize);
+        for (int run = 0; run < 200; run++) {
+            // a small alphabet and repeated snippets produce many duplicates
+            int alphabetSize = 2 + random.nextInt(6);
+            List<String> snippet = randomImages(random, alphabetSize, random.nextInt(20));
+            Tokens tokens = new Tokens();
+            int fileCount = 1 + random.nextInt(5);
+            for (int f = 0; f < fileCount; f++) {
+                List<String> images = new ArrayList<>();
+                int length = random.nextInt(60);
+                for (int i = 0; i < length; i++) {
+                    if (random.nextInt(10) == 0) {
+                        images.addAll(snippet);
+                    } else {
+                        images.addAll(randomImages(random, alphabetSize, 1));
+                    }
+                }
+                addFile(tokens, "File" + f, String.join(" ", images));
+            }
+            assertSameMatches(tokens, minTileSize);
+        }
+    }
+
+    private static List<String> randomImages(Random random, int alphabetSize, int count) {
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            images.add(String.valueOf((char) ('a' + random.nextInt(alphabetSize))));
+        }
+        return images;
+    }
+
+    private static void addFile(Tokens tokens, String name, String images) {
+        TextDocument doc = TextDocument.readOnlyString(images, FileId.fromPathLikeString(name),
+                                                       DummyLanguageModule.getInstance().getDefaultVersion());
+        try (TokenFactory tf = Tokens.factoryForFile(doc, tokens)) {
+            int column = 1;
+            for (String image : images.split(" ")) {
+                if (!image.isEmpty()) {
+                    tf.recordToken(image, 1, column, 1, column + image.length());
+                }
+                column += image.length() + 1;
+            }
+        }
+    }
+
+    private static List<Match> assertSameMatches(Tokens tokens, int minTileSize) {
+        List<Match> expected = new MatchAlgorithm(tokens, minTileSize).findMatches(new CPDNullListener(), null);
+        List<Match> actual = new SuffixArrayMatchAlgorithm(tokens, minTileSize).findMatches(new CPDNullListener(), null);
+        assertEquals(describe(expected), describe(actual));
+        return actual;
+    }
+
+    private static List<String> describe(List<Match> matches) {
+        List<String> result = new ArrayList<>();
+        for (Match match : matches) {
+            StringBuilder sb = new StringBuilder().append(match.getTokenCount()).append(':');
+            for (Mark mark : match) {
+                sb.append(' ').append(mark.getBeginTokenIndex()).append('-').append(mark.getEndTokenIndex());
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+}
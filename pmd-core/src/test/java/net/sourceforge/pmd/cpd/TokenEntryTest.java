@@ -21,4 +21,18 @@ class TokenEntryTest {
         assertEquals(4, mark.getEndColumn());
     }
 
+    @Test
+    void testTokensAreKeptWhenGrowing() {
+        Tokens tokens = new Tokens();
+        for (int i = 0; i < 5000; i++) {
+            tokens.addToken(i % 2 == 0 ? "a" : "b", CpdTestUtils.FOO_FILE_ID, i + 1, 1, i + 1, 2);
+        }
+        assertEquals(5000, tokens.size());
+        TokenEntry token = tokens.getTokens().get(4321);
+        assertEquals(4321, token.getIndex());
+        assertEquals(4322, token.getBeginLine());
+        assertEquals("b", token.getImage(tokens));
+        assertEquals(tokens.getTokens().get(1).getIdentifier(), token.getIdentifier());
+    }
+
 }
@@ -233,6 +233,29 @@ class XMLRendererTest {
         assertEquals("3", attrs_2.getNamedItem("endtoken").getNodeValue());
     }
 
+    @Test
+    void testWithLargeCodeFragment() throws Exception {
+        // the fragment is written in several chunks
+        int lineCount = 2000;
+        String content = CpdTestUtils.generateDummyContent(lineCount);
+        CPDReportRenderer renderer = new XMLRenderer();
+        CpdReportBuilder builder = new CpdReportBuilder();
+        FileId file = FileId.fromPathLikeString("/var/Large.java");
+        Mark mark1 = builder.createMark("public", file, 1, lineCount);
+        Mark mark2 = builder.createMark("public", CpdTestUtils.FOO_FILE_ID, 1, lineCount);
+        builder.addMatch(new Match(75, mark1, mark2));
+        builder.setFileContent(file, content);
+
+        StringWriter sw = new StringWriter();
+        renderer.render(builder.build(), sw);
+        String report = sw.toString();
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                                             .parse(new ByteArrayInputStream(report.getBytes(ENCODING)));
+        assertEquals(1, doc.getElementsByTagName("codefragment").getLength());
+        assertEquals(content, doc.getElementsByTagName("codefragment").item(0).getTextContent());
+    }
+
     @Test
     void testRendererXMLEscaping() throws IOException {
         String codefragment = "code fragment" + FORM_FEED
@@ -0,0 +1,140 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClasspathClassLoaderTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void testResourcesAreFoundInClasspathOrder() throws IOException {
+        Path dir = tempDir.resolve("classes");
+        writeFile(dir.resolve("com/foo/Foo.class"), "dir");
+        Path jar = tempDir.resolve("lib.jar");
+        writeJar(jar, null, "com/foo/Foo.class", "com/foo/Bar.class", "Root.class");
+
+        String classpath = dir + File.pathSeparator + jar;
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(classpath, null)) {
+            assertEquals("dir", read(loader.getResource("com/foo/Foo.class")));
+            assertEquals("com/foo/Bar.class", read(loader.getResource("com/foo/Bar.class")));
+            assertEquals("Root.class", read(loader.getResource("Root.class")));
+            assertNull(loader.getResource("com/foo/Missing.class"));
+            assertNull(loader.getResource("com/bar/Missing.class"));
+        }
+    }
+
+    @Test
+    void testJarWithManifestClasspath() throws IOException {
+        Path other = tempDir.resolve("other.jar");
+        writeJar(other, null, "com/other/Other.class");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, "other.jar");
+        Path jar = tempDir.resolve("lib.jar");
+        writeJar(jar, manifest, "com/foo/Foo.class");
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(jar.toString(), null)) {
+            assertNotNull(loader.getResource("com/foo/Foo.class"));
+            assertNotNull(loader.getResource("com/other/Other.class"));
+        }
+    }
+
+    @Test
+    void testMultiReleaseJarIsProbedInClasspathOrder() throws IOException {
+        Path dir = tempDir.resolve("classes");
+        writeFile(dir.resolve("com/foo/Foo.class"), "dir");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Multi-Release"), "true");
+        Path mrJar = tempDir.resolve("mr.jar");
+        writeJar(mrJar, manifest, "com/foo/Foo.class", "com/foo/Bar.class", "com/mr/Mr.class",
+                 "META-INF/versions/9/com/mr/Mr.class");
+        Path jar = tempDir.resolve("lib.jar");
+        writeJar(jar, null, "com/foo/Bar.class", "com/foo/Baz.class", "com/lib/Lib.class");
+
+        String classpath = dir + File.pathSeparator + mrJar + File.pathSeparator + jar;
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(classpath, null)) {
+            // the directory and the last jar are still indexed
+            assertEquals("dir", read(loader.getResource("com/foo/Foo.class")));
+            assertEquals("com/foo/Baz.class", read(loader.getResource("com/foo/Baz.class")));
+            assertEquals("com/lib/Lib.class", read(loader.getResource("com/lib/Lib.class")));
+            // the multi-release jar comes before the last jar
+            URL bar = loader.getResource("com/foo/Bar.class");
+            assertEquals("com/foo/Bar.class", read(bar));
+            assertTrue(bar.toString().contains("mr.jar"), bar.toString());
+            // the version of the entry depends on the runtime
+            assertTrue(read(loader.getResource("com/mr/Mr.class")).endsWith("com/mr/Mr.class"));
+            assertNull(loader.getResource("com/foo/Missing.class"));
+        }
+    }
+
+    @Test
+    void testSymbolicLinkCycleInDirectory() throws IOException {
+        Path dir = tempDir.resolve("classes");
+        writeFile(dir.resolve("com/foo/Foo.class"), "dir");
+        assumeTrue(createSymbolicLink(dir.resolve("com/foo/loop"), dir), "Symbolic links are not supported");
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(dir.toString(), null)) {
+            assertEquals("dir", read(loader.getResource("com/foo/Foo.class")));
+            assertNull(loader.getResource("com/foo/Missing.class"));
+        }
+    }
+
+    private static boolean createSymbolicLink(Path link, Path target) {
+        try {
+            Files.createSymbolicLink(link, target);
+            return true;
+        } catch (UnsupportedOperationException | IOException e) {
+            return false;
+        }
+    }
+
+    private static void writeFile(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Writes a jar whose entries contain their own name. */
+    private static void writeJar(Path file, Manifest manifest, String... entries) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             JarOutputStream jar = manifest == null ? new JarOutputStream(out) : new JarOutputStream(out, manifest)) {
+            for (String entry : entries) {
+                jar.putNextEntry(new JarEntry(entry));
+                jar.write(entry.getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    private static String read(URL url) throws IOException {
+        assertNotNull(url);
+        try (InputStream in = url.openStream()) {
+            return new String(IOUtil.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -5,9 +5,17 @@
 package net.sourceforge.pmd.lang.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
@@ -16,8 +24,16 @@ import org.mockito.Mockito;
 import net.sourceforge.pmd.PmdAnalysis;
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.cache.NoopAnalysisCache;
+import net.sourceforge.pmd.lang.DummyLanguageModule;
+import net.sourceforge.pmd.lang.LanguageProcessor;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.document.FileId;
+import net.sourceforge.pmd.lang.document.TextFile;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.util.log.MessageReporter;
 
 class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
 
@@ -59,6 +75,58 @@ class MultiThreadProcessorTest extends AbstractPMDProcessorTest {
                 Mockito.any(Error.class));
     }
 
+    @Test
+    void sharedExecutorIsNotShutDown() {
+        ExecutorService executor = PmdThreadFactory.newAnalysisExecutor(getThreads());
+        try {
+            LanguageProcessor.AnalysisTask task = new LanguageProcessor.AnalysisTask(
+                null, Collections.emptyList(), null, getThreads(), null, null, null, executor);
+            try (AbstractPMDProcessor processor = AbstractPMDProcessor.newFileProcessor(task)) {
+                processor.processFiles();
+            }
+            // the executor belongs to the analysis, not to the processor
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void processFilesDoesNotWaitForPendingFiles() throws Exception {
+        ExecutorService executor = PmdThreadFactory.newAnalysisExecutor(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            // occupy the only worker thread, so that no file can be processed
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            LanguageVersion lv = DummyLanguageModule.getInstance().getDefaultVersion();
+            List<TextFile> files = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                files.add(TextFile.forCharSeq("abc", FileId.fromPathLikeString("file" + i + ".dummy"), lv));
+            }
+            SimpleReportListener listener = new SimpleReportListener();
+            LanguageProcessor.AnalysisTask task = new LanguageProcessor.AnalysisTask(
+                new RuleSets(Collections.emptyList()), files, listener, 1, new NoopAnalysisCache(),
+                MessageReporter.quiet(), null, executor);
+
+            try (AbstractPMDProcessor processor = AbstractPMDProcessor.newFileProcessor(task)) {
+                // more files than may be pending, this must still return
+                assertTimeoutPreemptively(Duration.ofSeconds(10), processor::processFiles);
+                blocked.countDown();
+            }
+            assertEquals(20, listener.files.get());
+        } finally {
+            blocked.countDown();
+            executor.shutdownNow();
+        }
+    }
+
     // TODO: Dysfunctional rules are pruned upstream of the processor.
     //
     //    @Test
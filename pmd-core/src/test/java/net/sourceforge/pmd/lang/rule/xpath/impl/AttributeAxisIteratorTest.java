@@ -7,7 +7,12 @@ package net.sourceforge.pmd.lang.rule.xpath.impl;
 
 import static net.sourceforge.pmd.util.CollectionUtil.setOf;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -19,7 +24,10 @@ import org.junit.jupiter.api.Test;
 
 import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.impl.AbstractNode;
+import net.sourceforge.pmd.lang.document.TextRegion;
 import net.sourceforge.pmd.lang.rule.xpath.Attribute;
+import net.sourceforge.pmd.lang.rule.xpath.impl.AttributeAxisIterator.AttributeTable;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 
@@ -63,6 +71,44 @@ class AttributeAxisIteratorTest {
         assertEquals(DEFAULT_ATTRS, toMap(it).keySet());
     }
 
+    @Test
+    void testAttributeTable() {
+        NodeWithDefaultAttributes node = new NodeWithDefaultAttributes();
+        AttributeTable table = AttributeAxisIterator.getAttributeTable(NodeWithDefaultAttributes.class);
+
+        assertNotNull(table);
+        assertEquals(toMap(new AttributeAxisIterator(node)).keySet().size(), table.size());
+        assertEquals("foo", table.getStringValue(node, table.indexOf("Name")));
+        assertEquals(42, table.getValue(node, table.indexOf("Value")));
+        assertEquals("Value", table.getName(table.indexOf("Value")));
+        assertEquals(-1, table.indexOf("Unknown"));
+        assertFalse(table.isDeprecated(table.indexOf("Name")));
+        assertTrue(table.isDeprecated(table.indexOf("Old")));
+        assertTrue(table.getAttribute(node, table.indexOf("Old")).isDeprecated());
+    }
+
+    @Test
+    void testNoAttributeTableIfIteratorIsOverridden() {
+        // DummyNode overrides getXPathAttributesIterator
+        assertNull(AttributeAxisIterator.getAttributeTable(DummyNode.class));
+    }
+
+    @Test
+    void testOverriddenAccessorFilterIsUsed() {
+        DummyNode dummyNode = new DummyNode();
+
+        AttributeAxisIterator it = new AttributeAxisIterator(dummyNode) {
+            @Override
+            protected boolean isAttributeAccessor(Class<?> nodeClass, Method method) {
+                return super.isAttributeAccessor(nodeClass, method) && !"getImage".equals(method.getName());
+            }
+        };
+
+        assertEquals(setOf("BeginColumn", "BeginLine", "EndColumn", "EndLine"), toMap(it).keySet());
+        // the default iterator is not affected
+        assertEquals(DEFAULT_ATTRS, toMap(new AttributeAxisIterator(dummyNode)).keySet());
+    }
+
     private Map<String, Attribute> toMap(AttributeAxisIterator it) {
         Map<String, Attribute> atts = new HashMap<>();
         while (it.hasNext()) {
@@ -83,6 +129,32 @@ class AttributeAxisIteratorTest {
         }
     }
 
+    public static class NodeWithDefaultAttributes extends AbstractNode<NodeWithDefaultAttributes, NodeWithDefaultAttributes> {
+
+        @Override
+        public TextRegion getTextRegion() {
+            return TextRegion.caretAt(0);
+        }
+
+        @Override
+        public String getXPathNodeName() {
+            return "dummy";
+        }
+
+        public String getName() {
+            return "foo";
+        }
+
+        public int getValue() {
+            return 42;
+        }
+
+        @Deprecated
+        public boolean isOld() {
+            return true;
+        }
+    }
+
     public static class DummyNodeWithList extends DummyNode {
 
         public List<String> getList() {
@@ -8,8 +8,13 @@ package net.sourceforge.pmd.lang.rule.xpath.internal;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
@@ -18,6 +23,9 @@ import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
 
 import net.sf.saxon.Configuration;
+import net.sf.saxon.om.AxisInfo;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.tree.iter.AxisIterator;
 import net.sf.saxon.type.Type;
 
 class ElementNodeTest {
@@ -107,4 +115,52 @@ class ElementNodeTest {
         assertSame(elementComment, treeInfo.findWrapperFor(c1));
     }
 
+    @Test
+    void testAxesFollowDocumentOrder() {
+        DummyRootNode root = helper.parse("(a(b)(c(d)))(e)(f)");
+
+        DummyNode a = root.getChild(0);
+        DummyNode b = a.getChild(0);
+        DummyNode c = a.getChild(1);
+        DummyNode d = c.getChild(0);
+        DummyNode e = root.getChild(1);
+        DummyNode f = root.getChild(2);
+
+        AstTreeInfo treeInfo = new AstTreeInfo(root, Configuration.newConfiguration());
+        AstElementNode rootElt = treeInfo.getRootNode().getRootElement();
+        AstElementNode elementA = treeInfo.findWrapperFor(a);
+        AstElementNode elementE = treeInfo.findWrapperFor(e);
+
+        assertEquals(Arrays.asList(a, e, f), underlyingNodes(rootElt.iterateAxis(AxisInfo.CHILD)));
+        assertEquals(Arrays.asList(b, c), underlyingNodes(elementA.iterateAxis(AxisInfo.CHILD)));
+        assertEquals(Arrays.asList(a, b, c, d, e, f), underlyingNodes(rootElt.iterateAxis(AxisInfo.DESCENDANT)));
+        assertEquals(Arrays.asList(a, b, c, d), underlyingNodes(elementA.iterateAxis(AxisInfo.DESCENDANT_OR_SELF)));
+        assertEquals(Arrays.asList(root, a, b, c, d, e, f),
+                     underlyingNodes(treeInfo.getRootNode().iterateAxis(AxisInfo.DESCENDANT)));
+        assertEquals(Arrays.asList(f), underlyingNodes(elementE.iterateAxis(AxisInfo.FOLLOWING_SIBLING)));
+        assertEquals(Arrays.asList(a), underlyingNodes(elementE.iterateAxis(AxisInfo.PRECEDING_SIBLING)));
+        assertEquals(Arrays.asList(c), underlyingNodes(treeInfo.findWrapperFor(b).iterateAxis(AxisInfo.FOLLOWING_SIBLING)));
+        assertEquals(Arrays.asList(), underlyingNodes(rootElt.iterateAxis(AxisInfo.FOLLOWING_SIBLING)));
+
+        assertTrue(elementA.hasChildNodes());
+        assertFalse(treeInfo.findWrapperFor(d).hasChildNodes());
+        assertTrue(treeInfo.findWrapperFor(d).compareOrder(elementE) < 0);
+    }
+
+    @Test
+    void testFindWrapperForNodeOfAnotherTree() {
+        DummyRootNode root = helper.parse("(a)");
+        DummyRootNode otherRoot = helper.parse("(a)");
+
+        AstTreeInfo treeInfo = new AstTreeInfo(root, Configuration.newConfiguration());
+        assertThrows(IllegalArgumentException.class, () -> treeInfo.findWrapperFor(otherRoot.getChild(0)));
+    }
+
+    private static List<DummyNode> underlyingNodes(AxisIterator iterator) {
+        List<DummyNode> nodes = new ArrayList<>();
+        for (NodeInfo node = iterator.next(); node != null; node = iterator.next()) {
+            nodes.add((DummyNode) ((AstNodeOwner) node).getUnderlyingNode());
+        }
+        return nodes;
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule.xpath.internal;
+
+import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.root;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import net.sourceforge.pmd.lang.ast.DummyNode;
+import net.sourceforge.pmd.lang.ast.DummyNode.DummyRootNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
+import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
+
+/**
+ * Checks that the native evaluation of simple queries finds the same
+ * nodes as Saxon.
+ */
+class NativeXPathQueryTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "//a",
+        "//a/b",
+        "//a//b",
+        "//a/b/c",
+        "//a[@Public = true()]",
+        "//a[@Public != false()]",
+        "//a[true() = @Public]",
+        "//a[@Arity > 1]/b",
+        "//a[2 <= @Arity]",
+        "//a[@Arity = 0 or @Arity = 3]",
+        "//a[count(b) = 2]",
+        "//a[count(.//b) >= 2]",
+        "//a[b]",
+        "//a[not(b)]",
+        "//a[./b/c]",
+        "//a[b[@Public = true()]]/b",
+        "//a[@Kind = 'FOO' or @Arity = 0]",
+        "//a[@Kind = \"BAR\" and not(@Public = true())]",
+        "//a[@Kind != 'FOO'][@Arity < 3]",
+        "//a[(@Kind = 'FOO' or @Kind = 'BAR') and b]",
+        "//a[@Nullable = '']",
+        "//a[@Missing]",
+        "//a[@Arity]",
+        "//a/b | //b[@Arity = 1]",
+        "//b | //a//b",
+        // these fall back to Saxon on the nodes
+        "//a[@Missing = '']",
+        "//b[@Public = 'true']",
+    })
+    void testSameResultsAsSaxon(String xpath) {
+        SaxonXPathRuleQuery query = createQuery(xpath);
+        assertTrue(query.isEvaluatedNatively(), "Should be evaluated natively");
+
+        DummyRootNode tree = createTree();
+        for (Node node : tree.descendantsOrSelf().crossFindBoundaries()) {
+            assertEquals(query.evaluateWithSaxon(node), query.evaluate(node),
+                         "Different results on " + node + " for " + xpath);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "/a",
+        "//a[1]",
+        "//a/*",
+        "//a/b[last()]",
+        "//a[ancestor::b]",
+        "//a[ends-with(@Kind, 'O')]",
+        "//a[@Arity = 1.5]",
+        "//a[@Kind < 'x']",
+        "//a[@Arity = @Public]",
+        "//a[b = 'x']",
+        "//a[$var]",
+        "//a[//b]",
+        "//a//b//c[count(d//e) = 1]",
+        "(//a | //b)/c",
+    })
+    void testUnsupportedExpressions(String xpath) {
+        assertNull(NativeXPathQuery.compile(xpath));
+    }
+
+    private static SaxonXPathRuleQuery createQuery(String xpath) {
+        return new SaxonXPathRuleQuery(
+            xpath,
+            XPathVersion.DEFAULT,
+            Collections.emptyMap(),
+            XPathHandler.noFunctionDefinitions(),
+            DeprecatedAttrLogger.noop()
+        );
+    }
+
+    private static DummyRootNode createTree() {
+        return root(
+            node("a", true, 0, NodeKind.FOO,
+                 node("b", false, 1, NodeKind.BAR),
+                 node("b", true, 2, NodeKind.FOO,
+                      node("c", false, 0, NodeKind.FOO))),
+            node("a", false, 3, NodeKind.BAR,
+                 node("c", true, 1, NodeKind.BAR,
+                      node("b", false, 1, NodeKind.FOO,
+                           node("a", true, 1, NodeKind.FOO,
+                                node("b", true, 0, NodeKind.BAR))))),
+            node("b", false, 1, NodeKind.FOO)
+        );
+    }
+
+    private static DummyNode node(String name, boolean isPublic, int arity, NodeKind kind, DummyNode... children) {
+        NodeWithAttributes node = new NodeWithAttributes(name, isPublic, arity, kind);
+        node.publicSetChildren(children);
+        return node;
+    }
+
+    public enum NodeKind { FOO, BAR }
+
+    public static class NodeWithAttributes extends DummyNode {
+
+        private final boolean isPublic;
+        private final int arity;
+        private final NodeKind kind;
+
+        NodeWithAttributes(String name, boolean isPublic, int arity, NodeKind kind) {
+            super(false, name);
+            this.isPublic = isPublic;
+            this.arity = arity;
+            this.kind = kind;
+        }
+
+        public boolean isPublic() {
+            return isPublic;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public NodeKind getKind() {
+            return kind;
+        }
+
+        public String getNullable() {
+            return null;
+        }
+    }
+}
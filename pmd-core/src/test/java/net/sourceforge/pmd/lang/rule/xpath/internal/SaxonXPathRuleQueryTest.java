@@ -11,9 +11,13 @@ import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.root;
 import static net.sourceforge.pmd.lang.ast.impl.DummyTreeUtil.tree;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -385,6 +389,59 @@ class SaxonXPathRuleQueryTest {
         assertTrue(ruleChainVisits.contains("ForStatement"));
     }
 
+    @Test
+    void testUsesExtensionFunctions() {
+        assertTrue(createQuery("//dummyNode[imageIs('foo')]").usesExtensionFunctions());
+        assertTrue(createQuery("//dummyNode[not(./*[imageIs('foo')])]").usesExtensionFunctions());
+        assertFalse(createQuery("//dummyNode[@Image = 'foo'][count(*) > 1]").usesExtensionFunctions());
+    }
+
+    @Test
+    void testCompiledQueryIsShared() {
+        PropertyDescriptor<String> prop = PropertyFactory.stringProperty("name").desc("test").defaultValue("foo").build();
+        XPathHandler handler = XPathHandler.getHandlerForFunctionDefs(imageIsFunction());
+        String xpath = "//dummyNode[@Image = $name]";
+
+        SaxonXPathRuleQuery query1 = createQuery(xpath, handler, prop, "foo");
+        SaxonXPathRuleQuery query2 = createQuery(xpath, handler, prop, "foo");
+        SaxonXPathRuleQuery query3 = createQuery(xpath, handler, prop, "bar");
+        assertSame(query1.xpathExpression, query2.xpathExpression);
+        assertNotSame(query1.xpathExpression, query3.xpathExpression);
+
+        DummyRootNode tree = helper.parse("(foo)(bar)(foo)");
+        assertEquals(2, query2.evaluate(tree).size());
+        assertEquals(1, query3.evaluate(tree).size());
+    }
+
+    @Test
+    void testCompiledQueryIsReleasedWithItsQueries() throws InterruptedException {
+        PropertyDescriptor<String> prop = PropertyFactory.stringProperty("name").desc("test").defaultValue("foo").build();
+        XPathHandler handler = XPathHandler.getHandlerForFunctionDefs(imageIsFunction());
+        String xpath = "//dummyNode[@Image = $name][@Image != 'released']";
+        Map<PropertyDescriptor<?>, Object> properties = Collections.singletonMap(prop, "foo");
+
+        SaxonXPathRuleQuery query = createQuery(xpath, handler, prop, "foo");
+        assertTrue(SaxonXPathRuleQuery.isCompiledQueryCached(xpath, XPathVersion.DEFAULT, properties, handler));
+        assertEquals(1, query.evaluate(helper.parse("(foo)(bar)")).size());
+
+        query = null; // NOPMD the entry is only weakly reachable after that
+        for (int i = 0; i < 50 && SaxonXPathRuleQuery.isCompiledQueryCached(xpath, XPathVersion.DEFAULT, properties, handler); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertFalse(SaxonXPathRuleQuery.isCompiledQueryCached(xpath, XPathVersion.DEFAULT, properties, handler));
+    }
+
+    private static SaxonXPathRuleQuery createQuery(String xpath, XPathHandler handler, PropertyDescriptor<String> prop, String value) {
+        return new SaxonXPathRuleQuery(
+            xpath,
+            XPathVersion.DEFAULT,
+            Collections.singletonMap(prop, value),
+            handler,
+            DeprecatedAttrLogger.noop()
+        );
+    }
+
     private static void assertExpression(String expected, Expression actual) {
         assertEquals(normalizeExprDump(expected),
                      normalizeExprDump(actual.toString()));
@@ -14,6 +14,8 @@ import net.sourceforge.pmd.lang.ast.AstInfo;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.RootNode;
 import net.sourceforge.pmd.lang.ast.impl.GenericNode;
+import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.ASTNamedReferenceExpr;
+import net.sourceforge.pmd.lang.java.symbols.JVariableSymbol;
 import net.sourceforge.pmd.lang.java.symbols.table.JSymbolTable;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
 import net.sourceforge.pmd.lang.java.types.ast.LazyTypeResolver;
@@ -54,6 +56,8 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements JavaNo
     private LazyTypeResolver lazyTypeResolver;
     private List<JavaComment> comments;
     private AstInfo<ASTCompilationUnit> astInfo;
+    private boolean usagesResolved;
+    private boolean overridesResolved;
 
     ASTCompilationUnit(int id) {
         super(id);
@@ -138,6 +142,45 @@ public final class ASTCompilationUnit extends AbstractJavaNode implements JavaNo
         return lazyTypeResolver;
     }
 
+    /**
+     * Populates the {@linkplain ASTVariableDeclaratorId#getLocalUsages() usages}
+     * of the variables of this file, if this was not done yet. This is
+     * done by the processor if some rule uses type resolution, otherwise
+     * when usages are first requested, as this may need type resolution.
+     */
+    void resolveUsages() {
+        if (usagesResolved || lazyTypeResolver == null) {
+            return;
+        }
+        usagesResolved = true;
+        descendants(ASTNamedReferenceExpr.class)
+            .crossFindBoundaries()
+            .forEach(node -> {
+                JVariableSymbol sym = node.getReferencedSym();
+                if (sym != null) {
+                    ASTVariableDeclaratorId reffed = sym.tryGetNode();
+                    if (reffed != null) { // declared in this file
+                        reffed.addUsage(node);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Populates the {@linkplain ASTMethodDeclaration#getOverriddenMethod() overridden methods}
+     * of the methods of this file, if this was not done yet. Like
+     * {@link #resolveUsages()}, this may be done on demand.
+     */
+    void resolveOverrides() {
+        if (overridesResolved || lazyTypeResolver == null) {
+            return;
+        }
+        overridesResolved = true;
+        descendants(ASTAnyTypeDeclaration.class)
+            .crossFindBoundaries()
+            .forEach(OverrideResolutionPass::resolveOverrides);
+    }
+
     @Experimental
     @NoAttribute
     public boolean isUnnamedClass() {
@@ -62,6 +62,7 @@ public final class ASTMethodDeclaration extends AbstractMethodOrConstructorDecla
      * Returns true if this method is overridden.
      */
     public boolean isOverridden() {
+        getRoot().resolveOverrides();
         return overriddenMethod != null;
     }
 
@@ -75,6 +76,7 @@ public final class ASTMethodDeclaration extends AbstractMethodOrConstructorDecla
      * {@link TypeSystem#UNRESOLVED_METHOD}.
      */
     public JMethodSig getOverriddenMethod() {
+        getRoot().resolveOverrides();
         return overriddenMethod;
     }
 
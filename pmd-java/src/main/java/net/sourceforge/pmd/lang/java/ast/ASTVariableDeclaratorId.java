@@ -64,6 +64,7 @@ public final class ASTVariableDeclaratorId extends AbstractTypedSymbolDeclarator
      * (though this should be evident from the return type).
      */
     public List<ASTNamedReferenceExpr> getLocalUsages() {
+        getRoot().resolveUsages();
         return usages;
     }
 
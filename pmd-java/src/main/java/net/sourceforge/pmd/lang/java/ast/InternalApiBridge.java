@@ -10,7 +10,6 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.ast.impl.javacc.JavaccTokenDocument;
-import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.ASTNamedReferenceExpr;
 import net.sourceforge.pmd.lang.java.internal.JavaAstProcessor;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.JConstructorSymbol;
@@ -99,23 +98,11 @@ public final class InternalApiBridge {
     }
 
     public static void usageResolution(JavaAstProcessor processor, ASTCompilationUnit root) {
-        root.descendants(ASTNamedReferenceExpr.class)
-            .crossFindBoundaries()
-            .forEach(node -> {
-                JVariableSymbol sym = node.getReferencedSym();
-                if (sym != null) {
-                    ASTVariableDeclaratorId reffed = sym.tryGetNode();
-                    if (reffed != null) { // declared in this file
-                        reffed.addUsage(node);
-                    }
-                }
-            });
+        root.resolveUsages();
     }
 
     public static void overrideResolution(JavaAstProcessor processor, ASTCompilationUnit root) {
-        root.descendants(ASTAnyTypeDeclaration.class)
-            .crossFindBoundaries()
-            .forEach(OverrideResolutionPass::resolveOverrides);
+        root.resolveOverrides();
     }
 
     public static @Nullable JTypeMirror getTypeMirrorInternal(TypeNode node) {
@@ -15,6 +15,8 @@ import net.sourceforge.pmd.lang.ast.SemanticErrorReporter;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.lang.java.ast.InternalApiBridge;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
+import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.JTypeDeclSymbol;
 import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
@@ -116,7 +118,9 @@ public final class JavaAstProcessor {
     }
 
     /**
-     * Performs semantic analysis on the given source file.
+     * Performs semantic analysis on the given source file. The optional
+     * {@linkplain JavaAnalysisPass passes} are only run if a rule of the
+     * analysis requires them, otherwise their results are computed on demand.
      */
     public void process() {
 
@@ -131,10 +135,19 @@ public final class JavaAstProcessor {
 
         TimeTracker.bench("Symbol table resolution", () -> SymbolTableResolver.traverse(this, acu));
         TimeTracker.bench("AST disambiguation", () -> InternalApiBridge.disambigWithCtx(NodeStream.of(acu), ReferenceCtx.root(this, acu)));
-        TimeTracker.bench("Force type resolution", () -> InternalApiBridge.forceTypeResolutionPhase(this, acu));
+        if (globalProc.runsPass(JavaAnalysisPass.TYPE_RESOLUTION)) {
+            TimeTracker.bench("Force type resolution", () -> InternalApiBridge.forceTypeResolutionPhase(this, acu));
+        }
         TimeTracker.bench("Comment assignment", () -> InternalApiBridge.assignComments(acu));
-        TimeTracker.bench("Usage resolution", () -> InternalApiBridge.usageResolution(this, acu));
-        TimeTracker.bench("Override resolution", () -> InternalApiBridge.overrideResolution(this, acu));
+        if (globalProc.runsPass(JavaAnalysisPass.USAGE_RESOLUTION)) {
+            TimeTracker.bench("Usage resolution", () -> InternalApiBridge.usageResolution(this, acu));
+        }
+        if (globalProc.runsPass(JavaAnalysisPass.OVERRIDE_RESOLUTION)) {
+            TimeTracker.bench("Override resolution", () -> InternalApiBridge.overrideResolution(this, acu));
+        }
+        if (globalProc.runsPass(JavaAnalysisPass.DATAFLOW)) {
+            TimeTracker.bench("Dataflow analysis", () -> DataflowPass.getDataflowResult(acu).getUnusedAssignments());
+        }
     }
 
     public TypeSystem getTypeSystem() {
@@ -4,28 +4,42 @@
 
 package net.sourceforge.pmd.lang.java.internal;
 
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.ViolationSuppressor;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.ast.Parser;
 import net.sourceforge.pmd.lang.impl.BatchLanguageProcessor;
 import net.sourceforge.pmd.lang.java.ast.JavaParser;
 import net.sourceforge.pmd.lang.java.internal.JavaLanguageProperties.InferenceLoggingVerbosity;
+import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.BaseContextNodeTestFun;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.GetCommentOnFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.GetModifiersFun;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MatchesSignatureFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.MetricFunction;
 import net.sourceforge.pmd.lang.java.rule.xpath.internal.NodeIsFunction;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.AsmSymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.ClassStubCache;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.Classpath;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger.SimpleLogger;
 import net.sourceforge.pmd.lang.java.types.internal.infer.TypeInferenceLogger.VerboseLogger;
 import net.sourceforge.pmd.lang.metrics.LanguageMetricsProvider;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
 import net.sourceforge.pmd.lang.rule.xpath.impl.XPathHandler;
 import net.sourceforge.pmd.reporting.ViolationDecorator;
 import net.sourceforge.pmd.util.designerbindings.DesignerBindings;
@@ -36,22 +50,48 @@ import net.sourceforge.pmd.util.designerbindings.DesignerBindings;
 public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguageProperties>
     implements LanguageVersionHandler {
 
+    /** Passes required by the rules that don't declare their own. */
+    private static final Set<JavaAnalysisPass> DEFAULT_PASSES = Collections.unmodifiableSet(
+        EnumSet.of(JavaAnalysisPass.TYPE_RESOLUTION, JavaAnalysisPass.USAGE_RESOLUTION, JavaAnalysisPass.OVERRIDE_RESOLUTION));
+
     private final LanguageMetricsProvider myMetricsProvider = new JavaMetricsProvider();
     private final JavaParser parser;
     private final JavaParser parserWithoutProcessing;
     private TypeSystem typeSystem;
+    private final @Nullable ClassStubCache stubCache;
+    /** Passes run on each file, all of them outside of an analysis. */
+    private volatile Set<JavaAnalysisPass> eagerPasses = DEFAULT_PASSES;
 
     public JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystem typeSystem) {
+        this(properties, typeSystem, null);
+    }
+
+    public JavaLanguageProcessor(JavaLanguageProperties properties) {
+        this(properties, newStubCache(properties));
+    }
+
+    private JavaLanguageProcessor(JavaLanguageProperties properties, @Nullable ClassStubCache stubCache) {
+        this(properties, newTypeSystem(properties, stubCache), stubCache);
+    }
+
+    private JavaLanguageProcessor(JavaLanguageProperties properties, TypeSystem typeSystem, @Nullable ClassStubCache stubCache) {
         super(properties);
         this.typeSystem = typeSystem;
+        this.stubCache = stubCache;
 
         String suppressMarker = properties.getSuppressMarker();
         this.parser = new JavaParser(suppressMarker, this, true);
         this.parserWithoutProcessing = new JavaParser(suppressMarker, this, false);
     }
 
-    public JavaLanguageProcessor(JavaLanguageProperties properties) {
-        this(properties, TypeSystem.usingClassLoaderClasspath(properties.getAnalysisClassLoader()));
+    private static @Nullable ClassStubCache newStubCache(JavaLanguageProperties properties) {
+        String directory = properties.getProperty(JavaLanguageProperties.CLASS_STUB_CACHE);
+        return StringUtils.isBlank(directory) ? null : new ClassStubCache(Paths.get(directory));
+    }
+
+    private static TypeSystem newTypeSystem(JavaLanguageProperties properties, @Nullable ClassStubCache stubCache) {
+        Classpath classpath = Classpath.forClassLoader(properties.getAnalysisClassLoader());
+        return new TypeSystem(ts -> new AsmSymbolResolver(ts, classpath, stubCache));
     }
 
     @Override
@@ -72,6 +112,47 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
         return typeSystem;
     }
 
+    @Override
+    public @NonNull AutoCloseable launchAnalysis(@NonNull AnalysisTask task) {
+        // rules must be initialized to know whether they use types
+        task.getRulesets().initializeRules(task.getLpRegistry(), task.getMessageReporter());
+        eagerPasses = getRequiredPasses(task.getRulesets().getAllRules());
+        return super.launchAnalysis(task);
+    }
+
+    /**
+     * Returns the union of the passes required by the Java rules of the
+     * collection. Rules that are not {@link AbstractJavaRule}s, e.g. XPath
+     * rules, require the default passes if they {@linkplain Rule#usesTypeResolution() use type resolution}.
+     */
+    Set<JavaAnalysisPass> getRequiredPasses(Collection<? extends Rule> rules) {
+        Set<JavaAnalysisPass> passes = EnumSet.noneOf(JavaAnalysisPass.class);
+        for (Rule ruleOrRef : rules) {
+            if (!ruleOrRef.getLanguage().equals(getLanguage())) {
+                continue;
+            }
+            Rule rule = ruleOrRef;
+            while (rule instanceof AbstractDelegateRule) {
+                rule = ((AbstractDelegateRule) rule).getRule();
+            }
+            if (rule instanceof AbstractJavaRule) {
+                passes.addAll(((AbstractJavaRule) rule).getRequiredPasses());
+            } else if (rule.usesTypeResolution()) {
+                passes.addAll(DEFAULT_PASSES);
+            }
+        }
+        return Collections.unmodifiableSet(passes);
+    }
+
+    /**
+     * Returns true if the given pass should be run on each file when it
+     * is parsed. During an analysis, this is true if some rule
+     * {@linkplain AbstractJavaRule#getRequiredPasses() requires it}.
+     */
+    boolean runsPass(JavaAnalysisPass pass) {
+        return eagerPasses.contains(pass);
+    }
+
     TypeInferenceLogger newTypeInfLogger() {
         InferenceLoggingVerbosity verbosity = getProperties().getProperty(JavaLanguageProperties.INTERNAL_INFERENCE_LOGGING_VERBOSITY);
         if (verbosity == InferenceLoggingVerbosity.VERBOSE) {
@@ -124,4 +205,12 @@ public class JavaLanguageProcessor extends BatchLanguageProcessor<JavaLanguagePr
     public void setTypeSystem(TypeSystem ts) {
         this.typeSystem = Objects.requireNonNull(ts);
     }
+
+    @Override
+    public void close() throws Exception {
+        if (stubCache != null) {
+            stubCache.persist();
+        }
+        super.close();
+    }
 }
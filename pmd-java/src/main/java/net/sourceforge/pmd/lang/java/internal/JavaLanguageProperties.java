@@ -25,9 +25,17 @@ public class JavaLanguageProperties extends JvmLanguagePropertyBundle {
                        .defaultValue(InferenceLoggingVerbosity.DISABLED)
                        .build();
 
+    static final PropertyDescriptor<String> CLASS_STUB_CACHE =
+        PropertyFactory.stringProperty("classStubCache")
+                       .desc("Directory where the signatures of the classes found in the jars of the auxclasspath "
+                                 + "are cached between runs. The cache is disabled if this is empty.")
+                       .defaultValue("")
+                       .build();
+
     public JavaLanguageProperties() {
         super(JavaLanguageModule.getInstance());
         definePropertyDescriptor(INTERNAL_INFERENCE_LOGGING_VERBOSITY);
+        definePropertyDescriptor(CLASS_STUB_CACHE);
         definePropertyDescriptor(CpdLanguageProperties.CPD_IGNORE_METADATA);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_IDENTIFIERS);
         definePropertyDescriptor(CpdLanguageProperties.CPD_ANONYMIZE_LITERALS);
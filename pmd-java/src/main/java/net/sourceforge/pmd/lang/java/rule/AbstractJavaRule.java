@@ -4,7 +4,12 @@
 
 package net.sourceforge.pmd.lang.java.rule;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.annotation.Experimental;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.ast.JavaParserVisitor;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
@@ -19,9 +24,38 @@ import net.sourceforge.pmd.lang.rule.AbstractRule;
  */
 public abstract class AbstractJavaRule extends AbstractRule implements JavaParserVisitor {
 
+    /** The passes required by default, which were always run before they were optional. */
+    private static final Set<JavaAnalysisPass> DEFAULT_PASSES = Collections.unmodifiableSet(
+        EnumSet.of(JavaAnalysisPass.TYPE_RESOLUTION, JavaAnalysisPass.USAGE_RESOLUTION, JavaAnalysisPass.OVERRIDE_RESOLUTION));
+
     @Override
     public void apply(Node target, RuleContext ctx) {
         target.acceptVisitor(this, ctx);
     }
 
+    /**
+     * Returns the passes of the semantic analysis whose results this
+     * rule uses on most nodes, so that they are run upfront on each file.
+     * The results of the other passes are still available to the rule,
+     * they are computed when the rule asks for them. By default, this
+     * returns the type, usage and override resolution passes if the
+     * rule {@linkplain #dependsOnAuxClasspath() depends on the auxclasspath},
+     * and nothing otherwise.
+     *
+     * @return The passes to run before the rule is applied
+     */
+    @Experimental
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        return dependsOnAuxClasspath() ? DEFAULT_PASSES : Collections.emptySet();
+    }
+
+    /**
+     * Returns true if the {@linkplain #getRequiredPasses() required passes}
+     * contain type resolution.
+     */
+    @Override
+    public boolean usesTypeResolution() {
+        return getRequiredPasses().contains(JavaAnalysisPass.TYPE_RESOLUTION);
+    }
+
 }
@@ -0,0 +1,37 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.rule;
+
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
+
+/**
+ * Passes of the semantic analysis that are optional. The results of
+ * these passes are computed on demand when a rule asks for them. A pass
+ * is run upfront on each file, for the whole file, only if a rule of the
+ * analysis {@linkplain AbstractJavaRule#getRequiredPasses() requires it}.
+ * This doesn't change the results of the rules, only when the work is done.
+ *
+ * <p>Symbol resolution, symbol tables, AST disambiguation and comment
+ * assignment are not optional, they always run.
+ *
+ * @since 7.0.0
+ */
+@Experimental
+public enum JavaAnalysisPass {
+    /** Computes the type of all expressions. */
+    TYPE_RESOLUTION,
+    /** Finds the {@linkplain ASTVariableDeclaratorId#getLocalUsages() usages} of all local variables and fields. */
+    USAGE_RESOLUTION,
+    /** Finds the {@linkplain ASTMethodDeclaration#getOverriddenMethod() overridden method} of all methods. */
+    OVERRIDE_RESOLUTION,
+    /**
+     * Runs the dataflow analysis on all the methods and initializers
+     * of the file. Rules that only look at some methods should not
+     * require it, since the analysis is done per method on demand.
+     */
+    DATAFLOW
+}
@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.lang.java.rule.bestpractices;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.ASTNamedReferenceExpr;
@@ -11,6 +14,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.AccessType;
 import net.sourceforge.pmd.lang.java.ast.ASTCatchParameter;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 import net.sourceforge.pmd.lang.rule.RuleTargetSelector;
 
 public class AvoidReassigningCatchVariablesRule extends AbstractJavaRule {
@@ -31,4 +35,9 @@ public class AvoidReassigningCatchVariablesRule extends AbstractJavaRule {
         }
         return data;
     }
+
+    @Override
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        return EnumSet.of(JavaAnalysisPass.USAGE_RESOLUTION);
+    }
 }
@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.lang.java.rule.bestpractices;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.ASTNamedReferenceExpr;
 import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.AccessType;
 import net.sourceforge.pmd.lang.java.ast.ASTConstructorDeclaration;
@@ -12,6 +15,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodOrConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRulechainRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 
 public class AvoidReassigningParametersRule extends AbstractJavaRulechainRule {
 
@@ -45,4 +49,8 @@ public class AvoidReassigningParametersRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        return EnumSet.of(JavaAnalysisPass.USAGE_RESOLUTION);
+    }
 }
@@ -203,4 +203,9 @@ public class AvoidUsingHardCodedIPRule extends AbstractJavaRulechainRule {
     public String dysfunctionReason() {
         return !getProperty(CHECK_ADDRESS_TYPES_DESCRIPTOR).isEmpty() ? null : "No address types specified";
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
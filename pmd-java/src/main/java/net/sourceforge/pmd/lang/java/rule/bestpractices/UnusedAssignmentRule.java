@@ -7,6 +7,7 @@ package net.sourceforge.pmd.lang.java.rule.bestpractices;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 
@@ -21,6 +22,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.ast.UnaryOp;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRulechainRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass;
 import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.AssignmentEntry;
 import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.DataflowResult;
@@ -230,4 +232,13 @@ public class UnusedAssignmentRule extends AbstractJavaRulechainRule {
         return sb.toString();
     }
 
+    /**
+     * This rule uses the dataflow analysis of the whole file.
+     */
+    @Override
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        Set<JavaAnalysisPass> passes = EnumSet.of(JavaAnalysisPass.DATAFLOW);
+        passes.addAll(super.getRequiredPasses());
+        return passes;
+    }
 }
@@ -116,4 +116,9 @@ public class ConfusingTernaryRule extends AbstractJavaRulechainRule {
 
         return false;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
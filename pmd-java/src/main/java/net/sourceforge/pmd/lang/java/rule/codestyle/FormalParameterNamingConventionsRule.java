@@ -70,4 +70,9 @@ public final class FormalParameterNamingConventionsRule extends AbstractNamingCo
 
         throw new UnsupportedOperationException("This rule doesn't handle this case");
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
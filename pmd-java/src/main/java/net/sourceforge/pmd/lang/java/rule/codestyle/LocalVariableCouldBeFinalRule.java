@@ -6,10 +6,14 @@ package net.sourceforge.pmd.lang.java.rule.codestyle;
 
 import static net.sourceforge.pmd.properties.PropertyFactory.booleanProperty;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.java.ast.ASTForeachStatement;
 import net.sourceforge.pmd.lang.java.ast.ASTLocalVariableDeclaration;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRulechainRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 import net.sourceforge.pmd.properties.PropertyDescriptor;
 
 public class LocalVariableCouldBeFinalRule extends AbstractJavaRulechainRule {
@@ -35,4 +39,8 @@ public class LocalVariableCouldBeFinalRule extends AbstractJavaRulechainRule {
         return data;
     }
 
+    @Override
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        return EnumSet.of(JavaAnalysisPass.USAGE_RESOLUTION);
+    }
 }
@@ -73,4 +73,9 @@ public final class LocalVariableNamingConventionsRule extends AbstractNamingConv
 
         throw new UnsupportedOperationException("This rule doesn't handle this case");
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
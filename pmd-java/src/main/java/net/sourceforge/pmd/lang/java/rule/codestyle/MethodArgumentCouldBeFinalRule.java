@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.lang.java.rule.codestyle;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.NodeStream;
 import net.sourceforge.pmd.lang.java.ast.ASTAssignableExpr.ASTNamedReferenceExpr;
@@ -14,6 +17,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodOrConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRulechainRule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 
 public class MethodArgumentCouldBeFinalRule extends AbstractJavaRulechainRule {
@@ -60,4 +64,8 @@ public class MethodArgumentCouldBeFinalRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public Set<JavaAnalysisPass> getRequiredPasses() {
+        return EnumSet.of(JavaAnalysisPass.USAGE_RESOLUTION);
+    }
 }
@@ -29,4 +29,9 @@ public class OnlyOneReturnRule extends AbstractJavaRulechainRule {
         }
         return null;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
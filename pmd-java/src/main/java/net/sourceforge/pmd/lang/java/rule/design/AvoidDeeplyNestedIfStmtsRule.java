@@ -46,4 +46,9 @@ public class AvoidDeeplyNestedIfStmtsRule extends AbstractJavaRule {
         depth--;
         return data;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -129,4 +129,8 @@ public class CyclomaticComplexityRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
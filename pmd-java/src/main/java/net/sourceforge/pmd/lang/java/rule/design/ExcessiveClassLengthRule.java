@@ -23,4 +23,9 @@ public class ExcessiveClassLengthRule extends AbstractJavaCounterCheckRule.Abstr
     protected int defaultReportLevel() {
         return 1000;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
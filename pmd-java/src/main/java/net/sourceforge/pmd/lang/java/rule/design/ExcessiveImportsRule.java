@@ -32,4 +32,9 @@ public class ExcessiveImportsRule extends AbstractJavaCounterCheckRule<ASTCompil
     protected boolean isViolation(ASTCompilationUnit node, int reportLevel) {
         return node.children(ASTImportDeclaration.class).count() >= reportLevel;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
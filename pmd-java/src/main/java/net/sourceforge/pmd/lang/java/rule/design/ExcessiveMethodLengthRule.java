@@ -24,4 +24,9 @@ public class ExcessiveMethodLengthRule extends AbstractJavaCounterCheckRule.Abst
     protected int defaultReportLevel() {
         return 100;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
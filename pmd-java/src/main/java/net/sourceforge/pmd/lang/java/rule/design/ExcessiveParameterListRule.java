@@ -41,4 +41,9 @@ public class ExcessiveParameterListRule extends AbstractJavaCounterCheckRule<AST
     protected boolean isViolation(ASTFormalParameters node, int reportLevel) {
         return node.size() > reportLevel;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
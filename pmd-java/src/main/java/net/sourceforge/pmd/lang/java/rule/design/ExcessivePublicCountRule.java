@@ -50,4 +50,9 @@ public class ExcessivePublicCountRule extends AbstractJavaCounterCheckRule<ASTAn
 
         return publicCount >= reportLevel;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -133,4 +133,9 @@ public class LoosePackageCouplingRule extends AbstractJavaRule {
     public String dysfunctionReason() {
         return checksNothing() ? "No packages or classes specified" : null;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -59,5 +59,9 @@ public class NPathComplexityRule extends AbstractJavaRulechainRule {
 
         return data;
     }
-}
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
+}
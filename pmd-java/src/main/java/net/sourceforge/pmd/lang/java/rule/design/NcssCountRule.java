@@ -122,4 +122,8 @@ public final class NcssCountRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -64,4 +64,9 @@ public class SwitchDensityRule extends AbstractJavaRulechainRule {
         }
         return null;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -63,4 +63,8 @@ public class CommentContentRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
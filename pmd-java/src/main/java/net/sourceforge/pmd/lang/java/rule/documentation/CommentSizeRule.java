@@ -94,4 +94,8 @@ public class CommentSizeRule extends AbstractJavaRulechainRule {
         }
     }
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -133,4 +133,9 @@ public class AvoidBranchingStatementAsLastInLoopRule extends AbstractJavaRulecha
         return getProperty(CHECK_BREAK_LOOP_TYPES).isEmpty() && getProperty(CHECK_CONTINUE_LOOP_TYPES).isEmpty()
             && getProperty(CHECK_RETURN_LOOP_TYPES).isEmpty();
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
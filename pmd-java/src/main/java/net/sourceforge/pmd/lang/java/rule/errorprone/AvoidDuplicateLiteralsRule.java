@@ -122,4 +122,8 @@ public class AvoidDuplicateLiteralsRule extends AbstractJavaRulechainRule {
         return data;
     }
 
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -38,4 +38,9 @@ public class AvoidUsingOctalValuesRule extends AbstractJavaRulechainRule {
         long value = node.getConstValue().longValue();
         return 0 <= value && value <= 7;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
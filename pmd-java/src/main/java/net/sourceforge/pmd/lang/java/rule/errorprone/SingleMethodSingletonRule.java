@@ -34,4 +34,9 @@ public class SingleMethodSingletonRule extends AbstractJavaRulechainRule {
         }
         return data;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -89,4 +89,9 @@ public class SuspiciousOctalEscapeRule extends AbstractJavaRulechainRule {
     private boolean isDecimal(char c) {
         return c >= '0' && c <= '9';
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
@@ -44,4 +44,9 @@ public class UnnecessaryCaseChangeRule extends AbstractJavaRulechainRule {
         }
         return false;
     }
+
+    @Override
+    public boolean dependsOnAuxClasspath() {
+        return false;
+    }
 }
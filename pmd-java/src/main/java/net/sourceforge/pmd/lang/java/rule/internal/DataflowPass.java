@@ -108,6 +108,8 @@ public final class DataflowPass {
     //  see also the todo comments in UnusedAssignmentRule
 
     private static final SimpleDataKey<DataflowResult> DATAFLOW_RESULT_K = DataMap.simpleDataKey("java.dataflow.global");
+    private static final SimpleDataKey<UnitResult> METHOD_RESULT = DataMap.simpleDataKey("java.dataflow.method");
+    private static final SimpleDataKey<UnitResult> INITIALIZERS_RESULT = DataMap.simpleDataKey("java.dataflow.initializers");
     private static final SimpleDataKey<ReachingDefinitionSet> REACHING_DEFS = DataMap.simpleDataKey("java.dataflow.reaching.backwards");
     private static final SimpleDataKey<AssignmentEntry> VAR_DEFINITION = DataMap.simpleDataKey("java.dataflow.field.def");
     private static final SimpleDataKey<OptionalBool> SWITCH_BRANCH_FALLS_THROUGH = DataMap.simpleDataKey("java.dataflow.switch.fallthrough");
@@ -118,48 +120,76 @@ public final class DataflowPass {
 
     /**
      * Returns the info computed by the dataflow pass for the given file.
-     * The computation is done at most once.
+     * The analysis is split into units, which are processed lazily: each
+     * method body, and the initializers and constructors of each class.
+     * Each unit is processed at most once.
      */
     public static DataflowResult getDataflowResult(ASTCompilationUnit acu) {
-        return acu.getUserMap().computeIfAbsent(DATAFLOW_RESULT_K, () -> process(acu));
+        return acu.getUserMap().computeIfAbsent(DATAFLOW_RESULT_K, () -> new DataflowResult(acu));
     }
 
     /**
      * If the var id is that of a field, returns the assignment entry that
      * corresponds to its definition (either blank or its initializer). From
      * there, using the kill record, we can draw the graph of all assignments.
-     * Returns null if not a field, or the compilation unit has not been processed.
+     * Returns null if not a field. This processes the initializers and
+     * constructors of the class that declares the field.
      */
     public static @Nullable AssignmentEntry getFieldDefinition(ASTVariableDeclaratorId varId) {
         if (!varId.isField()) {
             return null;
         }
+        getDataflowResult(varId.getRoot()).processUnitOf(varId);
         return varId.getUserMap().get(VAR_DEFINITION);
     }
 
-    private static DataflowResult process(ASTCompilationUnit node) {
-        DataflowResult dataflowResult = new DataflowResult();
-        for (ASTAnyTypeDeclaration typeDecl : node.getTypeDeclarations()) {
-            GlobalAlgoState subResult = new GlobalAlgoState();
-            typeDecl.acceptVisitor(ReachingDefsVisitor.ONLY_LOCALS, new SpanInfo(subResult));
-            if (subResult.usedAssignments.size() < subResult.allAssignments.size()) {
-                Set<AssignmentEntry> unused = subResult.allAssignments;
-                unused.removeAll(subResult.usedAssignments);
-                unused.removeIf(AssignmentEntry::isUnbound);
-                unused.removeIf(AssignmentEntry::isFieldDefaultValue);
-                dataflowResult.unusedAssignments.addAll(unused);
+    /**
+     * Returns the body declaration whose unit contains the node, or null
+     * if the node is not in a body declaration. Units are the members
+     * of classes that are not themselves in a method or initializer.
+     * Local and anonymous classes are processed with the unit that
+     * contains them, as they may capture its variables.
+     */
+    private static @Nullable ASTBodyDeclaration findUnit(JavaNode node) {
+        ASTBodyDeclaration unit = null;
+        for (JavaNode n = node; n != null; n = n.getParent()) {
+            if (n instanceof ASTBodyDeclaration && !(n instanceof ASTAnyTypeDeclaration)) {
+                unit = (ASTBodyDeclaration) n;
             }
+        }
+        return unit;
+    }
 
-            CollectionUtil.mergeMaps(
-                dataflowResult.killRecord,
-                subResult.killRecord,
-                (s1, s2) -> {
-                    s1.addAll(s2);
-                    return s1;
-                });
+    private static UnitResult processMethod(ASTMethodDeclaration method) {
+        GlobalAlgoState state = new GlobalAlgoState();
+        SpanInfo span = new SpanInfo(state);
+        if (!method.isStatic()) {
+            span.declareSpecialFieldValues(method.getEnclosingType().getSymbol());
         }
+        ReachingDefsVisitor.ONLY_LOCALS.acceptOpt(method, span);
+        return new UnitResult(state);
+    }
+
+    private static UnitResult processInitializers(ASTAnyTypeDeclaration typeDecl) {
+        GlobalAlgoState state = new GlobalAlgoState();
+        ReachingDefsVisitor.processInitializers(typeDecl.getDeclarations(), new SpanInfo(state), typeDecl.getSymbol());
+        return new UnitResult(state);
+    }
+
+    /** Result of the analysis of a single unit. */
+    private static final class UnitResult {
+
+        final Set<AssignmentEntry> unusedAssignments;
+        final Map<AssignmentEntry, Set<AssignmentEntry>> killRecord;
 
-        return dataflowResult;
+        UnitResult(GlobalAlgoState state) {
+            Set<AssignmentEntry> unused = state.allAssignments;
+            unused.removeAll(state.usedAssignments);
+            unused.removeIf(AssignmentEntry::isUnbound);
+            unused.removeIf(AssignmentEntry::isFieldDefaultValue);
+            this.unusedAssignments = unused;
+            this.killRecord = state.killRecord;
+        }
     }
 
     /**
@@ -224,43 +254,75 @@ public final class DataflowPass {
     }
 
     /**
-     * Global result of the dataflow analysis.
+     * Global result of the dataflow analysis. The units of the file
+     * are processed when a query needs them.
      */
     // this is a façade class
     public static final class DataflowResult {
 
-        final Set<AssignmentEntry> unusedAssignments;
-        final Map<AssignmentEntry, Set<AssignmentEntry>> killRecord;
+        private final ASTCompilationUnit acu;
+        private final Map<AssignmentEntry, Set<AssignmentEntry>> killRecord;
+        private Set<AssignmentEntry> unusedAssignments;
 
 
-        DataflowResult() {
-            this.unusedAssignments = new LinkedHashSet<>();
+        DataflowResult(ASTCompilationUnit acu) {
+            this.acu = acu;
             this.killRecord = new LinkedHashMap<>();
         }
 
         /**
-         * To be interpreted by {@link  UnusedAssignmentRule}.
+         * To be interpreted by {@link  UnusedAssignmentRule}. This processes
+         * the whole file.
          */
         public Set<AssignmentEntry> getUnusedAssignments() {
-            return Collections.unmodifiableSet(unusedAssignments);
+            if (unusedAssignments == null) {
+                Set<AssignmentEntry> unused = new LinkedHashSet<>();
+                for (ASTAnyTypeDeclaration typeDecl : acu.getTypeDeclarations()) {
+                    collectUnusedAssignments(typeDecl, unused);
+                }
+                unusedAssignments = Collections.unmodifiableSet(unused);
+            }
+            return unusedAssignments;
+        }
+
+        private void collectUnusedAssignments(ASTAnyTypeDeclaration typeDecl, Set<AssignmentEntry> unused) {
+            // same order as the traversal of a class: initializers first, then members
+            unused.addAll(initializersResult(typeDecl).unusedAssignments);
+            for (ASTBodyDeclaration decl : typeDecl.getDeclarations()) {
+                if (decl instanceof ASTMethodDeclaration && ((ASTMethodDeclaration) decl).getBody() != null) {
+                    unused.addAll(methodResult((ASTMethodDeclaration) decl).unusedAssignments);
+                } else if (decl instanceof ASTAnyTypeDeclaration) {
+                    collectUnusedAssignments((ASTAnyTypeDeclaration) decl, unused);
+                }
+            }
         }
 
         /**
-         * May be useful to check for reassignment.
+         * May be useful to check for reassignment. This processes the
+         * unit of the assignment, or the whole file if the assignment
+         * is {@linkplain AssignmentEntry#isUnbound() unbound}, as those
+         * may be killed in several units.
          */
         public @NonNull Set<AssignmentEntry> getKillers(AssignmentEntry assignment) {
+            if (assignment.isUnbound()) {
+                getUnusedAssignments();
+            } else {
+                processUnitOf(assignment.rhs);
+            }
             return killRecord.getOrDefault(assignment, Collections.emptySet());
         }
 
-        // These methods are only valid to be called if the dataflow pass has run.
-        // This is why they are instance methods here: by asking for the DataflowResult
-        // instance to get access to them, you ensure that the pass has been executed properly.
+        // These methods process the unit of their parameter before reading
+        // the data stored on the node. This is why they are instance methods
+        // here: by asking for the DataflowResult instance to get access to them,
+        // you ensure that the pass has been executed properly.
 
         /**
          * Returns whether the switch branch falls-through to the next one (or the end of the switch).
          */
         public @NonNull OptionalBool switchBranchFallsThrough(ASTSwitchBranch b) {
             if (b instanceof ASTSwitchFallthroughBranch) {
+                processUnitOf(b);
                 return Objects.requireNonNull(b.getUserMap().get(SWITCH_BRANCH_FALLS_THROUGH));
             }
             return OptionalBool.NO;
@@ -268,9 +330,41 @@ public final class DataflowPass {
 
 
         public @NonNull ReachingDefinitionSet getReachingDefinitions(ASTNamedReferenceExpr expr) {
+            processUnitOf(expr);
             return expr.getUserMap().computeIfAbsent(REACHING_DEFS, () -> reachingFallback(expr));
         }
 
+        /** Processes the unit that contains the node, if it was not already. */
+        void processUnitOf(JavaNode node) {
+            ASTBodyDeclaration unit = findUnit(node);
+            if (unit instanceof ASTMethodDeclaration) {
+                if (((ASTMethodDeclaration) unit).getBody() != null) {
+                    methodResult((ASTMethodDeclaration) unit);
+                }
+            } else if (unit != null) {
+                initializersResult(unit.getEnclosingType());
+            }
+        }
+
+        private UnitResult methodResult(ASTMethodDeclaration method) {
+            return method.getUserMap().computeIfAbsent(METHOD_RESULT, () -> recordKills(processMethod(method)));
+        }
+
+        private UnitResult initializersResult(ASTAnyTypeDeclaration typeDecl) {
+            return typeDecl.getUserMap().computeIfAbsent(INITIALIZERS_RESULT, () -> recordKills(processInitializers(typeDecl)));
+        }
+
+        private UnitResult recordKills(UnitResult result) {
+            CollectionUtil.mergeMaps(
+                killRecord,
+                result.killRecord,
+                (s1, s2) -> {
+                    s1.addAll(s2);
+                    return s1;
+                });
+            return result;
+        }
+
         // Fallback, to compute reaching definitions for some fields
         // that are not tracked by the tree exploration. Final fields
         // indeed have a fully known set of reaching definitions.
@@ -1035,7 +1129,7 @@ public final class DataflowPass {
 
     /**
      * The shared state for all {@link SpanInfo} instances in the same
-     * toplevel class.
+     * unit, see {@link #findUnit(JavaNode)}.
      */
     private static final class GlobalAlgoState {
 
@@ -15,6 +15,7 @@ import org.objectweb.asm.Opcodes;
 
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.SymbolResolver;
+import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.CachedUrlLoader;
 import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.FailedLoader;
 import net.sourceforge.pmd.lang.java.symbols.internal.asm.Loader.UrlLoader;
 import net.sourceforge.pmd.lang.java.types.TypeSystem;
@@ -30,6 +31,7 @@ public class AsmSymbolResolver implements SymbolResolver {
     private final TypeSystem ts;
     private final Classpath classLoader;
     private final SignatureParser typeLoader;
+    private final @Nullable ClassStubCache stubCache;
 
     private final ConcurrentMap<String, ClassStub> knownStubs = new ConcurrentHashMap<>();
 
@@ -40,8 +42,17 @@ public class AsmSymbolResolver implements SymbolResolver {
     private final ClassStub failed;
 
     public AsmSymbolResolver(TypeSystem ts, Classpath classLoader) {
+        this(ts, classLoader, null);
+    }
+
+    /**
+     * Creates a resolver that reads the classes found in jars through
+     * the given cache, if it is not null.
+     */
+    public AsmSymbolResolver(TypeSystem ts, Classpath classLoader, @Nullable ClassStubCache stubCache) {
         this.ts = ts;
         this.classLoader = classLoader;
+        this.stubCache = stubCache;
         this.typeLoader = new SignatureParser(this);
         this.failed = new ClassStub(this, "/*failed-lookup*/", FailedLoader.INSTANCE, 0);
     }
@@ -58,7 +69,7 @@ public class AsmSymbolResolver implements SymbolResolver {
                 return failed;
             }
 
-            return new ClassStub(this, iname, new UrlLoader(url), ClassStub.UNKNOWN_ARITY);
+            return new ClassStub(this, iname, newLoader(url), ClassStub.UNKNOWN_ARITY);
         });
 
         if (!found.hasCanonicalName()) {
@@ -88,6 +99,13 @@ public class AsmSymbolResolver implements SymbolResolver {
         return classLoader.findResource(internalName + ".class");
     }
 
+    private Loader newLoader(@NonNull URL url) {
+        if (stubCache != null && stubCache.isCacheable(url)) {
+            return new CachedUrlLoader(url, stubCache);
+        }
+        return new UrlLoader(url);
+    }
+
     /*
        These methods return an unresolved symbol if the url is not found.
      */
@@ -106,7 +124,7 @@ public class AsmSymbolResolver implements SymbolResolver {
                 return prev;
             }
             @Nullable URL url = getUrlOfInternalName(iname);
-            Loader loader = url == null ? FailedLoader.INSTANCE : new UrlLoader(url);
+            Loader loader = url == null ? FailedLoader.INSTANCE : newLoader(url);
             return new ClassStub(this, iname, loader, observedArity);
         });
     }
@@ -5,7 +5,6 @@
 package net.sourceforge.pmd.lang.java.symbols.internal.asm;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -90,15 +89,13 @@ final class ClassStub implements JClassSymbol, AsmStub, AnnotationOwner {
 
             @Override
             protected boolean doParse() throws IOException {
-                try (InputStream instream = loader.getInputStream()) {
-                    if (instream != null) {
-                        ClassReader classReader = new ClassReader(instream);
-                        ClassStubBuilder builder = new ClassStubBuilder(ClassStub.this, resolver);
-                        classReader.accept(builder, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-                        return true;
-                    } else {
-                        return false;
-                    }
+                ClassReader classReader = loader.getClassReader();
+                if (classReader != null) {
+                    ClassStubBuilder builder = new ClassStubBuilder(ClassStub.this, resolver);
+                    classReader.accept(builder, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    return true;
+                } else {
+                    return false;
                 }
             }
 
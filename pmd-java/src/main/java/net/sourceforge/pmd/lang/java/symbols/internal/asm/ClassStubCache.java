@@ -0,0 +1,325 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+
+/**
+ * Caches the class stubs read from jars on disk, so that they are
+ * not read from the jars again in the next runs. A stub is the class
+ * file without the code and debug info, which is what {@link ClassStub}
+ * reads. It is written with ASM, so it produces exactly the same
+ * events as the original class file, but it is much smaller and reading
+ * it doesn't need to inflate a jar entry.
+ *
+ * <p>There is one cache file per jar, which is discarded when the
+ * fingerprint of the jar changes. The file starts with an index of the
+ * stubs it contains, the stubs are then read individually when a class
+ * is resolved. Stubs read from the jars during a run are added to the
+ * cache files by {@link #persist()}.
+ *
+ * <p>This is thread-safe.
+ */
+public final class ClassStubCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClassStubCache.class);
+
+    /** "PMDS" in ASCII. */
+    private static final int MAGIC = 0x504D4453;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAGS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private final Path directory;
+    private final ConcurrentMap<String, JarStubs> jars = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache whose files are stored in the given directory.
+     * The directory is created if needed.
+     */
+    public ClassStubCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns true if the class file at the given URL may be cached,
+     * that is, if it is in a jar file.
+     */
+    boolean isCacheable(URL classUrl) {
+        return splitJarUrl(classUrl) != null;
+    }
+
+    /**
+     * Returns the stub of the class file at the given URL, reading it
+     * from the cache or from the class file.
+     */
+    @Nullable ClassReader getClassReader(URL classUrl, Loader original) throws IOException {
+        String[] jarAndEntry = splitJarUrl(classUrl);
+        if (jarAndEntry == null) {
+            return original.getClassReader();
+        }
+        JarStubs stubs = jars.computeIfAbsent(jarAndEntry[0], this::openJar);
+        byte[] stub = stubs.get(jarAndEntry[1]);
+        if (stub == null) {
+            ClassReader reader = original.getClassReader();
+            if (reader == null) {
+                return null;
+            }
+            ClassWriter writer = new ClassWriter(0);
+            reader.accept(writer, FLAGS);
+            stub = writer.toByteArray();
+            stubs.put(jarAndEntry[1], stub);
+        }
+        return new ClassReader(stub);
+    }
+
+    /**
+     * Returns the URL of the jar and the name of the entry, or null if
+     * this is not a URL to an entry of a local jar file.
+     */
+    private static String @Nullable [] splitJarUrl(URL url) {
+        if (!"jar".equals(url.getProtocol())) {
+            return null;
+        }
+        String file = url.getFile();
+        int sep = file.indexOf("!/");
+        if (sep < 0 || !file.startsWith("file:") || file.indexOf("!/", sep + 2) >= 0) {
+            return null;
+        }
+        return new String[] {file.substring(0, sep), file.substring(sep + 2)};
+    }
+
+    private JarStubs openJar(String jarUrl) {
+        Path cacheFile = directory.resolve(cacheFileName(jarUrl));
+        long fingerprint;
+        try {
+            fingerprint = new ClasspathFingerprinter().fingerprint(new URL(jarUrl));
+        } catch (MalformedURLException | RuntimeException e) {
+            LOG.debug("Cannot fingerprint {}, its stubs are not cached", jarUrl, e);
+            return JarStubs.DISABLED;
+        }
+        JarStubs stubs = new JarStubs(cacheFile, fingerprint);
+        stubs.load();
+        return stubs;
+    }
+
+    private static String cacheFileName(String jarUrl) {
+        String name = jarUrl.substring(jarUrl.lastIndexOf('/') + 1);
+        return name + "-" + Integer.toHexString(jarUrl.hashCode()) + ".stubs";
+    }
+
+    /**
+     * Writes the stubs read from the jars since the cache files
+     * were loaded. Failures are logged and ignored.
+     */
+    public void persist() {
+        for (JarStubs stubs : jars.values()) {
+            try {
+                stubs.persist();
+            } catch (IOException e) {
+                LOG.warn("Cannot write class stub cache file {}", stubs.cacheFile, e);
+            }
+        }
+    }
+
+
+    /** The stubs of a jar. */
+    private static final class JarStubs {
+
+        /** Used when a jar cannot be fingerprinted, does not cache anything. */
+        static final JarStubs DISABLED = new JarStubs(null, 0);
+
+        private final @Nullable Path cacheFile;
+        private final long fingerprint;
+
+        /**
+         * The stubs stored in the cache file. This is replaced as a whole
+         * by {@link #load()} and {@link #persist()}, so that a reader never
+         * sees the index of a file with the channel of another.
+         */
+        private volatile StoredStubs stored = StoredStubs.EMPTY;
+
+        /** Stubs read from the jar, not stored yet. */
+        private final Map<String, byte[]> added = new ConcurrentHashMap<>();
+
+        JarStubs(@Nullable Path cacheFile, long fingerprint) {
+            this.cacheFile = cacheFile;
+            this.fingerprint = fingerprint;
+        }
+
+        /** Reads the index of the cache file, if it is up-to-date. */
+        synchronized void load() {
+            if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+                return;
+            }
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(cacheFile, StandardOpenOption.READ);
+                // not closed, this would close the channel
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != fingerprint) {
+                    LOG.debug("Class stub cache file {} is outdated", cacheFile);
+                    closeChannel(channel);
+                    return;
+                }
+                int count = in.readInt();
+                Map<String, long[]> index = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    String entry = in.readUTF();
+                    long offset = in.readLong();
+                    long length = in.readInt();
+                    index.put(entry, new long[] {offset, length});
+                }
+                long dataStart = in.readLong();
+                stored = new StoredStubs(index, dataStart, channel);
+            } catch (IOException e) {
+                LOG.debug("Cannot read class stub cache file {}", cacheFile, e);
+                closeChannel(channel);
+            }
+        }
+
+        @Nullable byte[] get(String entry) throws IOException {
+            byte[] stub = added.get(entry);
+            if (stub != null) {
+                return stub;
+            }
+            StoredStubs current = stored;
+            long[] location = current.index.get(entry);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+            long position = current.dataStart + location[0];
+            try {
+                while (buffer.hasRemaining()) {
+                    int read = current.channel.read(buffer, position + buffer.position());
+                    if (read < 0) {
+                        throw new IOException("Truncated class stub cache file " + cacheFile);
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                // closed by persist, the stub is read from the jar again
+                return null;
+            }
+            return buffer.array();
+        }
+
+        void put(String entry, byte[] stub) {
+            if (cacheFile != null) {
+                added.put(entry, stub);
+            }
+        }
+
+        synchronized void persist() throws IOException {
+            if (added.isEmpty()) {
+                closeChannel();
+                return;
+            }
+            Map<String, byte[]> all = new LinkedHashMap<>();
+            for (String entry : stored.index.keySet()) {
+                byte[] stub = get(entry);
+                if (stub != null) {
+                    all.put(entry, stub);
+                }
+            }
+            all.putAll(added);
+            closeChannel();
+
+            Files.createDirectories(cacheFile.getParent());
+            Path tmp = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream os = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                    write(out, all);
+                }
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            added.clear();
+            load();
+        }
+
+        private void write(DataOutputStream out, Map<String, byte[]> stubs) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(stubs.size());
+            long offset = 0;
+            for (Map.Entry<String, byte[]> e : stubs.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(offset);
+                out.writeInt(e.getValue().length);
+                offset += e.getValue().length;
+            }
+            // the header is written, its size is known
+            out.writeLong(out.size() + 8L);
+            for (byte[] stub : stubs.values()) {
+                out.write(stub);
+            }
+        }
+
+        private void closeChannel() {
+            StoredStubs current = stored;
+            stored = StoredStubs.EMPTY;
+            closeChannel(current.channel);
+        }
+
+        private void closeChannel(@Nullable FileChannel channel) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOG.debug("Cannot close {}", cacheFile, e);
+                }
+            }
+        }
+    }
+
+    /** The index of a cache file, and the channel to read its stubs. */
+    private static final class StoredStubs {
+
+        static final StoredStubs EMPTY = new StoredStubs(Collections.emptyMap(), 0, null);
+
+        /** Offset and length of the stubs, relative to {@link #dataStart}. */
+        final Map<String, long[]> index;
+        final long dataStart;
+        final FileChannel channel;
+
+        StoredStubs(Map<String, long[]> index, long dataStart, FileChannel channel) {
+            this.index = index;
+            this.dataStart = dataStart;
+            this.channel = channel;
+        }
+    }
+}
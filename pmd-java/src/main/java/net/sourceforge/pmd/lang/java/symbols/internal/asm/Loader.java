@@ -11,6 +11,7 @@ import java.net.URL;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.ClassReader;
 
 abstract class Loader {
 
@@ -18,6 +19,16 @@ abstract class Loader {
     @Nullable
     abstract InputStream getInputStream() throws IOException;
 
+    /**
+     * Returns a reader for the class file, or null if it is not found.
+     */
+    @Nullable
+    ClassReader getClassReader() throws IOException {
+        try (InputStream instream = getInputStream()) {
+            return instream == null ? null : new ClassReader(instream);
+        }
+    }
+
 
     static class FailedLoader extends Loader {
 
@@ -57,5 +68,28 @@ abstract class Loader {
         }
     }
 
+    /**
+     * Loads a class file from a URL, through a {@link ClassStubCache}.
+     */
+    static class CachedUrlLoader extends UrlLoader {
+
+        private final ClassStubCache cache;
+
+        CachedUrlLoader(@NonNull URL url, ClassStubCache cache) {
+            super(url);
+            this.cache = cache;
+        }
+
+        @Override
+        @Nullable ClassReader getClassReader() throws IOException {
+            return cache.getClassReader(super.url, new UrlLoader(super.url));
+        }
+
+        @Override
+        public String toString() {
+            return "(cached URL loader)";
+        }
+    }
+
 
 }
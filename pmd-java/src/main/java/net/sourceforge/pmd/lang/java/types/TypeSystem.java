@@ -23,6 +23,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.pcollections.HashTreePSet;
 import org.pcollections.PSet;
 
+import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
 import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
 import net.sourceforge.pmd.lang.java.symbols.JExecutableSymbol;
@@ -39,6 +40,7 @@ import net.sourceforge.pmd.lang.java.symbols.internal.asm.Classpath;
 import net.sourceforge.pmd.lang.java.types.BasePrimitiveSymbol.RealPrimitiveSymbol;
 import net.sourceforge.pmd.lang.java.types.BasePrimitiveSymbol.VoidSymbol;
 import net.sourceforge.pmd.lang.java.types.JPrimitiveType.PrimitiveTypeKind;
+import net.sourceforge.pmd.lang.java.types.internal.infer.SharedInferenceCache;
 import net.sourceforge.pmd.util.AssertionUtil;
 import net.sourceforge.pmd.util.CollectionUtil;
 
@@ -174,6 +176,7 @@ public final class TypeSystem {
     private final Map<JTypeDeclSymbol, JTypeMirror> sharedTypes;
     // test only
     final SymbolResolver resolver;
+    private final SharedInferenceCache inferenceCache = new SharedInferenceCache();
 
     /**
      * Builds a new type system. Its public fields will be initialized
@@ -300,6 +303,15 @@ public final class TypeSystem {
         return resolver;
     }
 
+    /**
+     * Returns the memo tables shared by the type inference of all
+     * the files analysed with this type system.
+     */
+    @InternalApi
+    public SharedInferenceCache getInferenceCache() {
+        return inferenceCache;
+    }
+
     // helpers for the constructor, cannot use typeOf, only for trusted types
 
     private JClassType addSpecial(Class<?> klass, Map<JClassSymbol, JTypeMirror> shared) {
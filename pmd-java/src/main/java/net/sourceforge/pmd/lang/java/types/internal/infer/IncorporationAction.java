@@ -104,6 +104,15 @@ abstract class IncorporationAction {
         }
 
         private boolean checkSubtype(JTypeMirror t, JTypeMirror s, InferenceContext ctx) {
+            if (SharedInferenceCache.isShareable(t) && SharedInferenceCache.isShareable(s)) {
+                // ground types, the result is shared by all the files
+                Convertibility isConvertible = t.getTypeSystem().getInferenceCache().isConvertible(t, s, false);
+                if (isConvertible.withUncheckedWarning()) {
+                    ctx.setNeedsUncheckedConversion();
+                }
+                return isConvertible.somehow();
+            }
+
             if (ctx.getSupertypeCheckCache().isCertainlyASubtype(t, s)) {
                 return true; // supertype was already cached
             }
@@ -39,6 +39,7 @@ import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.LambdaExprM
 import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.MethodRefMirror;
 import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.PolyExprMirror;
 import net.sourceforge.pmd.lang.java.types.internal.infer.InferenceVar.BoundKind;
+import net.sourceforge.pmd.lang.java.types.internal.infer.SharedInferenceCache.OverloadKey;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 /**
@@ -60,6 +61,7 @@ public final class Infer {
     final MethodCtDecl FAILED_INVOCATION; // SUPPRESS CHECKSTYLE same
 
     private final SupertypeCheckCache supertypeCheckCache = new SupertypeCheckCache();
+    private final SharedInferenceCache sharedCache;
 
     /**
      * Creates a new instance.
@@ -78,6 +80,7 @@ public final class Infer {
         this.FAILED_INVOCATION = MethodCtDecl.unresolved(ts);
 
         this.exprOps = new ExprOps(this);
+        this.sharedCache = ts.getInferenceCache();
     }
 
     public boolean isPreJava8() {
@@ -279,6 +282,16 @@ public final class Infer {
             return NO_CTDECL;
         }
 
+        // the selection is only cached when nothing is logged,
+        // so that the logs are the same for every call site
+        OverloadKey cacheKey = LOG.isNoop() ? sharedCache.overloadKey(site.getExpr(), potentiallyApplicable) : null;
+        if (cacheKey != null) {
+            MethodCtDecl cached = sharedCache.getOverload(cacheKey);
+            if (cached != null) {
+                return adaptGetClass(cached, site);
+            }
+        }
+
         for (MethodResolutionPhase phase : MethodResolutionPhase.APPLICABILITY_TESTS) {
             PhaseOverloadSet applicable = new PhaseOverloadSet(this, phase, site);
             for (JMethodSig m : potentiallyApplicable) {
@@ -293,9 +306,10 @@ public final class Infer {
 
             if (applicable.nonEmpty()) {
                 MethodCtDecl bestApplicable = applicable.getMostSpecificOrLogAmbiguity(LOG);
-                JMethodSig adapted = ExprOps.adaptGetClass(bestApplicable.getMethodType(),
-                                                           site.getExpr()::getErasedReceiverType);
-                return bestApplicable.withMethod(adapted);
+                if (cacheKey != null && !bestApplicable.isFailed()) {
+                    sharedCache.putOverload(cacheKey, bestApplicable);
+                }
+                return adaptGetClass(bestApplicable, site);
             }
         }
 
@@ -305,6 +319,12 @@ public final class Infer {
         return NO_CTDECL;
     }
 
+    private static MethodCtDecl adaptGetClass(MethodCtDecl ctdecl, MethodCallSite site) {
+        JMethodSig adapted = ExprOps.adaptGetClass(ctdecl.getMethodType(),
+                                                   site.getExpr()::getErasedReceiverType);
+        return ctdecl.withMethod(adapted);
+    }
+
     @NonNull MethodCtDecl finishInstantiation(MethodCallSite site, MethodCtDecl ctdecl) {
         JMethodSig m = ctdecl.getMethodType();
         InvocationMirror expr = site.getExpr();
@@ -910,7 +930,7 @@ public final class Infer {
 
         // If they are ground, then they must conform to each other else
         // the exception stops the resolution process.
-        Convertibility isConvertible = isConvertible(groundE, groundF, phase.canBox());
+        Convertibility isConvertible = sharedCache.isConvertible(groundE, groundF, phase.canBox());
         if (isConvertible.never()) {
             throw ResolutionFailedException.incompatibleFormal(LOG, arg, groundE, groundF);
         } else if (isConvertible.withUncheckedWarning() && site != null) {
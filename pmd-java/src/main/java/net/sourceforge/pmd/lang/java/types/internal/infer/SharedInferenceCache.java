@@ -0,0 +1,276 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.types.internal.infer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.lang.java.symbols.JClassSymbol;
+import net.sourceforge.pmd.lang.java.types.JArrayType;
+import net.sourceforge.pmd.lang.java.types.JClassType;
+import net.sourceforge.pmd.lang.java.types.JMethodSig;
+import net.sourceforge.pmd.lang.java.types.JPrimitiveType;
+import net.sourceforge.pmd.lang.java.types.JTypeMirror;
+import net.sourceforge.pmd.lang.java.types.JWildcardType;
+import net.sourceforge.pmd.lang.java.types.TypeOps.Convertibility;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.CtorInvocationMirror;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.InvocationMirror;
+import net.sourceforge.pmd.lang.java.types.internal.infer.ExprMirror.InvocationMirror.MethodCtDecl;
+
+/**
+ * Memo tables shared by all the inference runs of a type system, that is,
+ * by all the files of an analysis. This caches the convertibility checks
+ * between ground types, and the compile-time declaration of invocations
+ * whose candidates are not generic, and whose arguments are standalone
+ * expressions. The result of those only depends on the types involved,
+ * so it can be reused for the same call shape in other files, e.g. for
+ * every {@code StringBuilder.append(String)}.
+ *
+ * <p>Only types that come from the classpath are cached, so that entries
+ * do not retain the AST of a file, or a type that is only valid in one
+ * file. The tables are bounded, and cleared when they become full.
+ *
+ * <p>This is thread-safe.
+ */
+public final class SharedInferenceCache {
+
+    private static final int MAX_CONVERTIBILITY_ENTRIES = 8192;
+    private static final int MAX_OVERLOAD_ENTRIES = 4096;
+
+    private final Memo<ConvertibilityKey, Convertibility> convertibility =
+        new Memo<>("Convertibility cache", MAX_CONVERTIBILITY_ENTRIES);
+    private final Memo<OverloadKey, MethodCtDecl> overloads =
+        new Memo<>("Overload cache", MAX_OVERLOAD_ENTRIES);
+
+    /**
+     * Returns whether t is convertible to s in an invocation context,
+     * see {@link Infer#isConvertible(JTypeMirror, JTypeMirror, boolean)}.
+     * The check must not have side effects on inference variables,
+     * so the types should be ground.
+     */
+    Convertibility isConvertible(JTypeMirror t, JTypeMirror s, boolean canBox) {
+        if (!isShareable(t) || !isShareable(s)) {
+            return Infer.isConvertible(t, s, canBox);
+        }
+        ConvertibilityKey key = new ConvertibilityKey(t, s, canBox);
+        return convertibility.getOrCompute(key, () -> Infer.isConvertible(t, s, canBox));
+    }
+
+    /**
+     * Returns a key to cache the compile-time declaration of the given
+     * invocation, or null if it cannot be cached.
+     *
+     * @param expr       Invocation
+     * @param candidates Potentially applicable methods
+     */
+    @Nullable OverloadKey overloadKey(InvocationMirror expr, List<JMethodSig> candidates) {
+        if (expr instanceof CtorInvocationMirror) {
+            // constructors may be adapted to the diamond
+            return null;
+        }
+        // the receiver is used to choose between override-equivalent methods,
+        // otherwise the enclosing type is, which is declared in the file
+        JTypeMirror receiver = expr.getReceiverType();
+        if (receiver == null || !isShareable(receiver)) {
+            return null;
+        }
+        for (JMethodSig m : candidates) {
+            if (m.isGeneric() || !isShareable(m.getDeclaringType())) {
+                return null;
+            }
+        }
+        List<ExprMirror> args = expr.getArgumentExpressions();
+        List<JTypeMirror> argTypes = new ArrayList<>(args.size());
+        for (ExprMirror arg : args) {
+            // poly expressions have no standalone type
+            JTypeMirror type = arg.getStandaloneType();
+            if (type == null || !isShareable(type)) {
+                return null;
+            }
+            argTypes.add(type);
+        }
+        return new OverloadKey(receiver, candidates, argTypes);
+    }
+
+    /** Returns the cached compile-time declaration, or null if it is not cached. */
+    @Nullable MethodCtDecl getOverload(OverloadKey key) {
+        return overloads.get(key);
+    }
+
+    /** Caches the compile-time declaration, which must not be failed. */
+    void putOverload(OverloadKey key, MethodCtDecl ctdecl) {
+        assert !ctdecl.isFailed() : "Failed declarations are specific to an Infer instance";
+        overloads.put(key, ctdecl);
+    }
+
+    /** Returns the number of hits of the convertibility table, for tests. */
+    long getConvertibilityHits() {
+        return convertibility.hits.sum();
+    }
+
+    /** Returns the number of hits of the overload table, for tests. */
+    long getOverloadHits() {
+        return overloads.hits.sum();
+    }
+
+    /**
+     * Returns true if the type may be cached. The type must be ground,
+     * its symbols must come from the classpath, and it must not have
+     * type annotations, which are ignored by equality.
+     */
+    static boolean isShareable(JTypeMirror t) {
+        if (t instanceof JPrimitiveType) {
+            return t.getTypeAnnotations().isEmpty();
+        } else if (t == t.getTypeSystem().NULL_TYPE) { // NOPMD CompareObjectsWithEquals
+            return true;
+        } else if (t instanceof JArrayType) {
+            return t.getTypeAnnotations().isEmpty() && isShareable(((JArrayType) t).getComponentType());
+        } else if (t instanceof JWildcardType) {
+            return t.getTypeAnnotations().isEmpty() && isShareable(((JWildcardType) t).getBound());
+        } else if (t instanceof JClassType) {
+            JClassType classType = (JClassType) t;
+            JClassSymbol sym = classType.getSymbol();
+            if (sym.isUnresolved() || sym.tryGetNode() != null || !t.getTypeAnnotations().isEmpty()) {
+                return false;
+            }
+            JClassType enclosing = classType.getEnclosingType();
+            if (enclosing != null && !isShareable(enclosing)) {
+                return false;
+            }
+            for (JTypeMirror targ : classType.getTypeArgs()) {
+                if (!isShareable(targ)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // type variables, inference variables, intersections, sentinels
+        return false;
+    }
+
+
+    /** A bounded concurrent map, which counts its hits and misses. */
+    private static final class Memo<K, V> {
+
+        private final ConcurrentMap<K, V> map = new ConcurrentHashMap<>();
+        private final int maxSize;
+        private final String hitLabel;
+        private final String missLabel;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        Memo(String name, int maxSize) {
+            this.maxSize = maxSize;
+            this.hitLabel = name + " hits";
+            this.missLabel = name + " misses";
+        }
+
+        @Nullable V get(K key) {
+            V value = map.get(key);
+            if (value != null) {
+                hits.increment();
+                TimeTracker.countOperation(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, hitLabel);
+            } else {
+                misses.increment();
+                TimeTracker.countOperation(TimedOperationCategory.LANGUAGE_SPECIFIC_PROCESSING, missLabel);
+            }
+            return value;
+        }
+
+        V getOrCompute(K key, Supplier<V> computation) {
+            V value = get(key);
+            if (value == null) {
+                // not computeIfAbsent, which would lock the bin during the computation
+                value = computation.get();
+                put(key, value);
+            }
+            return value;
+        }
+
+        void put(K key, V value) {
+            if (map.size() >= maxSize) {
+                // entries are cheap to recompute, this is simpler than an LRU
+                map.clear();
+            }
+            map.put(key, value);
+        }
+    }
+
+    private static final class ConvertibilityKey {
+
+        private final JTypeMirror t;
+        private final JTypeMirror s;
+        private final boolean canBox;
+        private final int hash;
+
+        ConvertibilityKey(JTypeMirror t, JTypeMirror s, boolean canBox) {
+            this.t = t;
+            this.s = s;
+            this.canBox = canBox;
+            this.hash = (t.hashCode() * 31 + s.hashCode()) * 31 + Boolean.hashCode(canBox);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ConvertibilityKey)) {
+                return false;
+            }
+            ConvertibilityKey that = (ConvertibilityKey) o;
+            return canBox == that.canBox && t.equals(that.t) && s.equals(that.s);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class OverloadKey {
+
+        private final JTypeMirror receiver;
+        private final List<JMethodSig> candidates;
+        private final List<JTypeMirror> argTypes;
+        private final int hash;
+
+        OverloadKey(JTypeMirror receiver, List<JMethodSig> candidates, List<JTypeMirror> argTypes) {
+            this.receiver = receiver;
+            this.candidates = candidates;
+            this.argTypes = argTypes;
+            this.hash = Objects.hash(receiver, candidates, argTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof OverloadKey)) {
+                return false;
+            }
+            OverloadKey that = (OverloadKey) o;
+            return hash == that.hash
+                && receiver.equals(that.receiver)
+                && argTypes.equals(that.argTypes)
+                && candidates.equals(that.candidates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
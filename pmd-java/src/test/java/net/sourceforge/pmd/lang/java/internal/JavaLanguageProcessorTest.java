@@ -0,0 +1,79 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import net.sourceforge.pmd.RuleSetLoader;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageProcessorRegistry;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+import net.sourceforge.pmd.lang.java.rule.JavaAnalysisPass;
+import net.sourceforge.pmd.util.log.MessageReporter;
+
+class JavaLanguageProcessorTest {
+
+    private static final String STYLE_RULES =
+        "category/java/codestyle.xml/FormalParameterNamingConventions,"
+            + "category/java/codestyle.xml/LocalVariableNamingConventions,"
+            + "category/java/codestyle.xml/ControlStatementBraces,"
+            + "category/java/codestyle.xml/ShortVariable,"
+            + "category/java/codestyle.xml/UnnecessarySemicolon,"
+            + "category/java/design.xml/CyclomaticComplexity,"
+            + "category/java/design.xml/NcssCount,"
+            + "category/java/documentation.xml/CommentSize";
+
+    @Test
+    void testStyleRulesetSkipsOptionalPasses() throws Exception {
+        assertEquals(Collections.emptySet(), getRequiredPasses(STYLE_RULES));
+    }
+
+    @Test
+    void testPassesOfEachRuleAreRun() throws Exception {
+        assertEquals(EnumSet.of(JavaAnalysisPass.USAGE_RESOLUTION),
+                     getRequiredPasses(STYLE_RULES + ",category/java/codestyle.xml/MethodArgumentCouldBeFinal"));
+        assertEquals(EnumSet.allOf(JavaAnalysisPass.class),
+                     getRequiredPasses(STYLE_RULES + ",category/java/bestpractices.xml/UnusedAssignment"));
+    }
+
+    @Test
+    void testXPathRuleUsingTypesRunsDefaultPasses() throws Exception {
+        // calls pmd-java:typeIsExactly
+        assertEquals(EnumSet.of(JavaAnalysisPass.TYPE_RESOLUTION, JavaAnalysisPass.USAGE_RESOLUTION, JavaAnalysisPass.OVERRIDE_RESOLUTION),
+                     getRequiredPasses("category/java/bestpractices.xml/ReplaceHashtableWithMap"));
+    }
+
+    @Test
+    void testDefaultPassesOutsideOfAnalysis() throws Exception {
+        try (JavaLanguageProcessor processor = newProcessor()) {
+            assertTrue(processor.runsPass(JavaAnalysisPass.TYPE_RESOLUTION));
+            assertTrue(processor.runsPass(JavaAnalysisPass.USAGE_RESOLUTION));
+            assertTrue(processor.runsPass(JavaAnalysisPass.OVERRIDE_RESOLUTION));
+            assertFalse(processor.runsPass(JavaAnalysisPass.DATAFLOW));
+        }
+    }
+
+    private static Set<JavaAnalysisPass> getRequiredPasses(String rulesets) throws Exception {
+        try (JavaLanguageProcessor processor = newProcessor()) {
+            RuleSets ruleSets = new RuleSets(new RuleSetLoader().loadFromResources(Arrays.asList(rulesets.split(","))));
+            ruleSets.initializeRules(LanguageProcessorRegistry.singleton(processor), MessageReporter.quiet());
+            return processor.getRequiredPasses(ruleSets.getAllRules());
+        }
+    }
+
+    private static JavaLanguageProcessor newProcessor() {
+        JavaLanguageModule java = JavaLanguageModule.getInstance();
+        return (JavaLanguageProcessor) java.createProcessor(java.newPropertyBundle());
+    }
+}
@@ -5,13 +5,24 @@
 package net.sourceforge.pmd.lang.java.rule.internal;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
 import net.sourceforge.pmd.lang.java.BaseParserTest;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableAccess;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
+import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.AssignmentEntry;
 import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.DataflowResult;
+import net.sourceforge.pmd.lang.java.rule.internal.DataflowPass.ReachingDefinitionSet;
 
 /**
  * @author Clément Fournier
@@ -32,4 +43,40 @@ class DataflowPassTest extends BaseParserTest {
 
     }
 
+    @Test
+    void testUnitsAreProcessedOnDemand() {
+        String code = "class Foo {\n"
+            + "    int f;\n"
+            + "    Foo() { this.f = 1; }\n"
+            + "    void m1() { int a = 1; a = 2; print(a); }\n"
+            + "    void m2() { int b = 3; print(b); }\n"
+            + "    void print(int i) { }\n"
+            + "}";
+
+        ASTCompilationUnit ast = java.parse(code);
+        DataflowResult dataflow = DataflowPass.getDataflowResult(ast);
+
+        // only processes m2
+        ASTVariableAccess usageOfB = ast.descendants(ASTVariableAccess.class)
+                                        .filter(it -> "b".equals(it.getName()))
+                                        .firstOrThrow();
+        ReachingDefinitionSet reaching = dataflow.getReachingDefinitions(usageOfB);
+        assertThat(reaching.getReaching(), Matchers.hasSize(1));
+        assertEquals(5, reaching.getReaching().iterator().next().getLine());
+
+        // only processes the initializers and constructors
+        ASTVariableDeclaratorId field = ast.descendants(ASTFieldDeclaration.class).firstOrThrow().getVarIds().firstOrThrow();
+        AssignmentEntry fieldDef = DataflowPass.getFieldDefinition(field);
+        assertNotNull(fieldDef);
+        assertThat(dataflow.getKillers(fieldDef), Matchers.hasSize(1));
+
+        // processes the rest, the result is the same as when processing everything at once
+        DataflowResult fresh = DataflowPass.getDataflowResult(java.parse(code));
+        assertEquals(lines(fresh.getUnusedAssignments()), lines(dataflow.getUnusedAssignments()));
+    }
+
+    private static List<Integer> lines(Set<AssignmentEntry> entries) {
+        return entries.stream().map(AssignmentEntry::getLine).collect(Collectors.toList());
+    }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.symbols.internal.asm
+
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.shouldBe
+import net.sourceforge.pmd.internal.util.ClasspathClassLoader
+import net.sourceforge.pmd.lang.ast.test.IntelliMarker
+import net.sourceforge.pmd.lang.java.types.testTypeSystem
+import java.nio.file.Files
+import java.nio.file.Paths
+
+class ClassStubCacheTest : IntelliMarker, FunSpec({
+
+    // contains a custom java.lang.Void, with a single method
+    val jar = Paths.get("src/test/resources/net/sourceforge/pmd/lang/java/symbols/custom_java_lang.jar").toAbsolutePath()
+
+    test("Stubs are read from the cache in the next run") {
+        val cacheDir = Files.createTempDirectory("pmd-stubs")
+
+        ClasspathClassLoader(listOf(jar.toFile()), null).use { loader ->
+            val classpath = Classpath.forClassLoader(loader)
+            val url = classpath.findResource("java/lang/Void.class").shouldNotBeNull()
+
+            val firstRun = ClassStubCache(cacheDir)
+            // nothing is cached yet
+            firstRun.getClassReader(url, Loader.FailedLoader.INSTANCE).shouldBeNull()
+
+            val first = AsmSymbolResolver(testTypeSystem, classpath, firstRun)
+                .resolveClassFromBinaryName("java.lang.Void").shouldNotBeNull()
+            first.declaredMethods.map { it.simpleName } shouldBe listOf("customMethodOnJavaLangVoid")
+            firstRun.persist()
+
+            Files.list(cacheDir).use { it.count() } shouldBe 1L
+            // the cache file is read again after it is written
+            firstRun.getClassReader(url, Loader.FailedLoader.INSTANCE).shouldNotBeNull()
+
+            val secondRun = ClassStubCache(cacheDir)
+            // this is found without reading the jar
+            secondRun.getClassReader(url, Loader.FailedLoader.INSTANCE).shouldNotBeNull()
+
+            val second = AsmSymbolResolver(testTypeSystem, classpath, secondRun)
+                .resolveClassFromBinaryName("java.lang.Void").shouldNotBeNull()
+            second.declaredMethods.map { it.simpleName } shouldBe listOf("customMethodOnJavaLangVoid")
+        }
+    }
+})
@@ -5,6 +5,7 @@
 
 package net.sourceforge.pmd.lang.java.types.internal.infer
 
+import io.kotest.matchers.longs.shouldBeGreaterThan
 import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
 import net.sourceforge.pmd.lang.ast.test.shouldBe
@@ -444,5 +445,30 @@ class Scratch {
         }
     }
 
+    parserTest("Overload selection is shared between files") {
+
+        fun parseCall() = parser.parse(
+            """
+            class Foo {
+                void foo(StringBuilder sb, char c) {
+                    sb.append(c);
+                }
+            }
+            """.trimIndent()
+        ).firstMethodCall()
+
+        val first = parseCall()
+        val cache = first.typeSystem.inferenceCache
+        first.methodType.formalParameters shouldBe listOf(first.typeSystem.CHAR)
+
+        val hits = cache.overloadHits
+        val second = parseCall()
+
+        // the type system is shared with other tests
+        cache.overloadHits shouldBeGreaterThan hits
+        second.overloadSelectionInfo.isFailed shouldBe false
+        second.methodType shouldBe first.methodType
+    }
+
 
 })